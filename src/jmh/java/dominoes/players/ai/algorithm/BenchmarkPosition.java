@@ -0,0 +1,138 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.ExpectationWeightEvaluator;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.BoneStateFactory;
+import dominoes.players.ai.algorithm.helper.BoneStateImpl;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixed positions for the benchmarks to start from.  Each is reached from a deal (shuffled with
+ * a fixed seed) by a fixed-seed random sequence of choices, and is always my turn with a choice
+ * of bones to place.
+ *
+ * @author Sam Wright
+ */
+public enum BenchmarkPosition {
+    OPENING(0), MIDGAME(8), ENDGAME(16);
+
+    public static final int SIZE_OF_BONEYARD = 13;
+    private static final long SEED = 42;
+
+    private final List<ImmutableBone> myBones;
+    private final ImmutableBone initialLayout;
+    private final List<Choice> choices = new ArrayList<Choice>();
+    private final List<Boolean> turns = new ArrayList<Boolean>();
+
+    /**
+     * Creates the position reached after at least 'numberOfChoices' choices (and then as
+     * many more as it takes for it to be my turn with a choice of placements).
+     */
+    BenchmarkPosition(int numberOfChoices) {
+        for (long seed = SEED; ; ++seed) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, new Random(seed));
+
+            if (tryToPlay(bones.subList(0, 7), bones.get(7), numberOfChoices, new Random(seed))) {
+                myBones = Collections.unmodifiableList(new ArrayList<ImmutableBone>(bones.subList(0, 7)));
+                initialLayout = bones.get(7);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Plays random choices from the given deal, returning false if the game ends too soon.
+     */
+    private boolean tryToPlay(List<ImmutableBone> myBones, ImmutableBone initialLayout, int numberOfChoices, Random random) {
+        choices.clear();
+        turns.clear();
+
+        GameState state = new GameStateImpl(new StateEnumeratorImpl(), new ExpectationWeightEvaluator(), 1, true,
+                BoneStateImpl.FACTORY.createInitialState(myBones, SIZE_OF_BONEYARD, initialLayout));
+
+        while (choices.size() < numberOfChoices || !hasChoiceOfPlacements(state)) {
+            List<GameState> childStates = state.getChildStates();
+            if (childStates.isEmpty())
+                return false;
+
+            Choice choice = childStates.get(random.nextInt(childStates.size())).getChoiceTaken();
+            choices.add(choice);
+            turns.add(state.isMyTurn());
+            state = state.choose(choice);
+        }
+
+        return true;
+    }
+
+    private static boolean hasChoiceOfPlacements(GameState state) {
+        List<GameState> childStates = state.getChildStates();
+        return state.isMyTurn() && childStates.size() > 1 && childStates.get(0).getChoiceTaken().getAction().isPlacement();
+    }
+
+    /**
+     * Creates the named AIController (see AIBuilder) and plays it to this position.
+     *
+     * @param aiName the name of the AIController to create.
+     * @return the AIController at this position.
+     */
+    public AIController createAI(String aiName) {
+        AIController ai = AIBuilder.createAI(aiName);
+        ai.setInitialState(myBones, true, SIZE_OF_BONEYARD, initialLayout);
+
+        for (Choice choice : choices)
+            ai.choose(choice);
+
+        return ai;
+    }
+
+    /**
+     * Creates the BoneState at this position.
+     *
+     * @param factory the factory for the initial BoneState.
+     * @return the BoneState at this position.
+     */
+    public BoneState createBoneState(BoneStateFactory factory) {
+        BoneState boneState = factory.createInitialState(myBones, SIZE_OF_BONEYARD, initialLayout);
+
+        for (int i = 0; i < choices.size(); ++i)
+            boneState = boneState.createNext(choices.get(i), turns.get(i));
+
+        return boneState;
+    }
+
+    public List<ImmutableBone> getMyBones() {
+        return myBones;
+    }
+
+    public ImmutableBone getInitialLayout() {
+        return initialLayout;
+    }
+
+    /**
+     * Returns the choices taken to reach this position from the deal.
+     *
+     * @return the choices taken to reach this position.
+     */
+    public List<Choice> getChoices() {
+        return Collections.unmodifiableList(choices);
+    }
+
+    /**
+     * Returns true iff it was my turn when the i'th choice was taken.
+     *
+     * @param i the index of the choice.
+     * @return true iff it was my turn when the choice was taken.
+     */
+    public boolean wasMyTurn(int i) {
+        return turns.get(i);
+    }
+}
@@ -0,0 +1,37 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.helper.Choice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a full decision (ie. AIController.getBestChoice()) from a position.
+ *
+ * @author Sam Wright
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DecisionBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public BenchmarkPosition position;
+
+    @Param({"BitmaskProbabilisticAI"})
+    public String aiName;
+
+    private AIController ai;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        ai = position.createAI(aiName);
+    }
+
+    @Benchmark
+    public Choice getBestChoice() {
+        return ai.getBestChoice();
+    }
+}
@@ -0,0 +1,72 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.BenchmarkPosition;
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.GameStateImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Route;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks FastRouteSelector.getBestRoutes from a position, at several plies.  'expandAndSearch'
+ * starts from a new tree each time (so includes creating the states), and 'search' re-searches
+ * a tree which is already expanded, without caching routes (so it measures walking every state).
+ * 'searchCached' re-searches an expanded tree whose routes are cached in its states, which is
+ * what repeat searches cost between deepenings.
+ *
+ * @author Sam Wright
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RouteSelectorBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public BenchmarkPosition position;
+
+    @Param({"4", "6", "8"})
+    public int ply;
+
+    private final FastRouteSelector routeSelector = new FastRouteSelector();
+    private final FastRouteSelector uncachedRouteSelector = new FastRouteSelector(false);
+    private GameState expandedState, cachedState, newState;
+
+    private GameState createState() {
+        return new GameStateImpl(new StateEnumeratorImpl(), new ExpectationWeightEvaluator(), ply, true,
+                position.createBoneState(BitmaskBoneState.FACTORY));
+    }
+
+    @Setup(Level.Trial)
+    public void setUpExpandedStates() {
+        expandedState = createState();
+        uncachedRouteSelector.getBestRoutes(expandedState);
+
+        cachedState = createState();
+        routeSelector.getBestRoutes(cachedState);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpNewState() {
+        newState = createState();
+    }
+
+    @Benchmark
+    public List<Route> expandAndSearch() {
+        return routeSelector.getBestRoutes(newState);
+    }
+
+    @Benchmark
+    public List<Route> search() {
+        return uncachedRouteSelector.getBestRoutes(expandedState);
+    }
+
+    @Benchmark
+    public List<Route> searchCached() {
+        return routeSelector.getBestRoutes(cachedState);
+    }
+}
@@ -0,0 +1,61 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.BenchmarkPosition;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.BoneStateFactory;
+import dominoes.players.ai.algorithm.helper.BoneStateImpl;
+import dominoes.players.ai.algorithm.helper.Choice;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks enumerating the valid choices from a position, for me and for the opponent.
+ *
+ * @author Sam Wright
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateEnumeratorBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public BenchmarkPosition position;
+
+    @Param({"BoneStateImpl", "BitmaskBoneState"})
+    public String implementation;
+
+    private final StateEnumeratorImpl stateEnumerator = new StateEnumeratorImpl();
+    private final int[] moves = new int[StateEnumerator.MAX_MOVES];
+    private BoneState boneState;
+
+    @Setup
+    public void setUp() {
+        BoneStateFactory factory = implementation.equals("BitmaskBoneState") ? BitmaskBoneState.FACTORY : BoneStateImpl.FACTORY;
+        boneState = position.createBoneState(factory);
+    }
+
+    @Benchmark
+    public List<Choice> getMyValidChoices() {
+        return stateEnumerator.getMyValidChoices(boneState);
+    }
+
+    @Benchmark
+    public List<Choice> getOpponentValidChoices() {
+        return stateEnumerator.getOpponentValidChoices(boneState);
+    }
+
+    @Benchmark
+    public int getMyValidMoves() {
+        return stateEnumerator.getMyValidMoves(boneState, moves);
+    }
+
+    @Benchmark
+    public int getOpponentValidMoves() {
+        return stateEnumerator.getOpponentValidMoves(boneState, moves);
+    }
+}
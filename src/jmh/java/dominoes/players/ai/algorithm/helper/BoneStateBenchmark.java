@@ -0,0 +1,44 @@
+package dominoes.players.ai.algorithm.helper;
+
+import dominoes.players.ai.algorithm.BenchmarkPosition;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks creating the next BoneState after each of my valid choices from a position.
+ *
+ * @author Sam Wright
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoneStateBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public BenchmarkPosition position;
+
+    @Param({"BoneStateImpl", "BitmaskBoneState"})
+    public String implementation;
+
+    private BoneState boneState;
+    private Choice[] choices;
+
+    @Setup
+    public void setUp() {
+        BoneStateFactory factory = implementation.equals("BitmaskBoneState") ? BitmaskBoneState.FACTORY : BoneStateImpl.FACTORY;
+        boneState = position.createBoneState(factory);
+        choices = new StateEnumeratorImpl().getMyValidChoices(boneState).toArray(new Choice[0]);
+    }
+
+    @Benchmark
+    public BoneState createNext() {
+        BoneState next = null;
+        for (Choice choice : choices)
+            next = boneState.createNext(choice, true);
+        return next;
+    }
+}
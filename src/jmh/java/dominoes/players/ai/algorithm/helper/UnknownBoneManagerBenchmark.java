@@ -0,0 +1,53 @@
+package dominoes.players.ai.algorithm.helper;
+
+import dominoes.players.ai.algorithm.BenchmarkPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks UnknownBoneManagerImpl.calculateProbabilities at a position.
+ *
+ * @author Sam Wright
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnknownBoneManagerBenchmark {
+    @Param({"OPENING", "MIDGAME", "ENDGAME"})
+    public BenchmarkPosition position;
+
+    private UnknownBoneManagerImpl unknownBoneManager;
+
+    @Setup
+    public void setUp() {
+        List<ImmutableBone> unknownBones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        unknownBones.removeAll(position.getMyBones());
+        unknownBones.removeAll(Arrays.asList(position.getInitialLayout()));
+
+        // Replay the position's choices, using a BoneState to follow the layout
+        UnknownBoneManager manager = new UnknownBoneManagerImpl(unknownBones, BenchmarkPosition.SIZE_OF_BONEYARD);
+        BoneState boneState = BoneStateImpl.FACTORY.createInitialState(position.getMyBones(),
+                BenchmarkPosition.SIZE_OF_BONEYARD, position.getInitialLayout());
+
+        for (int i = 0; i < position.getChoices().size(); ++i) {
+            Choice choice = position.getChoices().get(i);
+            boolean isMyTurn = position.wasMyTurn(i);
+            manager = manager.createNext(choice, isMyTurn, boneState.getLayoutLeft(), boneState.getLayoutRight());
+            boneState = boneState.createNext(choice, isMyTurn);
+        }
+
+        unknownBoneManager = (UnknownBoneManagerImpl) manager;
+    }
+
+    @Benchmark
+    public float[] calculateProbabilities() {
+        return unknownBoneManager.calculateProbabilities();
+    }
+}
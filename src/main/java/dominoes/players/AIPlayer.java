@@ -76,7 +76,7 @@ public class AIPlayer extends ObservantPlayer {
     @Override
     public void draw(BoneYard boneYard) {
         super.draw(boneYard);
-        ImmutableBone pickedUpBone = new ImmutableBone(boneYard.draw());
+        ImmutableBone pickedUpBone = ImmutableBone.of(boneYard.draw());
 
         if (isFirstMove()) {
             // Just add to initialHand (they'll be given to the AI when 'makePlay' is first called.
@@ -114,8 +114,8 @@ public class ExampleCleverPlayer extends CleverPlayer {
 
     @Override
     public void takeBoneFromBoneyard(Bone bone) {
-        myBones.add(new ImmutableBone(bone));
-        lastChoice = new Choice(Choice.Action.PICKED_UP, new ImmutableBone(bone));
+        myBones.add(ImmutableBone.of(bone));
+        lastChoice = new Choice(Choice.Action.PICKED_UP, ImmutableBone.of(bone));
     }
 
     @Override
@@ -67,7 +67,7 @@ public abstract class CleverPlayer extends ObservantPlayer {
 
         Bone bone = boneYard.draw();
         if (!isFirstMove()) {
-            boneState = boneState.createNext(new Choice(Choice.Action.PICKED_UP, new ImmutableBone(bone)), true);
+            boneState = boneState.createNext(new Choice(Choice.Action.PICKED_UP, ImmutableBone.of(bone)), true);
             afterMyTurn = boneState;
         }
 
@@ -69,10 +69,10 @@ public abstract class ObservantPlayer implements DominoPlayer {
 
         if (!prevLayout[0].equals(tableLayout[0])) {
             // The opponent put a bone on the left
-            choices.add(new Choice(Choice.Action.PLACED_LEFT, new ImmutableBone(tableLayout[0])));
+            choices.add(new Choice(Choice.Action.PLACED_LEFT, ImmutableBone.of(tableLayout[0])));
         } else if (!prevLayout[prevRightPos].equals(tableLayout[rightPos])) {
             // The opponent put a bone on the right
-            choices.add(new Choice(Choice.Action.PLACED_RIGHT, new ImmutableBone(tableLayout[rightPos])));
+            choices.add(new Choice(Choice.Action.PLACED_RIGHT, ImmutableBone.of(tableLayout[rightPos])));
         } else {
             // The opponent must have passed
             choices.add(new Choice(Choice.Action.PASS, null));
@@ -1,12 +1,14 @@
 package dominoes.players.ai.algorithm;
 
 import dominoes.players.ai.algorithm.components.*;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Builder class for AIContoller objects.
@@ -17,6 +19,12 @@ public class AIBuilder {
     private static final List<String> validAINames;
     private static final String builderMethodPrefix = "create";
 
+    /**
+     * The pool shared by every AI which searches in parallel, so creating an AI doesn't start threads
+     * which outlive it (ForkJoinPool's threads are only started when needed, and are daemons).
+     */
+    private static final ForkJoinPool sharedPool = new ForkJoinPool();
+
     static {
         List<String> tempValidAINames = new ArrayList<String>();
         for (Method method : AIBuilder.class.getDeclaredMethods())
@@ -46,6 +54,88 @@ public class AIBuilder {
                 new ExpectationWeightEvaluator());
     }
 
+    private static AIController createBitmaskProbabilisticAI() {
+        return new ProbabilisticAI(
+                new LinearPlyManager(),
+                new FastRouteSelector(),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createTranspositionProbabilisticAI() {
+        return new ProbabilisticAI(
+                new LinearPlyManager(),
+                new FastRouteSelector(new TranspositionTable(16)),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createExpectiminimaxAI() {
+        return new ProbabilisticAI(
+                new LinearPlyManager(),
+                new ExpectiminimaxRouteSelector(),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createOrderedExpectiminimaxAI() {
+        return new ProbabilisticAI(
+                new LinearPlyManager(),
+                new ExpectiminimaxRouteSelector(new MoveOrderer()),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createParallelProbabilisticAI() {
+        return new ProbabilisticAI(
+                new LinearPlyManager(),
+                new ParallelRouteSelector(sharedPool),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createPonderingProbabilisticAI() {
+        ProbabilisticAI ai = new ProbabilisticAI(
+                new LinearPlyManager(),
+                new FastRouteSelector(),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+        ai.setPondering(true);
+        return ai;
+    }
+
+    private static AIController createArenaProbabilisticAI() {
+        ProbabilisticAI ai = new ProbabilisticAI(
+                new LinearPlyManager(),
+                new FastRouteSelector(),
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+        ai.setUsingArena(true);
+        return ai;
+    }
+
+    private static AIController createMonteCarloAI() {
+        return new MonteCarloAI(
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+    }
+
+    private static AIController createPerfectInformationSamplingAI() {
+        return new PerfectInformationSamplingAI(
+                new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY,
+                sharedPool);
+    }
+
     private static AIController createAIWithValueAddedPerChoice(int value) {
         return new ProbabilisticAI(
                 new LinearPlyManager(),
@@ -4,6 +4,7 @@ import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.ImmutableBone;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The top-level class in the AI algorithm which ties together the GameState, PlyManager, RouteSelector,
@@ -38,6 +39,27 @@ public interface AIController {
      */
     Choice getBestChoice();
 
+    /**
+     * Gets the best choice to make (as with getBestChoice()), taking about the given time to search.
+     * The search may stop early if it can't be improved.  Once the search has a choice to return, it
+     * stops within a small, bounded time of the budget running out (eg. ProbabilisticAI drops the
+     * iteration under way when it next expands a state).  Only the work which finds the first choice
+     * always finishes, so a tiny budget can be overrun by that.
+     *
+     * @param budget the time allowed to search for the best choice.
+     * @param unit the unit of 'budget'.
+     * @return the best choice to make.
+     */
+    Choice getBestChoice(long budget, TimeUnit unit);
+
+    /**
+     * Sets the listener to give the SearchStats of each search for the best choice to, or null to
+     * stop collecting them.  AIs which don't search may never call the listener.
+     *
+     * @param searchStatsListener the listener to give SearchStats to, or null.
+     */
+    void setSearchStatsListener(SearchStatsListener searchStatsListener);
+
     /**
      * Returns the weight of the AI's hand (ie. ignoring the opponent's hand).
      *
@@ -0,0 +1,72 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Choice;
+
+import java.util.List;
+
+/**
+ * A StateEnumerator which passes calls on to another StateEnumerator, but throws a SearchDeadlineException
+ * instead once its deadline has passed.  Every state in the tree is expanded through its StateEnumerator
+ * (before anything in the tree is changed), so a search of the tree stops within one expansion of the
+ * deadline, wherever in the tree it is.  While there is no deadline (the default) it only passes the
+ * calls on.
+ *
+ * @author Sam Wright
+ */
+class DeadlineStateEnumerator implements StateEnumerator {
+    private final StateEnumerator stateEnumerator;
+    private volatile boolean hasDeadline = false;
+    private volatile long deadline;
+
+    DeadlineStateEnumerator(StateEnumerator stateEnumerator) {
+        this.stateEnumerator = stateEnumerator;
+    }
+
+    /**
+     * Sets the System.nanoTime() after which expanding a state throws a SearchDeadlineException.
+     *
+     * @param deadline the System.nanoTime() to stop expanding states at.
+     */
+    void setDeadline(long deadline) {
+        this.deadline = deadline;
+        hasDeadline = true;
+    }
+
+    /**
+     * Removes the deadline, so states can be expanded at any time.
+     */
+    void clearDeadline() {
+        hasDeadline = false;
+    }
+
+    private void checkDeadline() {
+        if (hasDeadline && System.nanoTime() - deadline > 0)
+            throw new SearchDeadlineException();
+    }
+
+    @Override
+    public List<Choice> getMyValidChoices(BoneState boneState) {
+        checkDeadline();
+        return stateEnumerator.getMyValidChoices(boneState);
+    }
+
+    @Override
+    public List<Choice> getOpponentValidChoices(BoneState boneState) {
+        checkDeadline();
+        return stateEnumerator.getOpponentValidChoices(boneState);
+    }
+
+    @Override
+    public int getMyValidMoves(BoneState boneState, int[] moves) {
+        checkDeadline();
+        return stateEnumerator.getMyValidMoves(boneState, moves);
+    }
+
+    @Override
+    public int getOpponentValidMoves(BoneState boneState, int[] moves) {
+        checkDeadline();
+        return stateEnumerator.getOpponentValidMoves(boneState, moves);
+    }
+}
@@ -14,7 +14,11 @@ import java.util.List;
  */
 public interface GameState {
 
-    public static enum Status {NOT_YET_CALCULATED, HAS_CHILD_STATES, GAME_OVER}
+    /**
+     * SOLVED is a leaf whose value is that of the end of the round (see GameStateImpl.setEndgameTablebase),
+     * so the round isn't over yet but the state isn't searched any deeper.
+     */
+    public static enum Status {NOT_YET_CALCULATED, HAS_CHILD_STATES, GAME_OVER, SOLVED}
 
     /**
      * Gets the current status.
@@ -66,6 +70,14 @@ public interface GameState {
      */
     void increasePly(int plyIncrease);
 
+    /**
+     * Gets the number of levels below this state which the ply allows (ie. zero if this
+     * state is at the edge of the searched tree).
+     *
+     * @return the number of levels below this state which the ply allows.
+     */
+    int getRemainingPly();
+
     /**
      * Gets the value of my hand.
      *
@@ -0,0 +1,530 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Choice;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static dominoes.players.ai.algorithm.helper.Choice.Action;
+
+/**
+ * A store for a GameState tree which keeps the states in parallel primitive arrays (rather than
+ * as one object per state, like GameStateImpl), so that each state takes a few tens of bytes and
+ * the children of a state are next to each other in memory.
+ *
+ * The states are accessed through cursors, which implement GameState and behave as GameStateImpl
+ * (with the same lazy creation of child states).  A cursor is only an index into the arrays, and a new
+ * one is made each time a state is accessed, so the arena holds no objects per state: cursors must be
+ * compared with equals(...) rather than by identity.  The BoneStates are kept packed (see
+ * BitmaskBoneState.getPackedFields()), with the opponent's chances of every state in one shared int array,
+ * and getBoneState() unpacks a new (short-lived) BitmaskBoneState on each call.
+ *
+ * The arena is reused between moves: retainSubtree(...) copies the subtree under the chosen state
+ * into a second set of arrays, and the two sets swap roles.  Cursors from before the copy are then invalid.
+ *
+ * NB. this isn't safe to use from several threads at once.
+ *
+ * @author Sam Wright
+ */
+public class GameStateArena {
+    private static final int NO_PARENT = -1;
+    private static final byte NO_CHOICE = -1;
+
+    private static final byte MY_TURN = 1;
+    private static final byte LAST_CHOICE_WAS_PASS = 2;
+    private static final byte EXPANDED = 4;
+    private static final byte GAME_OVER = 8;
+    private static final byte COLLAPSED = 16;
+
+    private final StateEnumerator stateEnumerator;
+    private final HandEvaluator handEvaluator;
+    private final int minPly;
+    private int movesPlayed;
+    private int maxStates = Integer.MAX_VALUE;
+    private final int[] moves = new int[StateEnumerator.MAX_MOVES];
+
+    private Nodes nodes, spareNodes;
+
+    /**
+     * Creates an empty arena.
+     *
+     * @param stateEnumerator the StateEnumerator object to use to enumerate child states.
+     * @param handEvaluator the HandEvaluator object to use to evaluate states.
+     * @param minPly the minimum ply to give to all states.
+     * @param initialCapacity the number of states to allocate space for initially.
+     */
+    public GameStateArena(StateEnumerator stateEnumerator, HandEvaluator handEvaluator, int minPly, int initialCapacity) {
+        this.stateEnumerator = stateEnumerator;
+        this.handEvaluator = handEvaluator;
+        this.minPly = minPly;
+
+        nodes = new Nodes(Math.max(initialCapacity, 1));
+        spareNodes = new Nodes(Math.max(initialCapacity, 1));
+    }
+
+    /**
+     * Discards all states, and creates the initial state of a game.
+     *
+     * @param isMyTurn true iff the first turn is mine.
+     * @param initialBoneState the BoneState at the start of the game.
+     * @return the initial state.
+     */
+    public GameState createRoot(boolean isMyTurn, BitmaskBoneState initialBoneState) {
+        nodes.reset();
+        movesPlayed = 0;
+
+        int root = nodes.add();
+        nodes.parents[root] = NO_PARENT;
+        nodes.choiceCodes[root] = NO_CHOICE;
+        nodes.values[root] = handEvaluator.evaluateInitialValue(initialBoneState);
+        nodes.moveNumbers[root] = 0;
+        nodes.flags[root] = isMyTurn ? MY_TURN : 0;
+        setBoneState(nodes, root, initialBoneState);
+
+        return cursor(root);
+    }
+
+    /**
+     * Makes the given state the root of the tree, discarding all states which aren't its descendants.
+     * The kept states are copied into the spare arrays (which then swap with the current arrays), so
+     * all cursors obtained before this call are invalid afterwards.
+     *
+     * @param state the new root state (a cursor from this arena).
+     * @return the cursor of the new root state.
+     */
+    public GameState retainSubtree(GameState state) {
+        int oldRoot = indexOf(state);
+        Nodes from = nodes, to = spareNodes;
+        to.reset();
+
+        // Copy breadth-first, so that each state's children stay next to each other
+        int newRoot = to.add();
+        copyNode(from, oldRoot, to, newRoot, NO_PARENT);
+        int[] oldIndices = new int[16];
+        oldIndices[newRoot] = oldRoot;
+
+        for (int newIndex = 0; newIndex < to.size; ++newIndex) {
+            int oldIndex = oldIndices[newIndex];
+            if ((from.flags[oldIndex] & EXPANDED) == 0)
+                continue;
+
+            int firstOldChild = from.firstChildren[oldIndex];
+            int childCount = from.childCounts[oldIndex];
+            to.firstChildren[newIndex] = to.size;
+
+            for (int i = 0; i < childCount; ++i) {
+                int newChild = to.add();
+                copyNode(from, firstOldChild + i, to, newChild, newIndex);
+
+                if (newChild >= oldIndices.length)
+                    oldIndices = Arrays.copyOf(oldIndices, oldIndices.length * 2);
+                oldIndices[newChild] = firstOldChild + i;
+            }
+        }
+
+        from.reset();
+        nodes = to;
+        spareNodes = from;
+        return cursor(newRoot);
+    }
+
+    private static void copyNode(Nodes from, int fromIndex, Nodes to, int toIndex, int toParent) {
+        to.parents[toIndex] = toParent;
+        to.choiceCodes[toIndex] = from.choiceCodes[fromIndex];
+        to.values[toIndex] = from.values[fromIndex];
+        to.childCounts[toIndex] = from.childCounts[fromIndex];
+        to.extraPlies[toIndex] = from.extraPlies[fromIndex];
+        to.moveNumbers[toIndex] = from.moveNumbers[fromIndex];
+        to.flags[toIndex] = from.flags[fromIndex];
+        to.packedBoneStates[toIndex] = from.packedBoneStates[fromIndex];
+        to.hashes[toIndex] = from.hashes[fromIndex];
+
+        // Keep sharing the parent's chances where they were shared before
+        int fromParent = from.parents[fromIndex];
+        if (toParent != NO_PARENT && from.chanceStarts[fromIndex] == from.chanceStarts[fromParent]) {
+            to.chanceStarts[toIndex] = to.chanceStarts[toParent];
+            to.chanceLengths[toIndex] = to.chanceLengths[toParent];
+        } else {
+            to.chanceStarts[toIndex] = to.addChances(from.chancePool, from.chanceStarts[fromIndex], from.chanceLengths[fromIndex]);
+            to.chanceLengths[toIndex] = from.chanceLengths[fromIndex];
+        }
+    }
+
+    /**
+     * Gets the number of states in the arena.
+     *
+     * @return the number of states in the arena.
+     */
+    public int size() {
+        return nodes.size;
+    }
+
+    /**
+     * Sets the maximum number of states in the arena.  Once the arena is full, states which
+     * need children stay as leaves (until their ply is next increased).
+     *
+     * @param maxStates the maximum number of states in the arena.
+     */
+    public void setMaxStates(int maxStates) {
+        if (maxStates < 1)
+            throw new IllegalArgumentException("maxStates must be positive");
+        this.maxStates = maxStates;
+    }
+
+    private int indexOf(GameState state) {
+        if (!(state instanceof Cursor) || ((Cursor) state).arena() != this)
+            throw new IllegalArgumentException("Not a state from this arena");
+        return ((Cursor) state).index;
+    }
+
+    private Cursor cursor(int index) {
+        return new Cursor(index);
+    }
+
+    private static void setBoneState(Nodes nodes, int index, BitmaskBoneState boneState) {
+        int[] chances = boneState.getChances();
+        nodes.packedBoneStates[index] = boneState.getPackedFields();
+        nodes.chanceStarts[index] = nodes.addChances(chances, 0, chances.length);
+        nodes.chanceLengths[index] = (byte) chances.length;
+        nodes.hashes[index] = boneState.getHash();
+    }
+
+    /**
+     * Sets the BoneState of a child state whose chances are the same as its parent's, sharing them.
+     */
+    private static void setBoneState(Nodes nodes, int index, BitmaskBoneState boneState, int parent) {
+        nodes.packedBoneStates[index] = boneState.getPackedFields();
+        nodes.chanceStarts[index] = nodes.chanceStarts[parent];
+        nodes.chanceLengths[index] = nodes.chanceLengths[parent];
+        nodes.hashes[index] = boneState.getHash();
+    }
+
+    private BitmaskBoneState getBoneState(int index) {
+        int start = nodes.chanceStarts[index];
+        int[] chances = Arrays.copyOfRange(nodes.chancePool, start, start + nodes.chanceLengths[index]);
+        return BitmaskBoneState.fromPackedFields(nodes.packedBoneStates[index], chances, nodes.hashes[index]);
+    }
+
+    private boolean hasFlag(int index, byte flag) {
+        return (nodes.flags[index] & flag) != 0;
+    }
+
+    private GameState.Status getStatus(int index) {
+        if (hasFlag(index, GAME_OVER))
+            return GameState.Status.GAME_OVER;
+
+        if (hasFlag(index, COLLAPSED))
+            return GameState.Status.NOT_YET_CALCULATED;
+
+        if (movesPlayed + minPly + nodes.extraPlies[index] > nodes.moveNumbers[index])
+            return GameState.Status.HAS_CHILD_STATES;
+        else
+            return GameState.Status.NOT_YET_CALCULATED;
+    }
+
+    /**
+     * Creates the child states of the given state (or finds it's game over), as GameStateImpl.createChildren().
+     *
+     * @return true iff the children were created (ie. the arena wasn't full).
+     */
+    private boolean expand(int index) {
+        BitmaskBoneState boneState = getBoneState(index);
+        boolean isMyTurn = hasFlag(index, MY_TURN);
+        byte choiceCode = nodes.choiceCodes[index];
+        boolean isPass = choiceCode != NO_CHOICE && Choice.fromCode(choiceCode).getAction() == Action.PASS;
+
+        int numberOfMoves;
+
+        // If this is the second pass in a row, or someone has placed all of their bones, it's game over
+        if ((isPass && hasFlag(index, LAST_CHOICE_WAS_PASS))
+                || boneState.getSizeOfOpponentHand() == 0 || boneState.getMyBonesMask() == 0)
+            numberOfMoves = 0;
+        else if (isMyTurn)
+            numberOfMoves = stateEnumerator.getMyValidMoves(boneState, moves);
+        else
+            numberOfMoves = stateEnumerator.getOpponentValidMoves(boneState, moves);
+
+        if (numberOfMoves == 0) {
+            nodes.flags[index] |= GAME_OVER;
+            return true;
+        }
+
+        if (nodes.size + numberOfMoves > maxStates) {
+            nodes.flags[index] |= COLLAPSED;
+            return false;
+        }
+
+        double value = nodes.values[index];
+        int extraPly = Math.max(nodes.extraPlies[index] - 1, 0);
+        int moveNumber = nodes.moveNumbers[index] + 1;
+        byte lastChoiceWasPass = isPass ? LAST_CHOICE_WAS_PASS : 0;
+
+        int firstChild = nodes.size;
+        for (int i = 0; i < numberOfMoves; ++i) {
+            Choice choice = Choice.fromCode(moves[i]);
+            int child = nodes.add();
+            boolean isChildMyTurn = choice.getAction() == Action.PICKED_UP ? isMyTurn : !isMyTurn;
+
+            nodes.parents[child] = index;
+            nodes.choiceCodes[child] = (byte) moves[i];
+            nodes.values[child] = value + handEvaluator.addedValueFromChoice(boneState, isMyTurn, isPass, choice);
+            nodes.extraPlies[child] = extraPly;
+            nodes.moveNumbers[child] = moveNumber;
+            nodes.flags[child] = (byte) ((isChildMyTurn ? MY_TURN : 0) | lastChoiceWasPass);
+
+            BitmaskBoneState childBoneState = (BitmaskBoneState) boneState.createNext(choice, isMyTurn);
+            if (childBoneState.getChances() == boneState.getChances())
+                setBoneState(nodes, child, childBoneState, index);
+            else
+                setBoneState(nodes, child, childBoneState);
+        }
+
+        nodes.firstChildren[index] = firstChild;
+        nodes.childCounts[index] = (byte) numberOfMoves;
+        nodes.flags[index] |= EXPANDED;
+        return true;
+    }
+
+    /**
+     * The parallel arrays holding the states, where each state is an index into the arrays.
+     */
+    private static class Nodes {
+        int size;
+        int[] parents;
+        byte[] choiceCodes;
+        double[] values;
+        int[] firstChildren;
+        byte[] childCounts;
+        int[] extraPlies;
+        int[] moveNumbers;
+        byte[] flags;
+        long[] packedBoneStates;
+        int[] chanceStarts;
+        byte[] chanceLengths;
+        long[] hashes;
+
+        /**
+         * The chances (see BitmaskBoneState.getChances()) of all states, where each state's are
+         * chancePool[chanceStarts[i]] to chancePool[chanceStarts[i] + chanceLengths[i] - 1].
+         */
+        int[] chancePool;
+        int poolSize;
+
+        Nodes(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            parents = new int[capacity];
+            choiceCodes = new byte[capacity];
+            values = new double[capacity];
+            firstChildren = new int[capacity];
+            childCounts = new byte[capacity];
+            extraPlies = new int[capacity];
+            moveNumbers = new int[capacity];
+            flags = new byte[capacity];
+            packedBoneStates = new long[capacity];
+            chanceStarts = new int[capacity];
+            chanceLengths = new byte[capacity];
+            hashes = new long[capacity];
+            chancePool = new int[capacity * 2];
+        }
+
+        /**
+         * Adds a state (with all fields zero) and returns its index.
+         */
+        int add() {
+            if (size == parents.length)
+                grow();
+
+            int index = size++;
+            childCounts[index] = 0;
+            extraPlies[index] = 0;
+            flags[index] = 0;
+            return index;
+        }
+
+        private void grow() {
+            int capacity = parents.length * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            choiceCodes = Arrays.copyOf(choiceCodes, capacity);
+            values = Arrays.copyOf(values, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+            extraPlies = Arrays.copyOf(extraPlies, capacity);
+            moveNumbers = Arrays.copyOf(moveNumbers, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            packedBoneStates = Arrays.copyOf(packedBoneStates, capacity);
+            chanceStarts = Arrays.copyOf(chanceStarts, capacity);
+            chanceLengths = Arrays.copyOf(chanceLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+
+        /**
+         * Appends the given chances to the pool and returns where they start.
+         */
+        int addChances(int[] chances, int start, int length) {
+            if (poolSize + length > chancePool.length)
+                chancePool = Arrays.copyOf(chancePool, Math.max(chancePool.length * 2, poolSize + length));
+
+            System.arraycopy(chances, start, chancePool, poolSize, length);
+            poolSize += length;
+            return poolSize - length;
+        }
+
+        /**
+         * Removes all states (keeping the arrays for reuse).
+         */
+        void reset() {
+            size = 0;
+            poolSize = 0;
+        }
+    }
+
+    /**
+     * A view of one state in the arena.
+     */
+    private class Cursor implements GameState {
+        private final int index;
+
+        private Cursor(int index) {
+            this.index = index;
+        }
+
+        private GameStateArena arena() {
+            return GameStateArena.this;
+        }
+
+        @Override
+        public Status getStatus() {
+            return GameStateArena.this.getStatus(index);
+        }
+
+        @Override
+        public List<GameState> getChildStates() {
+            if (!hasFlag(index, EXPANDED) && !hasFlag(index, GAME_OVER)) {
+                if (getStatus() != Status.HAS_CHILD_STATES || !expand(index))
+                    return Collections.emptyList();
+            }
+
+            if (hasFlag(index, GAME_OVER))
+                return Collections.emptyList();
+            else
+                return new ChildList(nodes.firstChildren[index], nodes.childCounts[index]);
+        }
+
+        @Override
+        public GameState choose(Choice choice) {
+            if (!hasFlag(index, EXPANDED) && !hasFlag(index, GAME_OVER)) {
+                // The choice was actually made, so the children are needed even if the arena is full
+                int oldMaxStates = maxStates;
+                maxStates = Integer.MAX_VALUE;
+                expand(index);
+                maxStates = oldMaxStates;
+            }
+
+            byte code = (byte) Choice.codeOf(choice);
+            if (hasFlag(index, EXPANDED)) {
+                int firstChild = nodes.firstChildren[index];
+                for (int i = 0; i < nodes.childCounts[index]; ++i) {
+                    if (nodes.choiceCodes[firstChild + i] == code) {
+                        ++movesPlayed;
+                        return cursor(firstChild + i);
+                    }
+                }
+            }
+
+            throw new RuntimeException("Choice was not valid: " + choice + "\nBoneState: " + getBoneState());
+        }
+
+        @Override
+        public Choice getChoiceTaken() {
+            byte code = nodes.choiceCodes[index];
+            return code == NO_CHOICE ? null : Choice.fromCode(code);
+        }
+
+        @Override
+        public boolean isMyTurn() {
+            return hasFlag(index, MY_TURN);
+        }
+
+        @Override
+        public GameState getParent() {
+            int parent = nodes.parents[index];
+            return parent == NO_PARENT ? null : cursor(parent);
+        }
+
+        @Override
+        public void increasePly(int plyIncrease) {
+            nodes.extraPlies[index] += plyIncrease;
+            if (plyIncrease > 0)
+                nodes.flags[index] &= ~COLLAPSED;
+        }
+
+        @Override
+        public int getRemainingPly() {
+            return Math.max(movesPlayed + minPly + nodes.extraPlies[index] - nodes.moveNumbers[index], 0);
+        }
+
+        @Override
+        public double getValue() {
+            return nodes.values[index];
+        }
+
+        @Override
+        public BoneState getBoneState() {
+            return GameStateArena.this.getBoneState(index);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Cursor)) return false;
+
+            Cursor that = (Cursor) o;
+            return index == that.index && arena() == that.arena();
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s , now value = %.1f (arena index %d)%n",
+                    (isMyTurn() ? "opponent" : "I"), getChoiceTaken(), getValue(), index);
+        }
+    }
+
+    /**
+     * The cursors of a contiguous run of states.
+     */
+    private class ChildList extends AbstractList<GameState> implements RandomAccess {
+        private final int first, size;
+
+        private ChildList(int first, int size) {
+            this.first = first;
+            this.size = size;
+        }
+
+        @Override
+        public GameState get(int i) {
+            if (i < 0 || i >= size)
+                throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+            return cursor(first + i);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
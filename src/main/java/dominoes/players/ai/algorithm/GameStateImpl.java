@@ -1,10 +1,13 @@
 package dominoes.players.ai.algorithm;
 
+import dominoes.players.ai.algorithm.components.EndgameTablebase;
 import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.components.PerfectInformationSolver;
 import dominoes.players.ai.algorithm.components.StateEnumerator;
 import dominoes.players.ai.algorithm.helper.*;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import static dominoes.players.ai.algorithm.helper.Choice.Action;
 
@@ -21,13 +24,65 @@ public class GameStateImpl implements GameState {
     private final boolean isMyTurn;
     private final int moveNumber;
     private final MoveCounter moveCounter;
-    private final GameState parent;
+    private volatile GameState parent;
+    private final boolean lastChoiceWasPass;
     private final Choice choiceTaken;
     private final BoneState boneState;
 
-    private List<GameState> childStates = Collections.emptyList();
-    private Status status = Status.NOT_YET_CALCULATED;
-    private int extraPly;
+    /**
+     * The tablebase to value endgames with (see setEndgameTablebase), and the value this state has at the
+     * end of the round if both players play perfectly from it (or NaN if the tablebase doesn't cover it).
+     */
+    private EndgameTablebase endgameTablebase;
+    private double solvedValue = Double.NaN;
+
+    private static final AtomicIntegerFieldUpdater<GameStateImpl> extraPlyUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(GameStateImpl.class, "extraPly");
+
+    /**
+     * The status and child states, which are published together (and only once) so they
+     * can be read without locking.
+     */
+    private volatile Children children = Children.NOT_YET_CALCULATED;
+    private volatile int extraPly;
+
+    /**
+     * True iff this state's children were collapsed (or couldn't be created because the tree
+     * was full), in which case they aren't created until this state's ply is next increased.
+     */
+    private volatile boolean isCollapsed = false;
+
+    /**
+     * The value of the best route from this state when it was collapsed (see collapse(double)), which is
+     * its value until it's expanded again (or NaN if there isn't one), and the height of the subtree which
+     * was discarded.  These are written before isCollapsed, which publishes them.
+     */
+    private double collapsedValue = Double.NaN;
+    private int collapsedHeight;
+
+    /**
+     * The best route from this state (see setCachedRoute), or null if it needs finding again, and
+     * the number of moves played when it was found.  These are only used during a search, and searches
+     * of a state are never concurrent, so they aren't volatile.
+     */
+    private Route cachedRoute;
+    private int cachedRouteMovesPlayed;
+
+    /**
+     * An immutable pair of the status and the child states.
+     */
+    private static class Children {
+        static final Children NOT_YET_CALCULATED =
+                new Children(Status.NOT_YET_CALCULATED, Collections.<GameState>emptyList());
+
+        final Status status;
+        final List<GameState> childStates;
+
+        Children(Status status, List<GameState> childStates) {
+            this.status = status;
+            this.childStates = childStates;
+        }
+    }
 
     /**
      * Creates an initial GameState (ie. at the beginning of the game, with an empty layout).
@@ -41,15 +96,31 @@ public class GameStateImpl implements GameState {
      */
     public GameStateImpl(StateEnumerator stateEnumerator, HandEvaluator handEvaluator,
                          int minPly, List<ImmutableBone> myBones, boolean isMyTurn, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+        this(stateEnumerator, handEvaluator, minPly, isMyTurn,
+                new BoneStateImpl(myBones, sizeOfBoneyard, initialLayout));
+    }
+
+    /**
+     * Creates an initial GameState from the given initial BoneState.
+     *
+     * @param stateEnumerator the StateEnumerator object to use to enumerate child states.
+     * @param handEvaluator the HandEvaluator object to use to evaluate this and future hands.
+     * @param minPly the initial extraPly to give to this and all child states.
+     * @param isMyTurn true iff the first turn is mine.
+     * @param initialBoneState the BoneState at the start of the game.
+     */
+    public GameStateImpl(StateEnumerator stateEnumerator, HandEvaluator handEvaluator,
+                         int minPly, boolean isMyTurn, BoneState initialBoneState) {
         this.isMyTurn = isMyTurn;
         this.stateEnumerator = stateEnumerator;
         this.handEvaluator = handEvaluator;
 
         moveCounter = new MoveCounter(minPly);
         parent = null;
+        lastChoiceWasPass = false;
         moveNumber = 0;
         choiceTaken = null;
-        boneState = new BoneStateImpl(myBones, sizeOfBoneyard, initialLayout);
+        boneState = initialBoneState;
 
         value = handEvaluator.evaluateInitialValue(boneState);
         extraPly = 0;
@@ -79,6 +150,7 @@ public class GameStateImpl implements GameState {
         this.extraPly = parent.extraPly;
         this.handEvaluator = parent.handEvaluator;
         this.stateEnumerator = parent.stateEnumerator;
+        this.endgameTablebase = parent.endgameTablebase;
 
         if (choiceTaken.getAction() == Action.PICKED_UP)
             this.isMyTurn = parent.isMyTurn();
@@ -87,11 +159,114 @@ public class GameStateImpl implements GameState {
 
         this.boneState = parent.boneState.createNext(choiceTaken, parent.isMyTurn());
 
+        // Remembered (rather than read from the parent when needed) so this state still works once detached
         Choice previousChoice = parent.getChoiceTaken();
-        boolean lastChoiceWasPass = previousChoice == null ? false : previousChoice.getAction() == Action.PASS;
-        this.value = parent.getValue() + handEvaluator.addedValueFromChoice(parent.getBoneState(), parent.isMyTurn(),
+        lastChoiceWasPass = previousChoice == null ? false : previousChoice.getAction() == Action.PASS;
+        this.value = parent.value + handEvaluator.addedValueFromChoice(parent.getBoneState(), parent.isMyTurn(),
                 lastChoiceWasPass, choiceTaken);
         extraPly = Math.max(parent.extraPly - 1, 0);
+
+        if (endgameTablebase != null && isCoveredByTablebase())
+            solvedValue = getValueAfterPerfectPlay();
+    }
+
+    /**
+     * Returns true iff the endgame tablebase has the value of this state (which needs the boneyard to be
+     * empty, so the opponent's hand is every unknown bone) and the round hasn't already ended.
+     */
+    private boolean isCoveredByTablebase() {
+        if (boneState.getSizeOfBoneyard() != 0 || boneState.isLayoutEmpty() || (isPass(choiceTaken) && lastChoiceWasPass))
+            return false;
+
+        return endgameTablebase.covers(boneState.getMyBonesMask(), boneState.getUnknownBonesMask());
+    }
+
+    /**
+     * Returns the value (as the HandEvaluator gives it) that this state would have at the end of the round,
+     * if both players played perfectly from it.  The perfect choices are found by looking up the value
+     * of each choice's position in the tablebase.
+     */
+    private double getValueAfterPerfectPlay() {
+        BoneState currentBoneState = boneState;
+        boolean isCurrentlyMyTurn = isMyTurn;
+        boolean lastWasPass = isPass(choiceTaken);
+        boolean lastButOneWasPass = lastChoiceWasPass;
+        double currentValue = value;
+
+        while (!(lastWasPass && lastButOneWasPass) && !currentBoneState.getMyBones().isEmpty()
+                && currentBoneState.getSizeOfOpponentHand() != 0) {
+            List<Choice> choices = isCurrentlyMyTurn ? stateEnumerator.getMyValidChoices(currentBoneState)
+                                                     : stateEnumerator.getOpponentValidChoices(currentBoneState);
+
+            // As in createChildren(), a state with no valid choices ends the round
+            if (choices.isEmpty())
+                break;
+
+            Choice bestChoice = null;
+            BoneState bestBoneState = null;
+            int bestScore = 0;
+
+            for (Choice choice : choices) {
+                BoneState nextBoneState = currentBoneState.createNext(choice, isCurrentlyMyTurn);
+                int myBones = nextBoneState.getMyBonesMask();
+                int opponentBones = nextBoneState.getUnknownBonesMask();
+
+                int score;
+                if (myBones == 0 || opponentBones == 0 || (lastWasPass && isPass(choice)))
+                    score = PerfectInformationSolver.getScore(myBones, opponentBones);
+                else
+                    score = endgameTablebase.getValue(myBones, opponentBones, nextBoneState.getLayoutLeft(),
+                            nextBoneState.getLayoutRight(), !isCurrentlyMyTurn, isPass(choice));
+
+                if (bestChoice == null || (isCurrentlyMyTurn ? score > bestScore : score < bestScore)) {
+                    bestChoice = choice;
+                    bestBoneState = nextBoneState;
+                    bestScore = score;
+                }
+            }
+
+            currentValue += handEvaluator.addedValueFromChoice(currentBoneState, isCurrentlyMyTurn, lastWasPass,
+                    bestChoice);
+
+            currentBoneState = bestBoneState;
+            isCurrentlyMyTurn = !isCurrentlyMyTurn;
+            lastButOneWasPass = lastWasPass;
+            lastWasPass = isPass(bestChoice);
+        }
+
+        return currentValue;
+    }
+
+    private static boolean isPass(Choice choice) {
+        return choice != null && choice.getAction() == Action.PASS;
+    }
+
+    /**
+     * Returns true iff this state is valued by the tablebase, so is a leaf.  This is never true of the
+     * current state (ie. once the state has been chosen), so the game can still be played from it.
+     */
+    private boolean isSolvedLeaf() {
+        return !Double.isNaN(solvedValue) && moveNumber > moveCounter.getMovesPlayed();
+    }
+
+    /**
+     * Returns true iff this state has been collapsed, so is a leaf.  Like isSolvedLeaf(), this is never
+     * true of the current state.
+     */
+    private boolean isCollapsedLeaf() {
+        return isCollapsed && moveNumber > moveCounter.getMovesPlayed();
+    }
+
+    /**
+     * Sets the tablebase to value endgames with (or null, the default, for none).  States created after this
+     * (ie. this state's descendants, if this is called before they are created) which the tablebase covers
+     * are leaves (with the status SOLVED), whose value is the value they would have at the end of the round
+     * if both players played perfectly.  They still have children once chosen.
+     *
+     * @param endgameTablebase the tablebase to value endgames with, or null.
+     */
+    public void setEndgameTablebase(EndgameTablebase endgameTablebase) {
+        this.endgameTablebase = endgameTablebase;
     }
 
     /**
@@ -107,51 +282,80 @@ public class GameStateImpl implements GameState {
     }
 
     /**
-     * Lazily initialises childStates and updates the status.
+     * Lazily initialises the child states and updates the status.  This is safe to call from
+     * several threads at once: the children are only created once (under this state's lock),
+     * and once created are read without locking.
+     *
+     * @return the current status and child states.
      */
-    private void lazyChildrenInitialisation() {
-        Status desired_status = getStatus();
-        if (desired_status == status)
-            return;
-
-        if (desired_status == Status.HAS_CHILD_STATES) {
-            List<Choice> validChoicesList = getValidChoices();
+    private Children lazyChildrenInitialisation() {
+        Children currentChildren = children;
+        if (currentChildren.status != Status.NOT_YET_CALCULATED || getStatus() != Status.HAS_CHILD_STATES)
+            return currentChildren;
+
+        synchronized (this) {
+            // Another thread may have initialised (or collapsed) the children while this waited for the lock
+            if (children.status == Status.NOT_YET_CALCULATED && !isCollapsedLeaf()) {
+                children = createChildren();
+
+                // The children are searched again, so the value from before the collapse is out of date
+                if (children.status == Status.HAS_CHILD_STATES)
+                    collapsedValue = Double.NaN;
+            }
+            return children;
+        }
+    }
 
-            List<GameState> childStates;
+    /**
+     * Creates the child states (or finds it's game over).
+     */
+    private Children createChildren() {
+        List<Choice> validChoicesList = getValidChoices();
 
-            // If this is the second pass in a row, it's game over
-            if (choiceTaken != null && choiceTaken.getAction() == Action.PASS
-                    && parent.getChoiceTaken() != null && parent.getChoiceTaken().getAction() == Action.PASS)
-                childStates = Collections.emptyList();
+        List<GameState> childStates;
 
-            // If the opponent has placed all of their bones, it's game over
-            else if (boneState.getSizeOfOpponentHand() == 0)
-                childStates = Collections.emptyList();
+        // If this is the second pass in a row, it's game over
+        if (choiceTaken != null && choiceTaken.getAction() == Action.PASS && lastChoiceWasPass)
+            childStates = Collections.emptyList();
 
-            // If I have placed all of my bones, it's game over
-            else if (boneState.getMyBones().isEmpty())
-                childStates = Collections.emptyList();
+        // If the opponent has placed all of their bones, it's game over
+        else if (boneState.getSizeOfOpponentHand() == 0)
+            childStates = Collections.emptyList();
 
-            else {
-                childStates = new ArrayList<GameState>(validChoicesList.size());
-                for (Choice choice : validChoicesList)
-                    childStates.add(createNextState(choice));
-            }
+        // If I have placed all of my bones, it's game over
+        else if (boneState.getMyBones().isEmpty())
+            childStates = Collections.emptyList();
 
-            if (childStates.isEmpty())
-                status = Status.GAME_OVER;
-            else
-                status = Status.HAS_CHILD_STATES;
+        // If the tree is full, this stays a leaf (until its ply is increased again)
+        else if (!moveCounter.tryAddStates(validChoicesList.size())) {
+            isCollapsed = true;
+            return Children.NOT_YET_CALCULATED;
+        }
 
-            this.childStates = Collections.unmodifiableList(childStates);
+        else {
+            childStates = new ArrayList<GameState>(validChoicesList.size());
+            for (Choice choice : validChoicesList)
+                childStates.add(createNextState(choice));
         }
+
+        if (childStates.isEmpty())
+            return new Children(Status.GAME_OVER, Collections.<GameState>emptyList());
+        else
+            return new Children(Status.HAS_CHILD_STATES, Collections.unmodifiableList(childStates));
     }
 
     @Override
     public Status getStatus() {
-        if (status == Status.GAME_OVER)
+        if (children.status == Status.GAME_OVER)
             return Status.GAME_OVER;
 
+        // The rest of the round has already been solved
+        if (isSolvedLeaf())
+            return Status.SOLVED;
+
+        if (isCollapsedLeaf())
+            return Status.NOT_YET_CALCULATED;
+
         if (moveCounter.getMovesPlayed() + moveCounter.getMinPly() + extraPly > moveNumber)
             return Status.HAS_CHILD_STATES;
         else
@@ -160,13 +364,13 @@ public class GameStateImpl implements GameState {
 
     @Override
     public List<GameState> getChildStates() {
-        lazyChildrenInitialisation();
-        return childStates;
+        return lazyChildrenInitialisation().childStates;
     }
 
     @Override
     public GameState choose(Choice choice) {
         GameState chosenState = null;
+        Status status = children.status;
 
         if (status == Status.HAS_CHILD_STATES) {
             for (GameState childState : getChildStates()) {
@@ -177,6 +381,8 @@ public class GameStateImpl implements GameState {
             }
 
         } else if (status == Status.NOT_YET_CALCULATED && getValidChoices().contains(choice)) {
+            // The choice was actually made, so the new state is needed even if the tree is full
+            moveCounter.addStates(1);
             chosenState = createNextState(choice);
         }
 
@@ -214,14 +420,193 @@ public class GameStateImpl implements GameState {
         return parent;
     }
 
+    /**
+     * Detaches this state from its parent, so that getParent() returns null and (if nothing else
+     * refers to them) the parent and the parent's other descendants can be garbage collected.
+     *
+     * This is intended for after this state has been chosen, since routes from this state and
+     * its descendants never need to go above it.
+     */
+    public void detachFromParent() {
+        parent = null;
+        moveCounter.setNumberOfStates(countCreatedStates(this));
+    }
+
+    /**
+     * Collapses this state back to a leaf, discarding all of its descendants.  Its value and
+     * BoneState are kept, so its children can be created again once its ply is next increased.
+     *
+     * This mustn't be called during a search of the tree.
+     *
+     * @return the number of states discarded.
+     */
+    public int collapse() {
+        return collapse(Double.NaN);
+    }
+
+    /**
+     * Collapses this state back to a leaf (as collapse() does), but keeps the value of the best route
+     * from it as its value (see getValue()), so that searches still see what its subtree was worth.  It
+     * stays a leaf until its ply is increased to more than the height of the discarded subtree, so that
+     * deepening the route which ends at it doesn't just rebuild the same subtree.
+     *
+     * This mustn't be called during a search of the tree.
+     *
+     * @param backedUpValue the value of the best route from this state (eg. from the RouteSelector).
+     * @return the number of states discarded.
+     */
+    public int collapse(double backedUpValue) {
+        int discarded;
+
+        synchronized (this) {
+            if (children.status != Status.HAS_CHILD_STATES)
+                return 0;
+
+            discarded = countCreatedStates(this) - 1;
+            collapsedHeight = getHeight(this);
+            collapsedValue = backedUpValue;
+            children = Children.NOT_YET_CALCULATED;
+            isCollapsed = true;
+        }
+
+        invalidateCachedRoutes();
+
+        moveCounter.removeStates(discarded);
+        return discarded;
+    }
+
+    /**
+     * Sets the maximum number of states in the tree this state belongs to.  Once the tree is
+     * full, states which need children stay as leaves (until states are discarded, eg. by
+     * collapse() or by detachFromParent()).
+     *
+     * @param maxStates the maximum number of states in the tree.
+     */
+    public void setMaxStates(int maxStates) {
+        moveCounter.setMaxStates(maxStates);
+    }
+
+    /**
+     * Gets the number of states in the tree this state belongs to (since the tree was last
+     * detached from its parent).
+     *
+     * @return the number of states in the tree.
+     */
+    public int getNumberOfStates() {
+        return moveCounter.getNumberOfStates();
+    }
+
+    /**
+     * Counts the states which are kept in memory by this state (ie. this state's ancestors and
+     * all of their descendants which have been created).
+     *
+     * @return the number of states retained by this state.
+     */
+    public int countRetainedStates() {
+        GameState root = this;
+        while (root.getParent() != null)
+            root = root.getParent();
+
+        return countCreatedStates(root);
+    }
+
+    private static int getHeight(GameStateImpl state) {
+        int height = 0;
+        for (GameState childState : state.children.childStates)
+            height = Math.max(height, getHeight((GameStateImpl) childState) + 1);
+        return height;
+    }
+
+    private static int countCreatedStates(GameState state) {
+        int count = 1;
+
+        // NB. this doesn't use getChildStates(), which could create more states
+        if (state instanceof GameStateImpl) {
+            for (GameState childState : ((GameStateImpl) state).children.childStates)
+                count += countCreatedStates(childState);
+        }
+
+        return count;
+    }
+
     @Override
     public void increasePly(int plyIncrease) {
-        extraPly += plyIncrease;
+        extraPlyUpdater.addAndGet(this, plyIncrease);
+
+        // A state collapsed with its backed-up value isn't expanded until it would be searched deeper than before
+        if (plyIncrease > 0 && (Double.isNaN(collapsedValue) || getAllowedHeight() > collapsedHeight))
+            isCollapsed = false;
+        if (plyIncrease != 0)
+            invalidateCachedRoutes();
+    }
+
+    /**
+     * Returns the height of the subtree this state's ply allows, if nothing below it has its ply increased.
+     * Each child has one less extra ply and is one move later, so each level uses up two of the remaining
+     * ply until the extra ply runs out, and one after that.
+     */
+    private int getAllowedHeight() {
+        int remainingPly = getRemainingPly();
+        int childExtraPly = extraPly;
+        int height = 0;
+
+        while (remainingPly > 0) {
+            remainingPly -= childExtraPly > 0 ? 2 : 1;
+            childExtraPly = Math.max(childExtraPly - 1, 0);
+            ++height;
+        }
+
+        return height;
+    }
+
+    /**
+     * Gets a copy of the best route from this state, as cached by setCachedRoute(...), or null if there
+     * isn't one or it might have changed since (ie. if this state or a descendant has since had its ply
+     * increased or been collapsed, or a move has been played).
+     *
+     * @return a copy of the cached best route from this state, or null.
+     */
+    public Route getCachedRoute() {
+        Route route = cachedRoute;
+        if (route == null || cachedRouteMovesPlayed != moveCounter.getMovesPlayed())
+            return null;
+        else
+            return new Route(route);
+    }
+
+    /**
+     * Caches (a copy of) the best route from this state, so that a RouteSelector needn't search this
+     * state's subtree again until something in it changes.  The route must only depend on the states in
+     * this state's subtree (so, for example, not on a transposition table).
+     *
+     * @param route the best route from this state.
+     */
+    public void setCachedRoute(Route route) {
+        cachedRouteMovesPlayed = moveCounter.getMovesPlayed();
+        cachedRoute = new Route(route);
+    }
+
+    /**
+     * Discards the cached routes of this state and its ancestors, whose best routes may have changed.
+     */
+    private void invalidateCachedRoutes() {
+        for (GameState state = this; state instanceof GameStateImpl; state = state.getParent())
+            ((GameStateImpl) state).cachedRoute = null;
+    }
+
+    @Override
+    public int getRemainingPly() {
+        return Math.max(moveCounter.getMovesPlayed() + moveCounter.getMinPly() + extraPly - moveNumber, 0);
     }
 
     @Override
     public double getValue() {
-        return value;
+        if (isSolvedLeaf())
+            return solvedValue;
+        else if (isCollapsedLeaf() && !Double.isNaN(collapsedValue))
+            return collapsedValue;
+        else
+            return value;
     }
 
     @Override
@@ -0,0 +1,46 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Choice;
+
+/**
+ * A HandEvaluator which counts the calls to another HandEvaluator and the time they take (for SearchStats).
+ * While it's disabled (the default) it only passes the calls on, so it can be left in the tree whether or not
+ * stats are being collected.
+ *
+ * @author Sam Wright
+ */
+class InstrumentedHandEvaluator implements HandEvaluator {
+    private final HandEvaluator handEvaluator;
+    private final ThreadCounters counters = new ThreadCounters();
+    private volatile boolean isEnabled = false;
+
+    InstrumentedHandEvaluator(HandEvaluator handEvaluator) {
+        this.handEvaluator = handEvaluator;
+    }
+
+    void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    ThreadCounters getCounters() {
+        return counters;
+    }
+
+    @Override
+    public double evaluateInitialValue(BoneState boneState) {
+        return handEvaluator.evaluateInitialValue(boneState);
+    }
+
+    @Override
+    public double addedValueFromChoice(BoneState boneState, boolean isMyTurn, boolean prevChoiceWasPass, Choice choice) {
+        if (!isEnabled)
+            return handEvaluator.addedValueFromChoice(boneState, isMyTurn, prevChoiceWasPass, choice);
+
+        long start = System.nanoTime();
+        double addedValue = handEvaluator.addedValueFromChoice(boneState, isMyTurn, prevChoiceWasPass, choice);
+        counters.record(System.nanoTime() - start);
+        return addedValue;
+    }
+}
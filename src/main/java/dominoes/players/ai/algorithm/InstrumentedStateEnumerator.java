@@ -0,0 +1,76 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Choice;
+
+import java.util.List;
+
+/**
+ * A StateEnumerator which counts the calls to another StateEnumerator and the time they take (for SearchStats).
+ * While it's disabled (the default) it only passes the calls on, so it can be left in the tree whether or not
+ * stats are being collected.
+ *
+ * @author Sam Wright
+ */
+class InstrumentedStateEnumerator implements StateEnumerator {
+    private final StateEnumerator stateEnumerator;
+    private final ThreadCounters counters = new ThreadCounters();
+    private volatile boolean isEnabled = false;
+
+    InstrumentedStateEnumerator(StateEnumerator stateEnumerator) {
+        this.stateEnumerator = stateEnumerator;
+    }
+
+    void setEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    ThreadCounters getCounters() {
+        return counters;
+    }
+
+    @Override
+    public List<Choice> getMyValidChoices(BoneState boneState) {
+        if (!isEnabled)
+            return stateEnumerator.getMyValidChoices(boneState);
+
+        long start = System.nanoTime();
+        List<Choice> choices = stateEnumerator.getMyValidChoices(boneState);
+        counters.record(System.nanoTime() - start);
+        return choices;
+    }
+
+    @Override
+    public List<Choice> getOpponentValidChoices(BoneState boneState) {
+        if (!isEnabled)
+            return stateEnumerator.getOpponentValidChoices(boneState);
+
+        long start = System.nanoTime();
+        List<Choice> choices = stateEnumerator.getOpponentValidChoices(boneState);
+        counters.record(System.nanoTime() - start);
+        return choices;
+    }
+
+    @Override
+    public int getMyValidMoves(BoneState boneState, int[] moves) {
+        if (!isEnabled)
+            return stateEnumerator.getMyValidMoves(boneState, moves);
+
+        long start = System.nanoTime();
+        int numberOfMoves = stateEnumerator.getMyValidMoves(boneState, moves);
+        counters.record(System.nanoTime() - start);
+        return numberOfMoves;
+    }
+
+    @Override
+    public int getOpponentValidMoves(BoneState boneState, int[] moves) {
+        if (!isEnabled)
+            return stateEnumerator.getOpponentValidMoves(boneState, moves);
+
+        long start = System.nanoTime();
+        int numberOfMoves = stateEnumerator.getOpponentValidMoves(boneState, moves);
+        counters.record(System.nanoTime() - start);
+        return numberOfMoves;
+    }
+}
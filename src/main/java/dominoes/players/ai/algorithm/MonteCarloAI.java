@@ -0,0 +1,406 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.BoneStateFactory;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of AIController using Monte Carlo tree search (UCT) over GameStates.
+ *
+ * Each iteration walks down the tree from the current state, choosing the child with the best
+ * upper confidence bound (for me at my states, and for the opponent at theirs), except where I pick up,
+ * where the bone is sampled by the probability of the boneyard having it.  The first unvisited state
+ * is then valued by a batch of random playouts, each of which stops at the end of the game or after
+ * 'playoutDepth' choices, and is valued by the HandEvaluator (as GameState.getValue()).
+ *
+ * The tree is kept as GameStateImpls (with enough ply that every state can have children), and is kept
+ * between turns: choose(...) moves the root to the chosen child, keeping its statistics.  Playouts don't
+ * create GameStates, so only the states visited by iterations stay in memory.
+ *
+ * The best choice is the most visited child of the current state.  The playouts use a Random with a
+ * fixed seed, so given the same number of iterations the choices are deterministic.
+ *
+ * @author Sam Wright
+ */
+public class MonteCarloAI implements AIController {
+    public static final int DEFAULT_ITERATIONS = 5000;
+    public static final int DEFAULT_PLAYOUTS_PER_LEAF = 4;
+    public static final int DEFAULT_PLAYOUT_DEPTH = 12;
+    public static final double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+    /**
+     * The ply given to the tree, which is more than the number of choices in any game (so every
+     * state which isn't game over can have child states).
+     */
+    private static final int UNLIMITED_PLY = 1000;
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    private final StateEnumerator stateEnumerator;
+    private final HandEvaluator handEvaluator;
+    private final BoneStateFactory boneStateFactory;
+    private final Random random = new Random(0);
+    private final int[] moves = new int[StateEnumerator.MAX_MOVES];
+    private final double[] cumulativeProbabilities = new double[StateEnumerator.MAX_MOVES];
+    private final Node[] path = new Node[UNLIMITED_PLY];
+
+    private int iterations = DEFAULT_ITERATIONS;
+    private int playoutsPerLeaf = DEFAULT_PLAYOUTS_PER_LEAF;
+    private int playoutDepth = DEFAULT_PLAYOUT_DEPTH;
+    private double exploration = DEFAULT_EXPLORATION;
+
+    private Node root;
+
+    // The range of the values seen, so rewards can be scaled to [0, 1] for the confidence bounds
+    private double minValue, maxValue;
+
+    public MonteCarloAI(StateEnumerator stateEnumerator, HandEvaluator handEvaluator, BoneStateFactory boneStateFactory) {
+        this.stateEnumerator = stateEnumerator;
+        this.handEvaluator = handEvaluator;
+        this.boneStateFactory = boneStateFactory;
+    }
+
+    /**
+     * Sets the number of iterations getBestChoice() runs (getBestChoice(budget, unit) runs until the budget is spent).
+     *
+     * @param iterations the number of iterations for each choice.
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 1)
+            throw new IllegalArgumentException("iterations must be positive");
+        this.iterations = iterations;
+    }
+
+    /**
+     * Sets the number of playouts run (as one batch) from each newly visited state.
+     *
+     * @param playoutsPerLeaf the number of playouts from each newly visited state.
+     */
+    public void setPlayoutsPerLeaf(int playoutsPerLeaf) {
+        if (playoutsPerLeaf < 1)
+            throw new IllegalArgumentException("playoutsPerLeaf must be positive");
+        this.playoutsPerLeaf = playoutsPerLeaf;
+    }
+
+    /**
+     * Sets the maximum number of choices in a playout, after which the state is valued by the HandEvaluator.
+     *
+     * @param playoutDepth the maximum number of choices in a playout.
+     */
+    public void setPlayoutDepth(int playoutDepth) {
+        if (playoutDepth < 0)
+            throw new IllegalArgumentException("playoutDepth can't be negative");
+        this.playoutDepth = playoutDepth;
+    }
+
+    /**
+     * Sets the exploration constant of the upper confidence bound (larger values search less-visited
+     * choices more).
+     *
+     * @param exploration the exploration constant.
+     */
+    public void setExploration(double exploration) {
+        this.exploration = exploration;
+    }
+
+    /**
+     * A state in the search tree, with the statistics of the iterations which visited it.
+     */
+    private static class Node {
+        final GameState state;
+        Node[] children;
+
+        // For states where I pick up, the cumulative probability of picking up each child's bone
+        double[] cumulativeProbabilities;
+
+        int visits;
+        double totalValue;
+
+        Node(GameState state) {
+            this.state = state;
+        }
+    }
+
+    @Override
+    public void setInitialState(List<ImmutableBone> myBones, boolean isMyTurn, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+        BoneState initialBoneState = boneStateFactory.createInitialState(myBones, sizeOfBoneyard, initialLayout);
+        root = new Node(new GameStateImpl(stateEnumerator, handEvaluator, UNLIMITED_PLY, isMyTurn, initialBoneState));
+        minValue = maxValue = root.state.getValue();
+    }
+
+    @Override
+    public void choose(Choice choice) {
+        GameState chosenState = root.state.choose(choice);
+
+        Node chosenNode = null;
+        if (root.children != null)
+            for (Node child : root.children)
+                if (child.state == chosenState)
+                    chosenNode = child;
+
+        root = chosenNode != null ? chosenNode : new Node(chosenState);
+
+        // The rest of the tree can't be reached any more
+        ((GameStateImpl) chosenState).detachFromParent();
+    }
+
+    @Override
+    public Choice getBestChoice() {
+        return getBestChoice(NO_DEADLINE);
+    }
+
+    @Override
+    public Choice getBestChoice(long budget, TimeUnit unit) {
+        return getBestChoice(System.nanoTime() + unit.toNanos(budget));
+    }
+
+    private Choice getBestChoice(long deadline) {
+        expand(root);
+
+        if (root.children.length == 0)
+            throw new GameOverException();
+
+        // I can't choose which bone to pick up, so there's nothing to search
+        if (root.cumulativeProbabilities != null)
+            return Choice.of(Choice.Action.PICKED_UP, null);
+
+        if (root.children.length == 1)
+            return root.children[0].state.getChoiceTaken();
+
+        if (deadline == NO_DEADLINE) {
+            for (int i = 0; i < iterations; ++i)
+                iterate();
+        } else {
+            do {
+                iterate();
+            } while (System.nanoTime() - deadline < 0);
+        }
+
+        Node bestChild = root.children[0];
+        for (Node child : root.children)
+            if (child.visits > bestChild.visits
+                    || (child.visits == bestChild.visits && isBetter(child, bestChild, root.state.isMyTurn())))
+                bestChild = child;
+
+        return bestChild.state.getChoiceTaken();
+    }
+
+    private static boolean isBetter(Node node, Node other, boolean isMyTurn) {
+        double mean = node.totalValue / Math.max(node.visits, 1);
+        double otherMean = other.totalValue / Math.max(other.visits, 1);
+        return isMyTurn ? mean > otherMean : mean < otherMean;
+    }
+
+    /**
+     * Runs one iteration: selects a path from the root to an unvisited (or game over) state, values
+     * that state with a batch of playouts, and adds the values to each state on the path.
+     */
+    private void iterate() {
+        int length = 0;
+        Node node = root;
+        path[length++] = node;
+
+        while (node.visits > 0 && expand(node).length > 0) {
+            node = select(node);
+            path[length++] = node;
+        }
+
+        double totalValue = 0;
+        if (isGameOver(node.state)) {
+            totalValue = node.state.getValue() * playoutsPerLeaf;
+            updateValueRange(node.state.getValue());
+        } else {
+            for (int i = 0; i < playoutsPerLeaf; ++i)
+                totalValue += playout(node.state);
+        }
+
+        for (int i = 0; i < length; ++i) {
+            path[i].visits += playoutsPerLeaf;
+            path[i].totalValue += totalValue;
+        }
+    }
+
+    /**
+     * Creates the node's children, if they haven't been already.
+     *
+     * @return the node's children.
+     */
+    private Node[] expand(Node node) {
+        if (node.children != null)
+            return node.children;
+
+        List<GameState> childStates = node.state.getChildStates();
+        Node[] children = new Node[childStates.size()];
+        for (int i = 0; i < children.length; ++i)
+            children[i] = new Node(childStates.get(i));
+
+        if (node.state.isMyTurn() && children.length > 0
+                && childStates.get(0).getChoiceTaken().getAction() == Choice.Action.PICKED_UP) {
+            BoneState boneState = node.state.getBoneState();
+            double[] cumulativeProbabilities = new double[children.length];
+            double total = 0;
+
+            for (int i = 0; i < children.length; ++i) {
+                total += boneState.getProbThatBoneyardHasBone(childStates.get(i).getChoiceTaken().getBone().id());
+                cumulativeProbabilities[i] = total;
+            }
+
+            node.cumulativeProbabilities = cumulativeProbabilities;
+        }
+
+        node.children = children;
+        return children;
+    }
+
+    /**
+     * Selects the child to visit next: by probability where I pick up, otherwise the first unvisited
+     * child or else the child with the best upper confidence bound for whoever's turn it is.
+     */
+    private Node select(Node node) {
+        Node[] children = node.children;
+
+        if (node.cumulativeProbabilities != null)
+            return children[sample(node.cumulativeProbabilities, children.length)];
+
+        boolean isMyTurn = node.state.isMyTurn();
+        double logVisits = Math.log(node.visits);
+        double range = maxValue - minValue;
+
+        Node bestChild = null;
+        double bestBound = Double.NEGATIVE_INFINITY;
+
+        for (Node child : children) {
+            if (child.visits == 0)
+                return child;
+
+            double mean = child.totalValue / child.visits;
+            double scaledMean = range == 0 ? 0.5 : (mean - minValue) / range;
+            if (!isMyTurn)
+                scaledMean = 1 - scaledMean;
+
+            double bound = scaledMean + exploration * Math.sqrt(logVisits / child.visits);
+            if (bound > bestBound) {
+                bestBound = bound;
+                bestChild = child;
+            }
+        }
+
+        return bestChild;
+    }
+
+    /**
+     * Returns a random index into the given cumulative weights (of which the first 'n' are used),
+     * chosen in proportion to the weights.
+     */
+    private int sample(double[] cumulativeWeights, int n) {
+        double total = cumulativeWeights[n - 1];
+        if (total <= 0)
+            return random.nextInt(n);
+
+        double r = random.nextDouble() * total;
+        for (int i = 0; i < n - 1; ++i)
+            if (r < cumulativeWeights[i])
+                return i;
+        return n - 1;
+    }
+
+    /**
+     * Plays random choices from the given state (picking up bones by the probability of the boneyard
+     * having them) until the game ends or 'playoutDepth' choices have been made.
+     *
+     * @param state the state to start from (which mustn't be game over).
+     * @return the value of the state the playout finished at.
+     */
+    private double playout(GameState state) {
+        BoneState boneState = state.getBoneState();
+        boolean isMyTurn = state.isMyTurn();
+        boolean lastChoiceWasPass = isPass(state.getChoiceTaken());
+        double value = state.getValue();
+
+        for (int depth = 0; depth < playoutDepth; ++depth) {
+            int numberOfMoves = isMyTurn ? stateEnumerator.getMyValidMoves(boneState, moves)
+                                         : stateEnumerator.getOpponentValidMoves(boneState, moves);
+            if (numberOfMoves == 0)
+                break;
+
+            Choice choice = Choice.fromCode(moves[0]);
+            if (isMyTurn && choice.getAction() == Choice.Action.PICKED_UP) {
+                double total = 0;
+                for (int i = 0; i < numberOfMoves; ++i) {
+                    total += boneState.getProbThatBoneyardHasBone(Choice.fromCode(moves[i]).getBone().id());
+                    cumulativeProbabilities[i] = total;
+                }
+                choice = Choice.fromCode(moves[sample(cumulativeProbabilities, numberOfMoves)]);
+            } else {
+                choice = Choice.fromCode(moves[random.nextInt(numberOfMoves)]);
+            }
+
+            value += handEvaluator.addedValueFromChoice(boneState, isMyTurn, lastChoiceWasPass, choice);
+
+            // Two passes in a row ends the game
+            if (isPass(choice) && lastChoiceWasPass)
+                break;
+
+            boneState = boneState.createNext(choice, isMyTurn);
+            if (boneState.getMyBones().isEmpty() || boneState.getSizeOfOpponentHand() == 0)
+                break;
+
+            if (choice.getAction() != Choice.Action.PICKED_UP)
+                isMyTurn = !isMyTurn;
+            lastChoiceWasPass = isPass(choice);
+        }
+
+        updateValueRange(value);
+        return value;
+    }
+
+    private void updateValueRange(double value) {
+        minValue = Math.min(minValue, value);
+        maxValue = Math.max(maxValue, value);
+    }
+
+    /**
+     * Returns true iff the game is over at the given state (as GameStateImpl decides, but without
+     * creating its child states).
+     */
+    private static boolean isGameOver(GameState state) {
+        BoneState boneState = state.getBoneState();
+        if (boneState.getMyBones().isEmpty() || boneState.getSizeOfOpponentHand() == 0)
+            return true;
+
+        GameState parent = state.getParent();
+        return isPass(state.getChoiceTaken()) && parent != null && isPass(parent.getChoiceTaken());
+    }
+
+    private static boolean isPass(Choice choice) {
+        return choice != null && choice.getAction() == Choice.Action.PASS;
+    }
+
+    /**
+     * MonteCarloAI doesn't collect SearchStats, so the listener is never called.
+     */
+    @Override
+    public void setSearchStatsListener(SearchStatsListener searchStatsListener) {
+    }
+
+    @Override
+    public int getHandWeight() {
+        int score = 0;
+
+        for (ImmutableBone bone : root.state.getBoneState().getMyBones())
+            score += bone.weight();
+
+        return score;
+    }
+
+    @Override
+    public GameState getGameState() {
+        return root.state;
+    }
+}
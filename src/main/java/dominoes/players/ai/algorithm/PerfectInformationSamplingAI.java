@@ -0,0 +1,274 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.components.PerfectInformationSolver;
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.BoneStateFactory;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of AIController using perfect information sampling (sometimes called PIMC or
+ * determinization).
+ *
+ * Instead of taking the expectation over the unknown bones at every state (as ProbabilisticAI does), this
+ * samples a number of Deals of the unknown bones between the opponent's hand and the boneyard (consistent
+ * with what is known, see BoneState.sampleOpponentBones) and solves each one exactly with a
+ * PerfectInformationSolver.  The best choice is the one with the best mean value over the Deals it is
+ * valid in (for me at my turns, and for the opponent at theirs).
+ *
+ * The Deals are solved in parallel by the given pool, each thread with its own PerfectInformationSolver.
+ * The Deals are sampled up front by a Random with a fixed seed, so the choices are deterministic for a
+ * given number of Deals (however many threads solve them).
+ *
+ * @author Sam Wright
+ */
+public class PerfectInformationSamplingAI implements AIController {
+    public static final int DEFAULT_NUMBER_OF_DEALS = 40;
+
+    private static final int MAX_PLY = 1;
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+
+    /**
+     * The value given to choices which can't be made in a Deal.
+     */
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    private final StateEnumerator stateEnumerator;
+    private final HandEvaluator handEvaluator;
+    private final BoneStateFactory boneStateFactory;
+    private final ForkJoinPool pool;
+    private final Random random = new Random(0);
+
+    private final ThreadLocal<PerfectInformationSolver> solvers = new ThreadLocal<PerfectInformationSolver>() {
+        @Override
+        protected PerfectInformationSolver initialValue() {
+            return new PerfectInformationSolver();
+        }
+    };
+
+    private int numberOfDeals = DEFAULT_NUMBER_OF_DEALS;
+    private GameState currentState;
+
+    public PerfectInformationSamplingAI(StateEnumerator stateEnumerator, HandEvaluator handEvaluator,
+                                        BoneStateFactory boneStateFactory, ForkJoinPool pool) {
+        this.stateEnumerator = stateEnumerator;
+        this.handEvaluator = handEvaluator;
+        this.boneStateFactory = boneStateFactory;
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of Deals getBestChoice() solves (getBestChoice(budget, unit) solves Deals until
+     * the budget is spent).
+     *
+     * @param numberOfDeals the number of Deals to solve for each choice.
+     */
+    public void setNumberOfDeals(int numberOfDeals) {
+        if (numberOfDeals < 1)
+            throw new IllegalArgumentException("numberOfDeals must be positive");
+        this.numberOfDeals = numberOfDeals;
+    }
+
+    @Override
+    public void setInitialState(List<ImmutableBone> myBones, boolean isMyTurn, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+        BoneState initialBoneState = boneStateFactory.createInitialState(myBones, sizeOfBoneyard, initialLayout);
+        currentState = new GameStateImpl(stateEnumerator, handEvaluator, MAX_PLY, isMyTurn, initialBoneState);
+    }
+
+    @Override
+    public void choose(Choice choice) {
+        currentState = currentState.choose(choice);
+
+        // The previous states aren't needed any more
+        ((GameStateImpl) currentState).detachFromParent();
+    }
+
+    @Override
+    public Choice getBestChoice() {
+        return getBestChoice(NO_DEADLINE);
+    }
+
+    @Override
+    public Choice getBestChoice(long budget, TimeUnit unit) {
+        return getBestChoice(System.nanoTime() + unit.toNanos(budget));
+    }
+
+    private Choice getBestChoice(long deadline) {
+        List<GameState> childStates = currentState.getChildStates();
+
+        if (childStates.isEmpty())
+            throw new GameOverException();
+
+        Choice firstChoice = childStates.get(0).getChoiceTaken();
+
+        // I can't choose which bone to pick up, so there's nothing to search
+        if (currentState.isMyTurn() && firstChoice.getAction() == Choice.Action.PICKED_UP)
+            return Choice.of(Choice.Action.PICKED_UP, null);
+
+        if (childStates.size() == 1)
+            return firstChoice;
+
+        int[] choiceCodes = new int[childStates.size()];
+        for (int i = 0; i < choiceCodes.length; ++i)
+            choiceCodes[i] = Choice.codeOf(childStates.get(i).getChoiceTaken());
+
+        long[] totalValues = new long[choiceCodes.length];
+        int[] numberOfValues = new int[choiceCodes.length];
+
+        if (deadline == NO_DEADLINE) {
+            solveDeals(numberOfDeals, NO_DEADLINE, true, choiceCodes, totalValues, numberOfValues);
+        } else {
+            // Solve a Deal for each thread at a time, until the deadline
+            boolean isFirstBatch = true;
+            do {
+                solveDeals(pool.getParallelism(), deadline, isFirstBatch, choiceCodes, totalValues, numberOfValues);
+                isFirstBatch = false;
+            } while (System.nanoTime() - deadline < 0);
+        }
+
+        boolean isMyTurn = currentState.isMyTurn();
+        int bestIndex = -1;
+        double bestMean = 0;
+
+        for (int i = 0; i < choiceCodes.length; ++i) {
+            if (numberOfValues[i] == 0)
+                continue;
+
+            double mean = (double) totalValues[i] / numberOfValues[i];
+            if (bestIndex == -1 || (isMyTurn ? mean > bestMean : mean < bestMean)) {
+                bestIndex = i;
+                bestMean = mean;
+            }
+        }
+
+        // Every sampled Deal could (very rarely) give the opponent a bone too unlikely to have a child state
+        if (bestIndex == -1)
+            return firstChoice;
+
+        return childStates.get(bestIndex).getChoiceTaken();
+    }
+
+    /**
+     * Samples and solves the given number of Deals, adding the value of each choice to 'totalValues'
+     * (and counting it in 'numberOfValues') for each Deal in which it is valid.
+     *
+     * Deals which haven't started by the deadline (if it isn't NO_DEADLINE) are skipped, except the
+     * first Deal of the first batch, so there is always at least one result.
+     */
+    private void solveDeals(int n, final long deadline, boolean isFirstBatch, int[] choiceCodes,
+                            long[] totalValues, int[] numberOfValues) {
+        final BoneState boneState = currentState.getBoneState();
+        final boolean isMyTurn = currentState.isMyTurn();
+        final boolean lastChoiceWasPass = isPass(currentState.getChoiceTaken());
+        final int[] codes = choiceCodes;
+
+        List<Callable<int[]>> tasks = new ArrayList<Callable<int[]>>(n);
+        for (int i = 0; i < n; ++i) {
+            final Deal deal = Deal.sample(boneState, random);
+            final boolean isRequired = isFirstBatch && i == 0;
+
+            tasks.add(new Callable<int[]>() {
+                @Override
+                public int[] call() throws Exception {
+                    if (!isRequired && deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0)
+                        return null;
+                    return solveDeal(deal, boneState, isMyTurn, lastChoiceWasPass, codes);
+                }
+            });
+        }
+
+        try {
+            for (Future<int[]> future : pool.invokeAll(tasks)) {
+                int[] values = future.get();
+                if (values == null)
+                    continue;
+
+                for (int i = 0; i < values.length; ++i) {
+                    if (values[i] != INVALID) {
+                        totalValues[i] += values[i];
+                        ++numberOfValues[i];
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving deals", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to solve deal", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the value of each choice in the given Deal (or INVALID for choices which can't be made
+     * in the Deal).
+     */
+    private int[] solveDeal(Deal deal, BoneState boneState, boolean isMyTurn, boolean lastChoiceWasPass,
+                            int[] choiceCodes) {
+        PerfectInformationSolver solver = solvers.get();
+        int layoutLeft = boneState.getLayoutLeft();
+        int layoutRight = boneState.getLayoutRight();
+
+        int hand = isMyTurn ? deal.getMyBones() : deal.getOpponentBones();
+        boolean canPlace = boneState.isLayoutEmpty()
+                ? hand != 0
+                : (hand & Bones.getBonesMatching(layoutLeft, layoutRight)) != 0;
+
+        int[] values = new int[choiceCodes.length];
+        for (int i = 0; i < choiceCodes.length; ++i) {
+            Choice choice = Choice.fromCode(choiceCodes[i]);
+
+            boolean isValid;
+            if (choice.getAction().isPlacement())
+                isValid = (hand & Bones.maskOf(choice.getBone())) != 0;
+            else if (choice.getAction() == Choice.Action.PICKED_UP)
+                isValid = !canPlace && deal.getBoneyard().length > 0;
+            else
+                isValid = !canPlace && deal.getBoneyard().length == 0;
+
+            values[i] = isValid
+                    ? solver.solveChoice(deal, layoutLeft, layoutRight, isMyTurn, lastChoiceWasPass, choiceCodes[i])
+                    : INVALID;
+        }
+
+        return values;
+    }
+
+    private static boolean isPass(Choice choice) {
+        return choice != null && choice.getAction() == Choice.Action.PASS;
+    }
+
+    /**
+     * PerfectInformationSamplingAI doesn't collect SearchStats, so the listener is never called.
+     */
+    @Override
+    public void setSearchStatsListener(SearchStatsListener searchStatsListener) {
+    }
+
+    @Override
+    public int getHandWeight() {
+        int score = 0;
+
+        for (ImmutableBone bone : currentState.getBoneState().getMyBones())
+            score += bone.weight();
+
+        return score;
+    }
+
+    @Override
+    public GameState getGameState() {
+        return currentState;
+    }
+}
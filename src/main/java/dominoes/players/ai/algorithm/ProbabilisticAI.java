@@ -1,15 +1,23 @@
 package dominoes.players.ai.algorithm;
 
+import dominoes.players.ai.algorithm.components.EndgameTablebase;
 import dominoes.players.ai.algorithm.components.HandEvaluator;
+import dominoes.players.ai.algorithm.components.OpeningBook;
+import dominoes.players.ai.algorithm.components.PerfectInformationSolver;
 import dominoes.players.ai.algorithm.components.PlyManager;
 import dominoes.players.ai.algorithm.components.RouteSelector;
 import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
 import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.BoneStateFactory;
+import dominoes.players.ai.algorithm.helper.BoneStateImpl;
 import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Deal;
 import dominoes.players.ai.algorithm.helper.ImmutableBone;
 import dominoes.players.ai.algorithm.helper.Route;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of AIController, using an iterative process to get the best routes through the decision tree.
@@ -17,39 +25,227 @@ import java.util.List;
  * @author Sam Wright
  */
 public class ProbabilisticAI implements AIController {
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    private static final int DEFAULT_MAX_PONDER_ITERATIONS = 300;
+    private static final int ENDGAME_TABLE_BITS = 16;
+
     private final PlyManager plyManager;
     private final RouteSelector routeSelector;
-    private final StateEnumerator stateEnumerator;
-    private final HandEvaluator handEvaluator;
+    private final BoneStateFactory boneStateFactory;
     private int stableIterationRequirement = 200;
+    private boolean isPonderingEnabled = false;
+    private int maxPonderIterations = DEFAULT_MAX_PONDER_ITERATIONS;
+    private boolean isDetachingOnChoose = true;
+    private int maxStates = Integer.MAX_VALUE;
+    private boolean isSolvingEndgames = true;
+    private PerfectInformationSolver endgameSolver;
+    private EndgameTablebase endgameTablebase;
+    private OpeningBook openingBook;
+    private Choice openingBookChoice;
+    private GameStateArena arena;
+    private Ponderer ponderer;
+    private SearchStatsListener searchStatsListener;
+    private final InstrumentedStateEnumerator instrumentedStateEnumerator;
+    private final DeadlineStateEnumerator deadlineStateEnumerator;
+    private final InstrumentedHandEvaluator instrumentedHandEvaluator;
 
     public void setStableIterationRequirement(int stableIterationRequirement) {
         this.stableIterationRequirement = stableIterationRequirement;
     }
 
+    /**
+     * Turns pondering on or off.  When on, the tree under the opponent's possible choices is deepened
+     * by a background thread during the opponent's turn.  This is stopped before the tree is used
+     * by this AIController (eg. when the opponent's choice is applied with choose(...)), and the
+     * subtree under the opponent's actual choice is kept.
+     *
+     * @param isPonderingEnabled true to turn pondering on.
+     */
+    public void setPondering(boolean isPonderingEnabled) {
+        this.isPonderingEnabled = isPonderingEnabled;
+
+        if (isPonderingEnabled)
+            startPondering();
+        else
+            stopPondering();
+    }
+
+    /**
+     * Turns detaching on or off.  When on (the default), choose(...) detaches the new current state
+     * from its parent so that the states which can no longer be reached (eg. the other choices'
+     * subtrees) can be garbage collected.
+     *
+     * @param isDetachingOnChoose true to detach the current state from its parent after each choice.
+     */
+    public void setDetachingOnChoose(boolean isDetachingOnChoose) {
+        this.isDetachingOnChoose = isDetachingOnChoose;
+    }
+
+    /**
+     * Turns solving endgames on or off.  When on (the default), once the boneyard is empty the opponent's
+     * hand is known exactly (it's every bone I haven't seen), so getBestChoice(...) solves the rest of the
+     * round with a PerfectInformationSolver instead of deepening the tree.  The choice is then the one
+     * which scores the most points for whoever's turn it is, if both players play perfectly.
+     *
+     * @param isSolvingEndgames true to solve endgames exactly.
+     */
+    public void setSolvingEndgames(boolean isSolvingEndgames) {
+        this.isSolvingEndgames = isSolvingEndgames;
+    }
+
+    /**
+     * Sets the endgame tablebase to value the tree's leaves with (or null, the default, for none).  States
+     * which the tablebase covers (see GameStateImpl.setEndgameTablebase) aren't expanded, and are valued
+     * as if both players played perfectly from them to the end of the round.
+     *
+     * This is off by default, and no AI from AIBuilder uses it: with a tablebase of hands of up to two
+     * bones it won 51% of 400 games against the same AI without one, which isn't a measurable difference.
+     *
+     * NB. this takes effect from the next call to setInitialState(...), and isn't used with an arena
+     * (see setUsingArena).
+     *
+     * @param endgameTablebase the tablebase to value endgames with, or null.
+     */
+    public void setEndgameTablebase(EndgameTablebase endgameTablebase) {
+        this.endgameTablebase = endgameTablebase;
+    }
+
+    /**
+     * Sets the opening book to take the first choice of a round from (or null, the default, for none).
+     * When I move first and the position is in the book, getBestChoice(...) returns the book's choice
+     * without searching.
+     *
+     * @param openingBook the opening book to take first choices from, or null.
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Limits the number of states in the tree (Integer.MAX_VALUE by default, ie. no limit).  When the
+     * tree is more than 3/4 full after an iteration, the subtrees under the worst of the best routes
+     * are collapsed (see GameStateImpl.collapse()) until it is at most half full.  If the tree fills up
+     * during an iteration, states which need children are searched as leaves instead.
+     *
+     * NB. states are only discarded from the count when the current state is detached from its parent
+     * (see setDetachingOnChoose), so the limit should only be used with detaching on.  When using an
+     * arena (see setUsingArena) no subtrees are collapsed, so the limit is only a cap on the arena's size.
+     *
+     * @param maxStates the maximum number of states in the tree.
+     */
+    public void setMaxStates(int maxStates) {
+        if (maxStates < 1)
+            throw new IllegalArgumentException("maxStates must be positive");
+
+        this.maxStates = maxStates;
+        if (arena != null)
+            arena.setMaxStates(maxStates);
+        else if (currentState != null)
+            ((GameStateImpl) currentState).setMaxStates(maxStates);
+    }
+
+    /**
+     * Turns on or off keeping the tree in a GameStateArena (rather than as GameStateImpl objects).
+     * The arena is reused for each game, and when detaching on choose (see setDetachingOnChoose) the
+     * states under the chosen state are copied to the start of the arena after each choice.
+     *
+     * NB. this needs the BoneStateFactory to be BitmaskBoneState.FACTORY, and takes effect from the
+     * next call to setInitialState(...).
+     *
+     * @param isUsingArena true to keep the tree in a GameStateArena.
+     */
+    public void setUsingArena(boolean isUsingArena) {
+        if (isUsingArena && boneStateFactory != BitmaskBoneState.FACTORY)
+            throw new IllegalStateException("An arena needs BitmaskBoneStates");
+
+        if (!isUsingArena)
+            arena = null;
+        else if (arena == null)
+            arena = createArena();
+    }
+
+    private GameStateArena createArena() {
+        GameStateArena newArena = new GameStateArena(deadlineStateEnumerator, instrumentedHandEvaluator,
+                plyManager.getInitialPly(), 1 << 16);
+        newArena.setMaxStates(maxStates);
+        return newArena;
+    }
+
+    /**
+     * Sets the listener to give the SearchStats of each call to getBestChoice(...) to, or null (the default)
+     * to stop collecting them.  With no listener, no stats are collected.
+     *
+     * States are counted (and their enumeration and evaluation timed) by the wrappers of the StateEnumerator
+     * and HandEvaluator which are always given to the tree, but which only count while there is a listener,
+     * so a listener can be set at any time.
+     *
+     * @param searchStatsListener the listener to give SearchStats to, or null.
+     */
+    @Override
+    public void setSearchStatsListener(SearchStatsListener searchStatsListener) {
+        this.searchStatsListener = searchStatsListener;
+        instrumentedStateEnumerator.setEnabled(searchStatsListener != null);
+        instrumentedHandEvaluator.setEnabled(searchStatsListener != null);
+    }
+
     private GameState currentState;
 
     public ProbabilisticAI(PlyManager plyManager, RouteSelector routeSelector,
                            StateEnumerator stateEnumerator, HandEvaluator handEvaluator) {
+        this(plyManager, routeSelector, stateEnumerator, handEvaluator, BoneStateImpl.FACTORY);
+    }
+
+    public ProbabilisticAI(PlyManager plyManager, RouteSelector routeSelector,
+                           StateEnumerator stateEnumerator, HandEvaluator handEvaluator,
+                           BoneStateFactory boneStateFactory) {
 
         this.plyManager = plyManager;
         this.routeSelector = routeSelector;
-        this.stateEnumerator = stateEnumerator;
-        this.handEvaluator = handEvaluator;
+        this.boneStateFactory = boneStateFactory;
+        this.instrumentedStateEnumerator = new InstrumentedStateEnumerator(stateEnumerator);
+        this.deadlineStateEnumerator = new DeadlineStateEnumerator(instrumentedStateEnumerator);
+        this.instrumentedHandEvaluator = new InstrumentedHandEvaluator(handEvaluator);
     }
 
     @Override
     public void setInitialState(List<ImmutableBone> myBones, boolean isMyTurn, int sizeOfBoneyard, ImmutableBone... initialLayout) {
-        currentState = new GameStateImpl(stateEnumerator, handEvaluator,
-                plyManager.getInitialPly(), myBones, isMyTurn, sizeOfBoneyard, initialLayout);
+        stopPondering();
+        BoneState initialBoneState = boneStateFactory.createInitialState(myBones, sizeOfBoneyard, initialLayout);
+
+        openingBookChoice = null;
+        if (openingBook != null && isMyTurn && initialLayout.length == 1)
+            openingBookChoice = openingBook.getChoice(myBones, sizeOfBoneyard, initialBoneState.getLayoutLeft(),
+                    initialBoneState.getLayoutRight());
+
+        if (arena != null) {
+            currentState = arena.createRoot(isMyTurn, (BitmaskBoneState) initialBoneState);
+        } else {
+            GameStateImpl initialState = new GameStateImpl(deadlineStateEnumerator, instrumentedHandEvaluator,
+                    plyManager.getInitialPly(), isMyTurn, initialBoneState);
+            initialState.setMaxStates(maxStates);
+            initialState.setEndgameTablebase(endgameTablebase);
+            currentState = initialState;
+        }
+        startPondering();
     }
 
     /**
      * Gets the best possible choice from the current state.  This is where the ply of good states is incremented.
      *
+     * If 'deadline' is NO_DEADLINE, this stops after the best choice has been stable for
+     * stableIterationRequirement iterations.  Otherwise it keeps increasing the ply until the next
+     * iteration is predicted to finish after the deadline (or until the tree can't be extended any
+     * further).  Either way it stops after 300 iterations.
+     *
+     * After the first iteration (which always finishes, so there is a best choice) an iteration which
+     * is still running at the deadline is stopped when it next expands a state (see DeadlineStateEnumerator).
+     * It is dropped, and the previous iteration's best choice is returned.
+     *
+     * @param deadline the System.nanoTime() to finish by, or NO_DEADLINE.
+     * @param stats the SearchStats to record the iterations in, or null.
      * @return the best possible choice from the current state.
      */
-    private Choice getBestChoiceAfterIncreasingPly() {
+    private Choice getBestChoiceAfterIncreasingPly(long deadline, SearchStats stats) {
         List<Route> bestRoutes;
         int[] plyIncreases;
         int i;
@@ -57,14 +253,35 @@ public class ProbabilisticAI implements AIController {
         int n = 0;
         Choice bestChoice = null;
         int iterationsBestChoiceHasBeenBestFor = 0;
+        boolean hasDeadline = deadline != NO_DEADLINE;
+        long previousIterationTime = 0;
 
         do {
-            bestRoutes = routeSelector.getBestRoutes(currentState);
+            long iterationStart = System.nanoTime();
 
-            if (bestRoutes.isEmpty())
+            // The first iteration always finishes, so there's a best choice to fall back on
+            if (hasDeadline && bestChoice != null)
+                deadlineStateEnumerator.setDeadline(deadline);
+
+            try {
+                bestRoutes = routeSelector.getBestRoutes(currentState);
+            } catch (SearchDeadlineException e) {
+                setStopReason(stats, SearchStats.StopReason.DEADLINE);
+                break;
+            } finally {
+                deadlineStateEnumerator.clearDeadline();
+            }
+
+            if (stats != null)
+                stats.addIteration(System.nanoTime() - iterationStart, getMaxDepth(bestRoutes));
+
+            if (bestRoutes.isEmpty()) {
+                setStopReason(stats, SearchStats.StopReason.NO_CHOICES);
                 return null;
-            else if (bestRoutes.size() == 1)
+            } else if (bestRoutes.size() == 1) {
+                setStopReason(stats, SearchStats.StopReason.ONE_CHOICE);
                 return bestRoutes.get(0).getEarliestChoice();
+            }
 
             double[] bestRouteValues = new double[bestRoutes.size()];
             i = 0;
@@ -75,40 +292,173 @@ public class ProbabilisticAI implements AIController {
             plyIncreases = plyManager.getPlyIncreases(bestRouteValues);
 
             i = 0;
+            boolean canBeExtended = false;
             for (Route route : bestRoutes) {
                 GameState finalState = route.getFinalState();
                 finalState.increasePly(plyIncreases[i++]);
+                canBeExtended |= finalState.getStatus() != GameState.Status.GAME_OVER
+                        && finalState.getStatus() != GameState.Status.SOLVED;
             }
 
+            collapseLeastValuableRoutes(currentState, bestRoutes);
+
             Choice newBestChoice = bestRoutes.get(0).getEarliestChoice();
 
             if (bestChoice != newBestChoice) {
                 iterationsBestChoiceHasBeenBestFor = 0;
                 bestChoice = newBestChoice;
-            } else if (bestChoice != null && iterationsBestChoiceHasBeenBestFor == stableIterationRequirement) {
+            } else if (!hasDeadline && bestChoice != null && iterationsBestChoiceHasBeenBestFor == stableIterationRequirement) {
+                setStopReason(stats, SearchStats.StopReason.STABLE);
                 break;
             } else {
                 ++iterationsBestChoiceHasBeenBestFor;
             }
 
             if (plyIncreases[0] == 0) {
+                setStopReason(stats, SearchStats.StopReason.NO_PLY_INCREASE);
                 break;
             }
 
+            if (hasDeadline) {
+                if (!canBeExtended) {
+                    setStopReason(stats, SearchStats.StopReason.TREE_COMPLETE);
+                    break;
+                }
+
+                // Each iteration searches a larger tree, so assume the next iteration takes longer than
+                // this one by the same factor that this one took longer than the previous one.
+                long now = System.nanoTime();
+                long iterationTime = now - iterationStart;
+                double growth = previousIterationTime == 0 ? 1 : Math.max(1.0, iterationTime * 1.0 / previousIterationTime);
+                previousIterationTime = Math.max(iterationTime, 1);
+
+                if (now + (long) (iterationTime * growth) - deadline > 0) {
+                    setStopReason(stats, SearchStats.StopReason.DEADLINE);
+                    break;
+                }
+            }
 
         } while(n++ < 300);
 
+        // Every other way out of the loop sets the reason it stopped
+        if (stats != null && stats.getStopReason() == null)
+            stats.setStopReason(SearchStats.StopReason.ITERATION_LIMIT);
+
+        return bestChoice;
+    }
+
+    /**
+     * Gets the best choice from the current state by solving it exactly (see setSolvingEndgames), which
+     * needs the boneyard to be empty.
+     *
+     * @param stats the SearchStats to record the stop reason in, or null.
+     * @return the best choice from the current state, or null if the game is over.
+     */
+    private Choice getBestEndgameChoice(SearchStats stats) {
+        List<GameState> childStates = currentState.getChildStates();
+
+        if (childStates.isEmpty()) {
+            setStopReason(stats, SearchStats.StopReason.NO_CHOICES);
+            return null;
+        } else if (childStates.size() == 1) {
+            setStopReason(stats, SearchStats.StopReason.ONE_CHOICE);
+            return childStates.get(0).getChoiceTaken();
+        }
+
+        if (endgameSolver == null)
+            endgameSolver = new PerfectInformationSolver(ENDGAME_TABLE_BITS);
+
+        // With an empty boneyard, the opponent has every unknown bone
+        BoneState boneState = currentState.getBoneState();
+        Deal deal = new Deal(boneState.getMyBonesMask(), boneState.getUnknownBonesMask(), new int[0]);
+        boolean isMyTurn = currentState.isMyTurn();
+        Choice lastChoice = currentState.getChoiceTaken();
+        boolean lastChoiceWasPass = lastChoice != null && lastChoice.getAction() == Choice.Action.PASS;
+
+        Choice bestChoice = null;
+        int bestValue = 0;
+
+        for (GameState childState : childStates) {
+            Choice choice = childState.getChoiceTaken();
+            int value = endgameSolver.solveChoice(deal, boneState.getLayoutLeft(), boneState.getLayoutRight(),
+                    isMyTurn, lastChoiceWasPass, Choice.codeOf(choice));
+
+            if (bestChoice == null || (isMyTurn ? value > bestValue : value < bestValue)) {
+                bestChoice = choice;
+                bestValue = value;
+            }
+        }
+
+        setStopReason(stats, SearchStats.StopReason.ENDGAME_SOLVED);
         return bestChoice;
     }
 
+    /**
+     * Returns the number of choices in the longest of the given routes (which start at the current state).
+     */
+    private static int getMaxDepth(List<Route> routes) {
+        int maxLength = 1;
+        for (Route route : routes)
+            maxLength = Math.max(maxLength, route.length());
+        return maxLength - 1;
+    }
+
+    private static void setStopReason(SearchStats stats, SearchStats.StopReason stopReason) {
+        if (stats != null)
+            stats.setStopReason(stopReason);
+    }
+
     @Override
     public void choose(Choice choice) {
+        stopPondering();
+        openingBookChoice = null;
+        boolean wasMyTurn = currentState.isMyTurn();
         currentState = currentState.choose(choice);
+        if (isDetachingOnChoose) {
+            if (arena != null)
+                currentState = arena.retainSubtree(currentState);
+            else
+                ((GameStateImpl) currentState).detachFromParent();
+        }
+
+        // Only ponder after my move, since the opponent's choices arrive together just before my turn.
+        if (wasMyTurn)
+            startPondering();
     }
 
     @Override
     public Choice getBestChoice() {
-        Choice bestChoice = getBestChoiceAfterIncreasingPly();
+        return getBestChoice(NO_DEADLINE);
+    }
+
+    @Override
+    public Choice getBestChoice(long budget, TimeUnit unit) {
+        return getBestChoice(System.nanoTime() + unit.toNanos(budget));
+    }
+
+    private Choice getBestChoice(long deadline) {
+        stopPondering();
+
+        SearchStats stats = null;
+        if (searchStatsListener != null) {
+            stats = new SearchStats();
+            stats.start(instrumentedStateEnumerator, instrumentedHandEvaluator);
+        }
+
+        Choice bestChoice;
+        if (openingBookChoice != null) {
+            bestChoice = openingBookChoice;
+            setStopReason(stats, SearchStats.StopReason.OPENING_BOOK);
+        } else if (isSolvingEndgames && currentState.getBoneState().getSizeOfBoneyard() == 0) {
+            bestChoice = getBestEndgameChoice(stats);
+        } else {
+            bestChoice = getBestChoiceAfterIncreasingPly(deadline, stats);
+        }
+
+        if (stats != null) {
+            stats.finish(instrumentedStateEnumerator, instrumentedHandEvaluator);
+            searchStatsListener.searchFinished(stats);
+        }
 
         // getBestChoiceAfterIncreasingPly is null if I need to pick up
         if (bestChoice == null) {
@@ -121,6 +471,150 @@ public class ProbabilisticAI implements AIController {
     }
 
 
+    /**
+     * If the tree is more than 3/4 full, collapses the child states of 'state' which start the given
+     * routes, from the last (ie. least valuable) route to the second, until the tree is at most half full.
+     * The first route's subtree is never collapsed, so a full tree ends up being spent on the best route.
+     *
+     * @param state the state the routes start from.
+     * @param bestRoutes the best routes from 'state', sorted from best to worst.
+     */
+    private void collapseLeastValuableRoutes(GameState state, List<Route> bestRoutes) {
+        if (!(state instanceof GameStateImpl))
+            return;
+
+        GameStateImpl stateImpl = (GameStateImpl) state;
+        if (stateImpl.getNumberOfStates() <= maxStates / 4 * 3)
+            return;
+
+        for (int i = bestRoutes.size() - 1; i > 0 && stateImpl.getNumberOfStates() > maxStates / 2; --i) {
+            Route route = bestRoutes.get(i);
+            GameState firstState = route.getAllStates().get(1);
+            if (firstState instanceof GameStateImpl)
+                ((GameStateImpl) firstState).collapse(route.getValue());
+        }
+    }
+
+    /**
+     * Starts pondering, if it's enabled and it's the opponent's turn.
+     */
+    private void startPondering() {
+        if (isPonderingEnabled && ponderer == null && currentState != null && !currentState.isMyTurn()
+                && currentState.getStatus() != GameState.Status.GAME_OVER) {
+            ponderer = new Ponderer(currentState);
+            ponderer.start();
+        }
+    }
+
+    /**
+     * Stops pondering (if it's running), and waits for the background thread to finish.
+     */
+    private void stopPondering() {
+        if (ponderer != null) {
+            ponderer.halt();
+            ponderer = null;
+        }
+    }
+
+    /**
+     * Sets the number of times pondering deepens the tree under each of the opponent's choices
+     * (300 by default).  This is for tests, which need pondering to finish.
+     *
+     * @param maxPonderIterations the number of iterations under each of the opponent's choices.
+     */
+    void setMaxPonderIterations(int maxPonderIterations) {
+        this.maxPonderIterations = maxPonderIterations;
+    }
+
+    /**
+     * Waits for pondering (if it's running) to finish by itself.  This is for tests.
+     */
+    void waitForPondering() throws InterruptedException {
+        if (ponderer != null)
+            ponderer.join();
+    }
+
+    /**
+     * The background thread which deepens the tree during the opponent's turn, in the same way
+     * getBestChoiceAfterIncreasingPly does.  Each iteration deepens the tree under each of the opponent's
+     * possible choices in turn (including picking up, which the best routes from the opponent's state
+     * would rarely reach), so whichever choice the opponent makes, the subtree under it has been deepened.
+     * Whether to halt is checked before each choice's subtree is searched, so halting only waits for the
+     * search of one subtree to finish.
+     */
+    private class Ponderer extends Thread {
+        private final GameState state;
+        private volatile boolean isHalted = false;
+
+        private Ponderer(GameState state) {
+            super("ProbabilisticAI-ponderer");
+            this.state = state;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<GameState> childStates = state.getChildStates();
+            boolean[] isFinished = new boolean[childStates.size()];
+            int numberUnfinished = childStates.size();
+
+            for (int n = 0; n < maxPonderIterations && numberUnfinished > 0; ++n) {
+                for (int i = 0; i < childStates.size(); ++i) {
+                    if (isHalted)
+                        return;
+
+                    if (!isFinished[i] && !deepen(childStates.get(i))) {
+                        isFinished[i] = true;
+                        --numberUnfinished;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Deepens the best routes from the given state once, and returns false if they can't be deepened.
+         */
+        private boolean deepen(GameState childState) {
+            List<Route> bestRoutes = routeSelector.getBestRoutes(childState);
+            if (bestRoutes.isEmpty())
+                return false;
+
+            double[] bestRouteValues = new double[bestRoutes.size()];
+            int i = 0;
+            for (Route route : bestRoutes)
+                bestRouteValues[i++] = route.getValue();
+
+            int[] plyIncreases = plyManager.getPlyIncreases(bestRouteValues);
+
+            i = 0;
+            for (Route route : bestRoutes)
+                route.getFinalState().increasePly(plyIncreases[i++]);
+
+            collapseLeastValuableRoutes(childState, bestRoutes);
+
+            return plyIncreases[0] != 0;
+        }
+
+        /**
+         * Stops pondering before the next subtree is searched, and waits for the current one to finish.
+         */
+        private void halt() {
+            isHalted = true;
+            boolean wasInterrupted = false;
+
+            while (isAlive()) {
+                try {
+                    join();
+                } catch (InterruptedException e) {
+                    wasInterrupted = true;
+                }
+            }
+
+            if (wasInterrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public int getHandWeight() {
         int score = 0;
@@ -132,6 +626,19 @@ public class ProbabilisticAI implements AIController {
         return score;
     }
 
+    /**
+     * Returns the number of states kept in memory by the current state (see GameStateImpl.countRetainedStates()),
+     * or the number of states in the arena when using one.
+     *
+     * @return the number of states kept in memory by the current state.
+     */
+    public int getRetainedStateCount() {
+        if (arena != null)
+            return arena.size();
+        else
+            return ((GameStateImpl) currentState).countRetainedStates();
+    }
+
     @Override
     public GameState getGameState() {
         return currentState;
@@ -0,0 +1,11 @@
+package dominoes.players.ai.algorithm;
+
+/**
+ * Exception thrown by a DeadlineStateEnumerator when a state is expanded after its deadline, which
+ * stops the search that was expanding it.
+ *
+ * @author Sam Wright
+ */
+public class SearchDeadlineException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+}
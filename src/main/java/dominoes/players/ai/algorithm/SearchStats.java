@@ -0,0 +1,206 @@
+package dominoes.players.ai.algorithm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Statistics of one search for the best choice (ie. one call to AIController.getBestChoice(...)),
+ * which are given to a SearchStatsListener.
+ *
+ * Times in the StateEnumerator and HandEvaluator are summed over all threads searching (eg. with a
+ * ParallelRouteSelector), so they can add up to more than the total time.  Allocated bytes are summed
+ * over the thread which called getBestChoice and every thread which expanded or evaluated states.
+ *
+ * @author Sam Wright
+ */
+public class SearchStats {
+    /**
+     * Why the deepening loop stopped.
+     */
+    public static enum StopReason {
+        /** There were no choices to search (ie. I had to pick up, or the game was over). */
+        NO_CHOICES,
+        /** There was only one choice. */
+        ONE_CHOICE,
+        /** The best choice was the same for the required number of iterations. */
+        STABLE,
+        /** The PlyManager didn't increase the ply of the best route. */
+        NO_PLY_INCREASE,
+        /** The maximum number of iterations was reached. */
+        ITERATION_LIMIT,
+        /** The best routes all reached the end of the game, so couldn't be deepened. */
+        TREE_COMPLETE,
+        /** The next iteration was predicted to finish after the deadline. */
+        DEADLINE,
+        /** The boneyard was empty, so the rest of the round was solved exactly instead. */
+        ENDGAME_SOLVED,
+        /** The choice was taken from the opening book, without searching. */
+        OPENING_BOOK
+    }
+
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    private long statesCreated, statesExpanded;
+    private int iterations, maxDepth;
+    private StopReason stopReason;
+    private long totalNanos, enumerationNanos, evaluationNanos, routeSelectionNanos;
+    private long allocatedBytes;
+
+    // The totals of the instrumented components when the search started
+    private long startNanos, startEnumerationNanos, startEvaluationNanos, startStatesExpanded, startStatesCreated;
+    private Map<Long, Long> startAllocatedBytes;
+
+    SearchStats() {
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by each live thread (by thread id), or null if the JVM
+     * can't tell.
+     */
+    private static Map<Long, Long> getAllocatedBytesByThread() {
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+            return null;
+
+        long[] threadIds = threadBean.getAllThreadIds();
+        long[] allocatedBytes = ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(threadIds);
+        if (allocatedBytes == null)
+            return null;
+
+        Map<Long, Long> allocatedBytesByThread = new HashMap<Long, Long>();
+        for (int i = 0; i < threadIds.length; ++i)
+            if (allocatedBytes[i] >= 0)
+                allocatedBytesByThread.put(threadIds[i], allocatedBytes[i]);
+        return allocatedBytesByThread;
+    }
+
+    void start(InstrumentedStateEnumerator stateEnumerator, InstrumentedHandEvaluator handEvaluator) {
+        startEnumerationNanos = stateEnumerator.getCounters().getNanos();
+        startStatesExpanded = stateEnumerator.getCounters().getCalls();
+        startEvaluationNanos = handEvaluator.getCounters().getNanos();
+        startStatesCreated = handEvaluator.getCounters().getCalls();
+        startAllocatedBytes = getAllocatedBytesByThread();
+        startNanos = System.nanoTime();
+    }
+
+    void finish(InstrumentedStateEnumerator stateEnumerator, InstrumentedHandEvaluator handEvaluator) {
+        totalNanos = System.nanoTime() - startNanos;
+        enumerationNanos = stateEnumerator.getCounters().getNanos() - startEnumerationNanos;
+        statesExpanded = stateEnumerator.getCounters().getCalls() - startStatesExpanded;
+        evaluationNanos = handEvaluator.getCounters().getNanos() - startEvaluationNanos;
+        statesCreated = handEvaluator.getCounters().getCalls() - startStatesCreated;
+
+        Set<Long> searchingThreadIds = new HashSet<Long>();
+        searchingThreadIds.add(Thread.currentThread().getId());
+        for (Thread thread : stateEnumerator.getCounters().getThreads())
+            searchingThreadIds.add(thread.getId());
+        for (Thread thread : handEvaluator.getCounters().getThreads())
+            searchingThreadIds.add(thread.getId());
+
+        Map<Long, Long> endAllocatedBytes = getAllocatedBytesByThread();
+        if (startAllocatedBytes == null || endAllocatedBytes == null) {
+            allocatedBytes = -1;
+        } else {
+            // A thread which didn't exist at the start (eg. a new pool thread) allocated everything during the search
+            for (long threadId : searchingThreadIds) {
+                Long end = endAllocatedBytes.get(threadId);
+                Long start = startAllocatedBytes.get(threadId);
+                if (end != null)
+                    allocatedBytes += end - (start == null ? 0 : start);
+            }
+        }
+    }
+
+    void addIteration(long routeSelectionNanos, int depth) {
+        ++iterations;
+        this.routeSelectionNanos += routeSelectionNanos;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    void setStopReason(StopReason stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    /**
+     * Returns the number of states created (ie. evaluated by the HandEvaluator).
+     *
+     * @return the number of states created.
+     */
+    public long getStatesCreated() {
+        return statesCreated;
+    }
+
+    /**
+     * Returns the number of states expanded (ie. whose choices were enumerated by the StateEnumerator).
+     *
+     * @return the number of states expanded.
+     */
+    public long getStatesExpanded() {
+        return statesExpanded;
+    }
+
+    /**
+     * Returns the number of deepening iterations (ie. searches of the tree by the RouteSelector).
+     *
+     * @return the number of deepening iterations.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the depth (in choices from the current state) of the deepest best route found in any iteration.
+     *
+     * @return the maximum depth of the best routes.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getEnumerationNanos() {
+        return enumerationNanos;
+    }
+
+    public long getEvaluationNanos() {
+        return evaluationNanos;
+    }
+
+    /**
+     * Returns the wall-clock time spent in the RouteSelector, including expanding and evaluating states
+     * (the times in the StateEnumerator and HandEvaluator can't be taken off it, since with several
+     * searching threads they are summed over the threads).
+     *
+     * @return the time spent selecting routes, in nanoseconds.
+     */
+    public long getRouteSelectionNanos() {
+        return routeSelectionNanos;
+    }
+
+    /**
+     * Returns the number of bytes the searching threads allocated, or -1 if the JVM can't measure it.
+     *
+     * @return the number of bytes allocated, or -1.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchStats{stop=%s, iterations=%d, maxDepth=%d, created=%d, expanded=%d, " +
+                "total=%.2fms, enumeration=%.2fms, evaluation=%.2fms, routeSelection=%.2fms, allocated=%dB}",
+                stopReason, iterations, maxDepth, statesCreated, statesExpanded, totalNanos / 1e6,
+                enumerationNanos / 1e6, evaluationNanos / 1e6, routeSelectionNanos / 1e6, allocatedBytes);
+    }
+}
@@ -0,0 +1,15 @@
+package dominoes.players.ai.algorithm;
+
+/**
+ * Receives the SearchStats of each call to AIController.getBestChoice(...).
+ *
+ * @author Sam Wright
+ */
+public interface SearchStatsListener {
+    /**
+     * Called (on the thread which called getBestChoice) after each search for the best choice.
+     *
+     * @param stats the statistics of the search.
+     */
+    void searchFinished(SearchStats stats);
+}
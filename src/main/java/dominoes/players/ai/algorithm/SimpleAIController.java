@@ -7,6 +7,7 @@ import dominoes.players.ai.algorithm.helper.ImmutableBone;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract implementation of AIController.
@@ -30,6 +31,21 @@ public abstract class SimpleAIController implements AIController {
         currentState = currentState.choose(choice);
     }
 
+    /**
+     * Simple AIs don't search, so the budget is ignored.
+     */
+    @Override
+    public Choice getBestChoice(long budget, TimeUnit unit) {
+        return getBestChoice();
+    }
+
+    /**
+     * Simple AIs don't search, so the listener is never called.
+     */
+    @Override
+    public void setSearchStatsListener(SearchStatsListener searchStatsListener) {
+    }
+
     @Override
     public int getHandWeight() {
         int score = 0;
@@ -0,0 +1,93 @@
+package dominoes.players.ai.algorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counts calls and the time they take (for SearchStats), with a separate count for each thread so that
+ * threads searching in parallel don't contend on a shared counter.  The counts are summed over the threads
+ * when they are read.
+ *
+ * NB. each thread's count is only written by that thread, without synchronisation, so the totals are only
+ * exact when read after the counting threads have been joined (eg. between searches).
+ *
+ * @author Sam Wright
+ */
+class ThreadCounters {
+    private final List<Counter> counters = new CopyOnWriteArrayList<Counter>();
+    private final ThreadLocal<Counter> threadCounter = new ThreadLocal<Counter>() {
+        @Override
+        protected Counter initialValue() {
+            Counter counter = new Counter(Thread.currentThread());
+            counters.add(counter);
+            return counter;
+        }
+    };
+
+    // The totals of the threads which have finished (whose counters have been removed)
+    private long retiredCalls, retiredNanos;
+
+    private static class Counter {
+        private final Thread thread;
+        private long calls, nanos;
+
+        private Counter(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Counts a call by the current thread which took the given time.
+     *
+     * @param nanos the time the call took, in nanoseconds.
+     */
+    void record(long nanos) {
+        Counter counter = threadCounter.get();
+        ++counter.calls;
+        counter.nanos += nanos;
+    }
+
+    synchronized long getCalls() {
+        retireFinishedThreads();
+        long calls = retiredCalls;
+        for (Counter counter : counters)
+            calls += counter.calls;
+        return calls;
+    }
+
+    synchronized long getNanos() {
+        retireFinishedThreads();
+        long nanos = retiredNanos;
+        for (Counter counter : counters)
+            nanos += counter.nanos;
+        return nanos;
+    }
+
+    /**
+     * Returns the live threads which have been counted.
+     *
+     * @return the live threads which have been counted.
+     */
+    synchronized List<Thread> getThreads() {
+        retireFinishedThreads();
+        List<Thread> threads = new ArrayList<Thread>(counters.size());
+        for (Counter counter : counters)
+            threads.add(counter.thread);
+        return threads;
+    }
+
+    /**
+     * Adds the counts of threads which have finished to the retired totals, so that their counters
+     * (eg. of each ponderer thread) don't build up.
+     */
+    private void retireFinishedThreads() {
+        for (Counter counter : counters) {
+            if (!counter.thread.isAlive()) {
+                retiredCalls += counter.calls;
+                retiredNanos += counter.nanos;
+                counters.remove(counter);
+            }
+        }
+    }
+}
@@ -41,8 +41,27 @@ public abstract class AbstractRouteSelector implements RouteSelector {
             return route_comparison;
     }
 
+    private final TranspositionTable transpositionTable;
+
+    protected AbstractRouteSelector() {
+        this(null);
+    }
+
+    /**
+     * Creates a route selector which uses the given transposition table to avoid
+     * searching the same position more than once.
+     *
+     * @param transpositionTable the transposition table to use (or null to not use one).
+     */
+    protected AbstractRouteSelector(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
     @Override
     public List<Route> getBestRoutes(GameState state) {
+        if (transpositionTable != null)
+            transpositionTable.clear();
+
         List<Route> bestRoutes = getBestRoutesInternal(state, true);
 
         // Sort the routes by "best" (according to who's turn it is):
@@ -120,14 +139,38 @@ public abstract class AbstractRouteSelector implements RouteSelector {
      * @return the route from the given state to the best final state.
      */
     public Route getBestRoute(GameState state) {
+        // Only states which would have children are worth looking up
+        boolean useTable = transpositionTable != null && state.getStatus() == GameState.Status.HAS_CHILD_STATES;
+        long key = 0;
+        int remainingPly = 0;
+
+        if (useTable) {
+            key = TranspositionTable.keyOf(state);
+            remainingPly = state.getRemainingPly();
+
+            // The route still ends at a leaf (see FastRouteSelector.getRouteToLeaf), so it keeps deepening
+            double storedValue = transpositionTable.get(key, remainingPly);
+            if (!Double.isNaN(storedValue)) {
+                Route route = FastRouteSelector.getRouteToLeaf(state);
+                route.increaseValue(state.getValue() + storedValue - route.getValue());
+                return route;
+            }
+        }
+
         List<Route> bestRoutes = getBestRoutesInternal(state, false);
+        Route bestRoute;
 
         if (bestRoutes.isEmpty())
             // If the given state is a leaf, create the route from here
-            return new Route(state);
+            bestRoute = new Route(state);
         else
             // Else choose the best of the best routes
-            return getReducedRoute(bestRoutes, state.isMyTurn());
+            bestRoute = getReducedRoute(bestRoutes, state.isMyTurn());
+
+        if (useTable)
+            transpositionTable.put(key, remainingPly, bestRoute.getValue() - state.getValue());
+
+        return bestRoute;
     }
 
     public Route getReducedRoute(List<Route> routes, boolean isMyTurn) {
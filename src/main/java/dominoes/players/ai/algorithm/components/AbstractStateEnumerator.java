@@ -1,19 +1,39 @@
 package dominoes.players.ai.algorithm.components;
 
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
 import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.ImmutableBone;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
- * Abstract implementation of StateEnumerator.  Doesn't actually implement any functionality
- * from the interface, but provides helper methods for derived classes to use.
+ * Abstract implementation of StateEnumerator.  Provides helper methods for derived classes to use,
+ * and implements getMyValidMoves and getOpponentValidMoves by encoding the choices from
+ * getMyValidChoices and getOpponentValidChoices (which derived classes may override to avoid
+ * creating the lists).
  *
  * @author Sam Wright
  */
 public abstract class AbstractStateEnumerator implements StateEnumerator {
+    @Override
+    public int getMyValidMoves(BoneState boneState, int[] moves) {
+        return writeCodes(getMyValidChoices(boneState), moves);
+    }
+
+    @Override
+    public int getOpponentValidMoves(BoneState boneState, int[] moves) {
+        return writeCodes(getOpponentValidChoices(boneState), moves);
+    }
+
+    private static int writeCodes(List<Choice> choices, int[] moves) {
+        int n = 0;
+        for (Choice choice : choices)
+            moves[n++] = Choice.codeOf(choice);
+        return n;
+    }
+
     /**
      * Given the available bones to use, return the complete set of valid initial placing
      * choices.
@@ -26,7 +46,7 @@ public abstract class AbstractStateEnumerator implements StateEnumerator {
 
         for (ImmutableBone bone : availableBones) {
             // Can place any of my bones
-            new_states.add(new Choice(Choice.Action.PLACED_RIGHT, bone));
+            new_states.add(Choice.of(Choice.Action.PLACED_RIGHT, bone));
         }
 
         return new_states;
@@ -42,17 +62,21 @@ public abstract class AbstractStateEnumerator implements StateEnumerator {
      * @return the complete set of valid placing choices.
      */
     public List<Choice> getValidPlacingChoices(List<ImmutableBone> availableBones, int layoutLeft, int layoutRight) {
-        List<Choice> validChoices = new LinkedList<Choice>();
+        List<Choice> validChoices = new ArrayList<Choice>(availableBones.size());
+        int bonesMatchingRight = Bones.getBonesMatching(layoutRight);
+        int bonesMatchingLeft = Bones.getBonesMatching(layoutLeft);
 
         // Bones have already been placed
         for (ImmutableBone bone : availableBones) {
+            int boneMask = Bones.maskOf(bone);
+
             // Check right/last of placed bones
-            if (bone.matches(layoutRight))
-                validChoices.add(new Choice(Choice.Action.PLACED_RIGHT, bone));
+            if ((bonesMatchingRight & boneMask) != 0)
+                validChoices.add(Choice.of(Choice.Action.PLACED_RIGHT, bone));
 
             // Check left/first of placed bones
-            if (bone.matches(layoutLeft))
-                validChoices.add(new Choice(Choice.Action.PLACED_LEFT, bone));
+            if ((bonesMatchingLeft & boneMask) != 0)
+                validChoices.add(Choice.of(Choice.Action.PLACED_LEFT, bone));
         }
 
         return validChoices;
@@ -69,7 +93,7 @@ public abstract class AbstractStateEnumerator implements StateEnumerator {
         List<Choice> validChoices = new ArrayList<Choice>(bonesThatCanBePickedUp.size());
 
         for (ImmutableBone bone : bonesThatCanBePickedUp) {
-            validChoices.add(new Choice(Choice.Action.PICKED_UP, bone));
+            validChoices.add(Choice.of(Choice.Action.PICKED_UP, bone));
         }
 
         return validChoices;
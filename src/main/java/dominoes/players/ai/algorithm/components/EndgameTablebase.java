@@ -0,0 +1,273 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A table of the values (see PerfectInformationSolver) of every endgame with an empty boneyard and at most
+ * 'maxBonesPerHand' bones in each hand, which is generated offline (see generate and main) and memory-mapped
+ * read-only when loaded, so it costs nothing to load and its pages are shared by every JVM using the file.
+ *
+ * The file is a 16-byte header (the magic number, the version, maxBonesPerHand and the number of hand codes)
+ * followed by one signed byte per position.  A hand of k bones is coded as the number of hands with fewer
+ * bones plus the hand's rank among hands of k bones (in the combinatorial number system), and a position
+ * is indexed by (myCode, opponentCode, ends, isMyTurn) where the ends are coded as the id of the bone with
+ * the same values (as the value is the same with the ends swapped).  Positions which can't happen (eg. with
+ * the same bone in both hands) have the value INVALID.
+ *
+ * The value doesn't depend on whether the last choice was a pass, except when the player to move can't place
+ * (in which case a second pass ends the round), and that is worked out without the table.
+ *
+ * @author Sam Wright
+ */
+public class EndgameTablebase {
+    public static final int MAGIC = 0x444F4D54;
+    public static final int VERSION = 1;
+    public static final int MAX_BONES_PER_HAND = 3;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int NUMBER_OF_ENDS = Bones.NUMBER_OF_BONES;
+    private static final byte INVALID = Byte.MIN_VALUE;
+
+    /**
+     * BINOMIAL[n][k] is n choose k, for k up to MAX_BONES_PER_HAND.
+     */
+    private static final int[][] BINOMIAL = new int[Bones.NUMBER_OF_BONES + 1][MAX_BONES_PER_HAND + 1];
+
+    static {
+        for (int n = 0; n <= Bones.NUMBER_OF_BONES; ++n) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_BONES_PER_HAND; ++k)
+                BINOMIAL[n][k] = n == 0 ? 0 : BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+        }
+    }
+
+    private final ByteBuffer table;
+    private final int maxBonesPerHand;
+    private final int numberOfHandCodes;
+
+    private EndgameTablebase(ByteBuffer table, int maxBonesPerHand) {
+        this.table = table;
+        this.maxBonesPerHand = maxBonesPerHand;
+        this.numberOfHandCodes = getNumberOfHandCodes(maxBonesPerHand);
+    }
+
+    /**
+     * Loads the tablebase from the given file (written by generate), by mapping it read-only into memory.
+     *
+     * @param file the tablebase file.
+     * @return the loaded tablebase.
+     * @throws IOException if the file can't be read, or isn't a tablebase.
+     */
+    public static EndgameTablebase load(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+
+        // The mapping stays valid after the file is closed
+        try {
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } finally {
+            randomAccessFile.close();
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not an endgame tablebase: " + file);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported tablebase version " + buffer.getInt(4) + ": " + file);
+
+        int maxBonesPerHand = buffer.getInt(8);
+        if (maxBonesPerHand < 1 || maxBonesPerHand > MAX_BONES_PER_HAND
+                || buffer.getInt(12) != getNumberOfHandCodes(maxBonesPerHand)
+                || buffer.capacity() != HEADER_SIZE + getTableSize(maxBonesPerHand))
+            throw new IOException("Corrupt endgame tablebase: " + file);
+
+        return new EndgameTablebase(buffer, maxBonesPerHand);
+    }
+
+    /**
+     * Returns the most bones in either hand of the positions in this tablebase.
+     *
+     * @return the most bones in either hand.
+     */
+    public int getMaxBonesPerHand() {
+        return maxBonesPerHand;
+    }
+
+    /**
+     * Returns true iff this tablebase has the value of positions with the given hands (and an empty
+     * boneyard and layout ends which aren't empty).
+     *
+     * @param myBones the bitmask (see Bones.maskOf) of my hand.
+     * @param opponentBones the bitmask of the opponent's hand.
+     * @return true iff this tablebase has the value of positions with the given hands.
+     */
+    public boolean covers(int myBones, int opponentBones) {
+        int mySize = Integer.bitCount(myBones);
+        int opponentSize = Integer.bitCount(opponentBones);
+        return mySize > 0 && mySize <= maxBonesPerHand && opponentSize > 0 && opponentSize <= maxBonesPerHand
+                && (myBones & opponentBones) == 0;
+    }
+
+    /**
+     * Returns the value (as PerfectInformationSolver.solve would give) of the given position, which must
+     * be covered (see covers) and have an empty boneyard.
+     *
+     * @param myBones the bitmask (see Bones.maskOf) of my hand.
+     * @param opponentBones the bitmask of the opponent's hand.
+     * @param layoutLeft the left end of the layout.
+     * @param layoutRight the right end of the layout.
+     * @param isMyTurn true iff it is my turn.
+     * @param lastChoiceWasPass true iff the last choice made was a pass.
+     * @return the value of the position.
+     */
+    public int getValue(int myBones, int opponentBones, int layoutLeft, int layoutRight, boolean isMyTurn,
+                        boolean lastChoiceWasPass) {
+        if (!covers(myBones, opponentBones) || layoutLeft == -1)
+            throw new IllegalArgumentException("Position isn't in the tablebase");
+
+        // A second pass in a row ends the round
+        int hand = isMyTurn ? myBones : opponentBones;
+        if (lastChoiceWasPass && (hand & Bones.getBonesMatching(layoutLeft, layoutRight)) == 0)
+            return PerfectInformationSolver.getScore(myBones, opponentBones);
+
+        return table.get(HEADER_SIZE + getIndex(getHandCode(myBones), getHandCode(opponentBones),
+                ImmutableBone.of(layoutLeft, layoutRight).id(), isMyTurn));
+    }
+
+    private int getIndex(int myCode, int opponentCode, int ends, boolean isMyTurn) {
+        return ((myCode * numberOfHandCodes + opponentCode) * NUMBER_OF_ENDS + ends) * 2 + (isMyTurn ? 1 : 0);
+    }
+
+    private static int getNumberOfHandCodes(int maxBonesPerHand) {
+        int n = 0;
+        for (int k = 0; k <= maxBonesPerHand; ++k)
+            n += BINOMIAL[Bones.NUMBER_OF_BONES][k];
+        return n;
+    }
+
+    private static int getTableSize(int maxBonesPerHand) {
+        int numberOfHandCodes = getNumberOfHandCodes(maxBonesPerHand);
+        return numberOfHandCodes * numberOfHandCodes * NUMBER_OF_ENDS * 2;
+    }
+
+    /**
+     * Returns the code of the given hand: the number of hands with fewer bones, plus the hand's rank
+     * among hands with the same number of bones.
+     */
+    private static int getHandCode(int bones) {
+        int size = Integer.bitCount(bones);
+        int code = 0;
+        for (int k = 0; k < size; ++k)
+            code += BINOMIAL[Bones.NUMBER_OF_BONES][k];
+
+        int i = 1;
+        for (int mask = bones; mask != 0; mask &= mask - 1)
+            code += BINOMIAL[Integer.numberOfTrailingZeros(mask)][i++];
+
+        return code;
+    }
+
+    /**
+     * Returns the hands of each code, indexed by code (the inverse of getHandCode).
+     */
+    private static int[] getHandsByCode(int maxBonesPerHand) {
+        int[] hands = new int[getNumberOfHandCodes(maxBonesPerHand)];
+        int allBones = (1 << Bones.NUMBER_OF_BONES) - 1;
+
+        // Every subset of at most maxBonesPerHand bones, by Gosper's hack for each size
+        for (int k = 1; k <= maxBonesPerHand; ++k) {
+            for (int bones = (1 << k) - 1; (bones & ~allBones) == 0; ) {
+                hands[getHandCode(bones)] = bones;
+
+                int lowest = bones & -bones;
+                int ripple = bones + lowest;
+                bones = ripple | ((bones ^ ripple) >>> 2) / lowest;
+            }
+        }
+
+        return hands;
+    }
+
+    /**
+     * Solves every position with at most 'maxBonesPerHand' bones in each hand (and an empty boneyard), and
+     * writes the tablebase to the given file.
+     *
+     * @param file the file to write.
+     * @param maxBonesPerHand the most bones in either hand, from 1 to MAX_BONES_PER_HAND.
+     * @throws IOException if the file can't be written.
+     */
+    public static void generate(File file, int maxBonesPerHand) throws IOException {
+        if (maxBonesPerHand < 1 || maxBonesPerHand > MAX_BONES_PER_HAND)
+            throw new IllegalArgumentException("maxBonesPerHand must be from 1 to " + MAX_BONES_PER_HAND);
+
+        int numberOfHandCodes = getNumberOfHandCodes(maxBonesPerHand);
+        int[] hands = getHandsByCode(maxBonesPerHand);
+        PerfectInformationSolver solver = new PerfectInformationSolver(16);
+        int[] emptyBoneyard = new int[0];
+        byte[] values = new byte[NUMBER_OF_ENDS * 2];
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maxBonesPerHand);
+            out.writeInt(numberOfHandCodes);
+
+            for (int myCode = 0; myCode < numberOfHandCodes; ++myCode) {
+                for (int opponentCode = 0; opponentCode < numberOfHandCodes; ++opponentCode) {
+                    int myBones = hands[myCode];
+                    int opponentBones = hands[opponentCode];
+
+                    if (myBones == 0 || opponentBones == 0 || (myBones & opponentBones) != 0) {
+                        Arrays.fill(values, INVALID);
+                    } else {
+                        Deal deal = new Deal(myBones, opponentBones, emptyBoneyard);
+                        for (int ends = 0; ends < NUMBER_OF_ENDS; ++ends) {
+                            ImmutableBone endsBone = ImmutableBone.fromId(ends);
+                            for (int turn = 0; turn < 2; ++turn)
+                                values[ends * 2 + turn] = (byte) solver.solve(deal, endsBone.left(),
+                                        endsBone.right(), turn == 1, false);
+                        }
+                    }
+
+                    out.write(values);
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Generates a tablebase file.
+     *
+     * Usage: EndgameTablebase maxBonesPerHand outputFile
+     *
+     * @param args the command line arguments.
+     * @throws IOException if the file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: EndgameTablebase maxBonesPerHand outputFile");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        File file = new File(args[1]);
+        generate(file, Integer.parseInt(args[0]));
+        System.out.printf("Wrote %d bytes to %s in %.1fs%n", file.length(), file,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -35,7 +35,7 @@ public class ExpectationWeightEvaluator implements HandEvaluator {
         int opponentHandWeight = 0;
 
         for (ImmutableBone bone : boneState.getUnknownBones())
-            opponentHandWeight += bone.weight() * boneState.getProbThatOpponentHasBone(bone);
+            opponentHandWeight += bone.weight() * boneState.getProbThatOpponentHasBone(bone.id());
 
         int my_hand_weight = 0;
 
@@ -55,14 +55,15 @@ public class ExpectationWeightEvaluator implements HandEvaluator {
             if (isMyTurn) {
                 addedValue += choice.getBone().weight();
             } else {
-                addedValue -= choice.getBone().weight() * boneState.getProbThatOpponentHasBone(choice.getBone());
+                addedValue -= choice.getBone().weight() * boneState.getProbThatOpponentHasBone(choice.getBone().id());
             }
 
         } else if (choice.getAction() == Choice.Action.PICKED_UP) {
 
             double weightedAverageOfBoneyardCards = 0;
             for (ImmutableBone pickupableBone : boneState.getUnknownBones())
-                weightedAverageOfBoneyardCards += pickupableBone.weight() * boneState.getProbThatBoneyardHasBone(pickupableBone);
+                weightedAverageOfBoneyardCards += pickupableBone.weight()
+                        * boneState.getProbThatBoneyardHasBone(pickupableBone.id());
 
             weightedAverageOfBoneyardCards /= boneState.getUnknownBones().size();
 
@@ -0,0 +1,254 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A RouteSelector which searches the tree with expectiminimax and alpha-beta pruning.
+ *
+ * My placements are max nodes and the opponent's placements are min nodes.  When I have
+ * to pick up, each bone I could pick up is a child state, so these states are chance nodes
+ * whose value is the expectation over the bones (weighted by the probability that the
+ * boneyard has each bone).  Chance nodes are pruned with Star1, which needs bounds on the
+ * values of states: these are the root state's value plus or minus 'valueRange', and values
+ * of final states outside these bounds are clamped to them.
+ *
+ * Unlike FastRouteSelector, no value is added from discarded routes (since that would make
+ * pruning unsound).  Only the first of the returned routes has an exact value - the others
+ * are bounds, which are no better than the first route's value.
+ *
+ * With a MoveOrderer, the children of min and max nodes are searched in the order it gives (and it is
+ * told which children caused cutoffs), so fewer states need to be expanded to find the same routes.
+ *
+ * @author Sam Wright
+ */
+public class ExpectiminimaxRouteSelector implements RouteSelector {
+    public static final double DEFAULT_VALUE_RANGE = 1000;
+
+    private static final Comparator<Route> ascendingValueComparator = new Comparator<Route>() {
+        @Override
+        public int compare(Route o1, Route o2) {
+            return Double.compare(o1.getValue(), o2.getValue());
+        }
+    };
+
+    private static final Comparator<Route> descendingValueComparator = new Comparator<Route>() {
+        @Override
+        public int compare(Route o1, Route o2) {
+            return Double.compare(o2.getValue(), o1.getValue());
+        }
+    };
+
+    private final double valueRange;
+    private final MoveOrderer moveOrderer;
+    private double lowerBound, upperBound;
+
+    public ExpectiminimaxRouteSelector() {
+        this(DEFAULT_VALUE_RANGE);
+    }
+
+    /**
+     * Creates an ExpectiminimaxRouteSelector which orders the children of each state with the given MoveOrderer.
+     *
+     * @param moveOrderer the MoveOrderer to order children with (or null to search them in the order given).
+     */
+    public ExpectiminimaxRouteSelector(MoveOrderer moveOrderer) {
+        this(DEFAULT_VALUE_RANGE, moveOrderer);
+    }
+
+    /**
+     * Creates an ExpectiminimaxRouteSelector which assumes no state's value differs from the
+     * root state's value by more than 'valueRange'.
+     *
+     * @param valueRange the largest difference between the values of the root state and any other state.
+     */
+    public ExpectiminimaxRouteSelector(double valueRange) {
+        this(valueRange, null);
+    }
+
+    /**
+     * Creates an ExpectiminimaxRouteSelector which assumes no state's value differs from the
+     * root state's value by more than 'valueRange', and orders the children of each state with
+     * the given MoveOrderer.
+     *
+     * @param valueRange the largest difference between the values of the root state and any other state.
+     * @param moveOrderer the MoveOrderer to order children with (or null to search them in the order given).
+     */
+    public ExpectiminimaxRouteSelector(double valueRange, MoveOrderer moveOrderer) {
+        if (valueRange <= 0)
+            throw new IllegalArgumentException("valueRange must be positive");
+
+        this.valueRange = valueRange;
+        this.moveOrderer = moveOrderer;
+    }
+
+    @Override
+    public List<Route> getBestRoutes(GameState state) {
+        lowerBound = state.getValue() - valueRange;
+        upperBound = state.getValue() + valueRange;
+
+        if (moveOrderer != null)
+            moveOrderer.startSearch(state);
+
+        List<Route> bestRoutes = new ArrayList<Route>();
+        double alpha = lowerBound;
+        double beta = upperBound;
+
+        for (GameState childState : order(state, state.getChildStates())) {
+            // Skip pickup child states
+            if (isPickup(childState))
+                continue;
+
+            // Each route only needs to be searched enough to find whether it's better than the best so far
+            Route route = getBestRoute(childState, alpha, beta);
+            route.extendBackward();
+            bestRoutes.add(route);
+
+            if (state.isMyTurn())
+                alpha = Math.max(alpha, route.getValue());
+            else
+                beta = Math.min(beta, route.getValue());
+        }
+
+        // NB. the sort is stable, and a route only has the same value as an earlier route if it was
+        // pruned, so the first route is always one with an exact value.
+        Collections.sort(bestRoutes, state.isMyTurn() ? descendingValueComparator : ascendingValueComparator);
+
+        return bestRoutes;
+    }
+
+    /**
+     * Gets the route from the given state to the best final state, searching with the window (alpha, beta).
+     *
+     * If the returned route's value is at most alpha it is an upper bound on the state's value, and if it
+     * is at least beta it is a lower bound.  Otherwise it is the state's exact value.
+     *
+     * @param state the state the route starts from.
+     * @param alpha the value I'm already guaranteed elsewhere.
+     * @param beta the value the opponent is already guaranteed elsewhere.
+     * @return the route from the given state to the best final state.
+     */
+    private Route getBestRoute(GameState state, double alpha, double beta) {
+        List<GameState> childStates = state.getChildStates();
+
+        if (childStates.isEmpty()) {
+            Route route = new Route(state);
+            setValue(route, Math.max(lowerBound, Math.min(upperBound, route.getValue())));
+            return route;
+        }
+
+        if (state.isMyTurn() && isPickup(childStates.get(0)))
+            return getChanceRoute(state, childStates, alpha, beta);
+
+        Route bestRoute = null;
+
+        for (GameState childState : order(state, childStates)) {
+            Route route = getBestRoute(childState, alpha, beta);
+            route.extendBackward();
+
+            if (state.isMyTurn()) {
+                if (bestRoute == null || route.getValue() > bestRoute.getValue())
+                    bestRoute = route;
+                alpha = Math.max(alpha, route.getValue());
+            } else {
+                if (bestRoute == null || route.getValue() < bestRoute.getValue())
+                    bestRoute = route;
+                beta = Math.min(beta, route.getValue());
+            }
+
+            if (alpha >= beta) {
+                if (moveOrderer != null)
+                    moveOrderer.recordCutoff(state, childState);
+                break;
+            }
+        }
+
+        return bestRoute;
+    }
+
+    private List<GameState> order(GameState state, List<GameState> childStates) {
+        return moveOrderer == null ? childStates : moveOrderer.order(state, childStates);
+    }
+
+    /**
+     * Gets the route from a state where I pick up, with Star1 pruning.  The returned route follows
+     * the most likely pickup, but its value is the expectation over all pickups.
+     */
+    private Route getChanceRoute(GameState state, List<GameState> childStates, double alpha, double beta) {
+        double[] probabilities = getPickupProbabilities(state, childStates);
+
+        Route likeliestRoute = null;
+        double likeliestProbability = -1;
+        double expectedValue = 0;
+        double remainingProbability = 1;
+
+        for (int i = 0; i < childStates.size(); ++i) {
+            double probability = probabilities[i];
+            if (probability <= 0)
+                continue;
+
+            remainingProbability -= probability;
+
+            // The window for this child, so that the unsearched children (at their most extreme
+            // values) could still bring the expectation into (alpha, beta).
+            double childAlpha = (alpha - expectedValue - upperBound * remainingProbability) / probability;
+            double childBeta = (beta - expectedValue - lowerBound * remainingProbability) / probability;
+
+            Route route = getBestRoute(childStates.get(i),
+                    Math.max(childAlpha, lowerBound), Math.min(childBeta, upperBound));
+            route.extendBackward();
+
+            expectedValue += probability * route.getValue();
+
+            if (probability > likeliestProbability) {
+                likeliestRoute = route;
+                likeliestProbability = probability;
+            }
+
+            if (route.getValue() <= childAlpha) {
+                setValue(likeliestRoute, expectedValue + upperBound * remainingProbability);
+                return likeliestRoute;
+            } else if (route.getValue() >= childBeta) {
+                setValue(likeliestRoute, expectedValue + lowerBound * remainingProbability);
+                return likeliestRoute;
+            }
+        }
+
+        setValue(likeliestRoute, expectedValue);
+        return likeliestRoute;
+    }
+
+    /**
+     * Returns the probability of picking up the bone in each child state (normalised to sum to 1).
+     */
+    private static double[] getPickupProbabilities(GameState state, List<GameState> childStates) {
+        double[] probabilities = new double[childStates.size()];
+        double total = 0;
+
+        for (int i = 0; i < probabilities.length; ++i) {
+            Choice choice = childStates.get(i).getChoiceTaken();
+            probabilities[i] = state.getBoneState().getProbThatBoneyardHasBone(choice.getBone().id());
+            total += probabilities[i];
+        }
+
+        for (int i = 0; i < probabilities.length; ++i)
+            probabilities[i] = total > 0 ? probabilities[i] / total : 1.0 / probabilities.length;
+
+        return probabilities;
+    }
+
+    private static boolean isPickup(GameState state) {
+        Choice choiceTaken = state.getChoiceTaken();
+        return choiceTaken != null && choiceTaken.getAction() == Choice.Action.PICKED_UP;
+    }
+
+    private static void setValue(Route route, double value) {
+        route.increaseValue(value - route.getValue());
+    }
+}
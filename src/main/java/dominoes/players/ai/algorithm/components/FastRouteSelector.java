@@ -1,9 +1,11 @@
 package dominoes.players.ai.algorithm.components;
 
 import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.GameStateImpl;
 import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.Route;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
@@ -13,6 +15,12 @@ import java.util.List;
  * User: Sam Wright
  * Date: 15/02/2013
  * Time: 17:57
+ *
+ * The best route from each GameStateImpl with children is cached in the state (see GameStateImpl.setCachedRoute),
+ * and the cache is discarded up to the root whenever a state's ply is increased.  So after the first search
+ * following a move, each search only revisits the paths to states which were deepened (and their new subtrees),
+ * rather than the whole tree.  Routes aren't cached when using a transposition table, since a stored value can
+ * come from another subtree.
  */
 public class FastRouteSelector implements RouteSelector {
 
@@ -38,8 +46,42 @@ public class FastRouteSelector implements RouteSelector {
             return route_comparison;
     }
 
+    private final TranspositionTable transpositionTable;
+    private final boolean isCachingRoutes;
+
+    public FastRouteSelector() {
+        this(null);
+    }
+
+    /**
+     * Creates a FastRouteSelector with no transposition table.
+     *
+     * @param isCachingRoutes true to cache the best route from each state between searches.
+     */
+    public FastRouteSelector(boolean isCachingRoutes) {
+        this(null, isCachingRoutes);
+    }
+
+    /**
+     * Creates a FastRouteSelector which uses the given transposition table to avoid
+     * searching the same position more than once.
+     *
+     * @param transpositionTable the transposition table to use (or null to not use one).
+     */
+    public FastRouteSelector(TranspositionTable transpositionTable) {
+        this(transpositionTable, transpositionTable == null);
+    }
+
+    private FastRouteSelector(TranspositionTable transpositionTable, boolean isCachingRoutes) {
+        this.transpositionTable = transpositionTable;
+        this.isCachingRoutes = isCachingRoutes;
+    }
+
     @Override
     public List<Route> getBestRoutes(GameState state) {
+        if (transpositionTable != null)
+            transpositionTable.clear();
+
         List<Route> bestRoutes = new LinkedList<Route>();
 
         for (GameState childState : state.getChildStates()) {
@@ -51,21 +93,103 @@ public class FastRouteSelector implements RouteSelector {
             bestRoutes.add(getBestRoute(childState));
         }
 
-        Collections.sort(bestRoutes, routeValueComparator);
-        if (state.isMyTurn())
-            Collections.reverse(bestRoutes);
-
+        sortRoutes(bestRoutes, state.isMyTurn());
         return bestRoutes;
     }
 
     public Route getBestRoute(GameState state) {
+        GameStateImpl cachingState = null;
+        if (isCachingRoutes && state instanceof GameStateImpl) {
+            cachingState = (GameStateImpl) state;
+
+            Route cachedRoute = cachingState.getCachedRoute();
+            if (cachedRoute != null)
+                return cachedRoute;
+        }
+
+        // Only states which would have children are worth looking up
+        boolean useTable = transpositionTable != null && state.getStatus() == GameState.Status.HAS_CHILD_STATES;
+        long key = 0;
+        int remainingPly = 0;
+
+        if (useTable) {
+            key = TranspositionTable.keyOf(state);
+            remainingPly = state.getRemainingPly();
+
+            double storedValue = transpositionTable.get(key, remainingPly);
+            if (!Double.isNaN(storedValue)) {
+                Route route = getRouteToLeaf(state);
+                route.increaseValue(state.getValue() + storedValue - route.getValue());
+                route.extendBackward();
+                return route;
+            }
+        }
+
+        List<GameState> childStates = state.getChildStates();
+        List<Route> routesFromChildren = new ArrayList<Route>(childStates.size());
+        for (GameState childState : childStates)
+            routesFromChildren.add(getBestRoute(childState));
+
+        Route bestRoute = reduceRoutes(state, routesFromChildren);
+
+        if (useTable)
+            transpositionTable.put(key, remainingPly, bestRoute.getValue() - state.getValue());
+
+        bestRoute.extendBackward();
+
+        // Leaves are as quick to search as to look up, so aren't cached
+        if (cachingState != null && !childStates.isEmpty())
+            cachingState.setCachedRoute(bestRoute);
+
+        return bestRoute;
+    }
+
+    /**
+     * Returns a route from the given state to a leaf, following the child with the best value (for whoever
+     * is choosing) at each state.  This is used for a transposition table hit, whose value comes from another
+     * subtree: the route still has to end at a leaf, since the final state of the best route is the one whose
+     * ply is increased (and increasing the ply of an interior state doesn't deepen its existing children).
+     *
+     * NB. the returned route isn't extended backward to the given state's parent.
+     */
+    static Route getRouteToLeaf(GameState state) {
+        GameState leaf = state;
+        int depth = 0;
+
+        while (leaf.getStatus() == GameState.Status.HAS_CHILD_STATES && !leaf.getChildStates().isEmpty()) {
+            GameState bestChild = null;
+            for (GameState childState : leaf.getChildStates()) {
+                if (bestChild == null || (leaf.isMyTurn() ? childState.getValue() > bestChild.getValue()
+                                                          : childState.getValue() < bestChild.getValue()))
+                    bestChild = childState;
+            }
+
+            leaf = bestChild;
+            ++depth;
+        }
+
+        Route route = new Route(leaf);
+        for (int i = 0; i < depth; ++i)
+            route.extendBackward();
+        return route;
+    }
+
+    /**
+     * Chooses the best of the routes from the given state's children (according to whose turn
+     * it is), and adds value from the discarded routes.
+     *
+     * NB. the returned route isn't extended backward to 'state'.
+     *
+     * @param state the state the routes are from.
+     * @param routesFromChildren the best route from each child state, in the same order as state.getChildStates().
+     * @return the best route from the given state.
+     */
+    static Route reduceRoutes(GameState state, List<Route> routesFromChildren) {
         Route bestRoute = null;
         int n = 0;
         int sumOfOpponentValues = 0;
 
-        for (GameState childState : state.getChildStates()) {
-            Route bestRouteFromChild = getBestRoute(childState);
-
+        for (Route bestRouteFromChild : routesFromChildren) {
             if (bestRoute == null)
                 bestRoute = bestRouteFromChild;
             else if (state.isMyTurn() && bestRouteFromChild.getValue() > bestRoute.getValue())
@@ -89,8 +213,19 @@ public class FastRouteSelector implements RouteSelector {
 
         double extraValue = (n == 0 ? 0 : sumOfOpponentValues * 1.0 / n);
 
-        bestRoute.extendBackward();
         bestRoute.increaseValue(extraValue);
         return bestRoute;
     }
+
+    /**
+     * Sorts the given routes from best to worst (according to whose turn it is).
+     *
+     * @param routes the routes to sort.
+     * @param isMyTurn true iff it is my turn at the state the routes start from.
+     */
+    static void sortRoutes(List<Route> routes, boolean isMyTurn) {
+        Collections.sort(routes, routeValueComparator);
+        if (isMyTurn)
+            Collections.reverse(routes);
+    }
 }
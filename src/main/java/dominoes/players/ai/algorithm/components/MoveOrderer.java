@@ -0,0 +1,154 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Orders the child states of a GameState so that a pruning RouteSelector (see ExpectiminimaxRouteSelector)
+ * searches the likeliest best choices first, which makes cutoffs happen sooner.
+ *
+ * Placements are ordered first by the history heuristic: a table of how often placing each bone on each
+ * layout end (separately for me and the opponent) has caused a cutoff, weighted by the square of the
+ * remaining ply of the state where it happened (so cutoffs near the root, which save the most, count most).
+ * Ties (eg. before anything is in the table) are ordered by the value the HandEvaluator added for the choice,
+ * best first for whoever is choosing.  The opponent's pickups and passes have no history, so are only
+ * ordered by value.  The children of chance nodes (ie. my pickups) shouldn't be ordered, since every one
+ * of them is searched anyway.
+ *
+ * The table is kept between searches for the rest of the round, and is cleared when a search starts in a
+ * new round (which is noticed by the layout no longer containing the previous search's layout).
+ *
+ * NB. this isn't thread-safe, so can't be shared by concurrent searches.
+ *
+ * @author Sam Wright
+ */
+public class MoveOrderer {
+    private static final int ALL_BONES = (1 << Bones.NUMBER_OF_BONES) - 1;
+
+    /**
+     * The history score of each placement, indexed by [isMyTurn ? 1 : 0][indexOf(boneId, end)].
+     */
+    private final int[][] history = new int[2][Bones.NUMBER_OF_BONES * 8];
+
+    private int previousLayoutMask = ALL_BONES;
+
+    /**
+     * Prepares for a search from the given state, clearing the history table if the state is in a new round.
+     *
+     * @param state the state the search starts from.
+     */
+    public void startSearch(GameState state) {
+        BoneState boneState = state.getBoneState();
+        int layoutMask = ALL_BONES & ~boneState.getMyBonesMask() & ~boneState.getUnknownBonesMask();
+
+        // Within a round, bones are only ever added to the layout
+        if ((previousLayoutMask & ~layoutMask) != 0)
+            clear();
+
+        previousLayoutMask = layoutMask;
+    }
+
+    /**
+     * Removes all entries from the history table.
+     */
+    public void clear() {
+        for (int[] scores : history)
+            Arrays.fill(scores, 0);
+    }
+
+    /**
+     * Returns the given state's children, in the order they should be searched.
+     *
+     * @param state the state the children are from.
+     * @param childStates the state's children (eg. state.getChildStates()), which aren't modified.
+     * @return the children in the order to search them.
+     */
+    public List<GameState> order(GameState state, List<GameState> childStates) {
+        int n = childStates.size();
+        if (n < 2)
+            return childStates;
+
+        GameState[] orderedStates = childStates.toArray(new GameState[n]);
+        int[] scores = new int[n];
+        double[] values = new double[n];
+        int[] turnHistory = history[state.isMyTurn() ? 1 : 0];
+
+        for (int i = 0; i < n; ++i) {
+            GameState childState = orderedStates[i];
+            int index = indexOf(state.getBoneState(), childState.getChoiceTaken());
+            scores[i] = index < 0 ? 0 : turnHistory[index];
+
+            // The value the HandEvaluator added for the choice, from the chooser's point of view
+            double addedValue = childState.getValue() - state.getValue();
+            values[i] = state.isMyTurn() ? addedValue : -addedValue;
+        }
+
+        // An insertion sort (there are rarely more than a handful of children), which is stable
+        for (int i = 1; i < n; ++i) {
+            GameState childState = orderedStates[i];
+            int score = scores[i];
+            double value = values[i];
+
+            int j = i - 1;
+            while (j >= 0 && (scores[j] < score || (scores[j] == score && values[j] < value))) {
+                orderedStates[j + 1] = orderedStates[j];
+                scores[j + 1] = scores[j];
+                values[j + 1] = values[j];
+                --j;
+            }
+
+            orderedStates[j + 1] = childState;
+            scores[j + 1] = score;
+            values[j + 1] = value;
+        }
+
+        return Arrays.asList(orderedStates);
+    }
+
+    /**
+     * Records that choosing the given child state caused a cutoff at the given state.
+     *
+     * @param state the state where the cutoff happened.
+     * @param childState the child state whose value caused the cutoff.
+     */
+    public void recordCutoff(GameState state, GameState childState) {
+        int index = indexOf(state.getBoneState(), childState.getChoiceTaken());
+        if (index < 0)
+            return;
+
+        int remainingPly = state.getRemainingPly() + 1;
+        int[] turnHistory = history[state.isMyTurn() ? 1 : 0];
+        turnHistory[index] = (int) Math.min(Integer.MAX_VALUE, (long) turnHistory[index] + remainingPly * remainingPly);
+    }
+
+    /**
+     * Returns the history score of the given choice from a state with the given BoneState.
+     *
+     * @param boneState the BoneState of the state the choice is from.
+     * @param isMyTurn true iff the choice is mine.
+     * @param choice the choice.
+     * @return the history score of the choice (zero if it isn't a placement).
+     */
+    public int getScore(BoneState boneState, boolean isMyTurn, Choice choice) {
+        int index = indexOf(boneState, choice);
+        return index < 0 ? 0 : history[isMyTurn ? 1 : 0][index];
+    }
+
+    /**
+     * Returns the index in the history table of the given choice (which is the bone and the value of the
+     * layout end it's placed on, or -1 for the empty layout), or -1 if the choice isn't a placement.
+     */
+    private static int indexOf(BoneState boneState, Choice choice) {
+        if (!choice.getAction().isPlacement())
+            return -1;
+
+        int end = choice.getAction() == Choice.Action.PLACED_LEFT ? boneState.getLayoutLeft()
+                                                                  : boneState.getLayoutRight();
+        return choice.getBone().id() * 8 + end + 1;
+    }
+}
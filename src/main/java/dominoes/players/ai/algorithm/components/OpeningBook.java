@@ -0,0 +1,232 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.AIBuilder;
+import dominoes.players.ai.algorithm.AIController;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A table of the best first choice of a round, for the player who moves first (when the layout is the one
+ * initial bone), which is generated offline by searching each position for a long time (see generate and
+ * main) so the first choice of a round doesn't need a search.
+ *
+ * Positions are keyed exactly, by the hand's bitmask and the layout bone's id, so a position and its mirror
+ * image (with the layout's ends swapped) share an entry.  Each entry holds the placed bone and the value of
+ * the end it's placed on, which is mapped to a side of the layout when looked up.  Positions aren't shared
+ * under permutations of the pip values, since relabelling the values keeps which bones match which but
+ * not their weights, so can change the best choice.  There are ~25 million positions of a 7 bone hand, so
+ * a book only covers the positions it was generated from (which come up in proportion to how often they're
+ * dealt).
+ *
+ * The file is a 16-byte header (the magic number, the version, the size of the boneyard the positions have
+ * and the number of entries) followed by a 6-byte entry for each position, sorted by key: the hand's bitmask,
+ * the layout bone's id and the choice (the placed bone's id times 8, plus the value of the end it was placed on).
+ *
+ * @author Sam Wright
+ */
+public class OpeningBook {
+    public static final int MAGIC = 0x444F4D42;
+    public static final int VERSION = 1;
+    public static final int HAND_SIZE = 7;
+
+    private final int sizeOfBoneyard;
+    private final long[] keys;
+    private final byte[] choices;
+
+    private OpeningBook(int sizeOfBoneyard, long[] keys, byte[] choices) {
+        this.sizeOfBoneyard = sizeOfBoneyard;
+        this.keys = keys;
+        this.choices = choices;
+    }
+
+    /**
+     * Loads the opening book from the given file (written by generate).
+     *
+     * @param file the opening book file.
+     * @return the loaded opening book.
+     * @throws IOException if the file can't be read, or isn't an opening book.
+     */
+    public static OpeningBook load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an opening book: " + file);
+
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported opening book version " + version + ": " + file);
+
+            int sizeOfBoneyard = in.readInt();
+            int numberOfEntries = in.readInt();
+            if (numberOfEntries < 0 || numberOfEntries * 6L != file.length() - 16)
+                throw new IOException("Corrupt opening book: " + file);
+
+            long[] keys = new long[numberOfEntries];
+            byte[] choices = new byte[numberOfEntries];
+            for (int i = 0; i < numberOfEntries; ++i) {
+                int myBones = in.readInt();
+                keys[i] = getKey(myBones, in.readUnsignedByte());
+                choices[i] = in.readByte();
+
+                if (i > 0 && keys[i] <= keys[i - 1])
+                    throw new IOException("Corrupt opening book: " + file);
+            }
+
+            return new OpeningBook(sizeOfBoneyard, keys, choices);
+        } catch (EOFException e) {
+            throw new IOException("Corrupt opening book: " + file, e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the number of positions in this opening book.
+     *
+     * @return the number of positions.
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the first choice to make from the given position, or null if it isn't in the book.
+     *
+     * @param myBones my hand.
+     * @param sizeOfBoneyard the size of the boneyard.
+     * @param layoutLeft the left end of the layout (which is one bone).
+     * @param layoutRight the right end of the layout.
+     * @return the choice to make, or null if the position isn't in the book.
+     */
+    public Choice getChoice(List<ImmutableBone> myBones, int sizeOfBoneyard, int layoutLeft, int layoutRight) {
+        if (sizeOfBoneyard != this.sizeOfBoneyard || myBones.size() != HAND_SIZE)
+            return null;
+
+        int myBonesMask = Bones.maskOf(myBones);
+        int i = Arrays.binarySearch(keys, getKey(myBonesMask, ImmutableBone.of(layoutLeft, layoutRight).id()));
+        if (i < 0)
+            return null;
+
+        ImmutableBone bone = ImmutableBone.fromId((choices[i] & 0xFF) >>> 3);
+        int end = choices[i] & 7;
+
+        if ((myBonesMask & Bones.maskOf(bone)) == 0 || !bone.matches(end))
+            return null;
+
+        // On a double either end gives the same position, and the left end is used
+        if (end == layoutLeft)
+            return Choice.of(Choice.Action.PLACED_LEFT, bone);
+        else if (end == layoutRight)
+            return Choice.of(Choice.Action.PLACED_RIGHT, bone);
+        else
+            return null;
+    }
+
+    private static long getKey(int myBones, int layoutId) {
+        return (long) myBones << 5 | layoutId;
+    }
+
+    /**
+     * Searches the first position of 'numberOfDeals' random deals (skipping those already searched, and
+     * those where the first player can't place) with the given AIController, and writes the opening book to
+     * the given file.  Positions come up in proportion to how often they're dealt, so a partial book covers
+     * the most common positions.
+     *
+     * @param file the file to write.
+     * @param ai the AIController to search each position with.
+     * @param numberOfDeals the number of deals to take positions from.
+     * @param budget the time to search each position for.
+     * @param unit the unit of 'budget'.
+     * @param seed the seed of the random deals.
+     * @throws IOException if the file can't be written.
+     */
+    public static void generate(File file, AIController ai, int numberOfDeals, long budget, TimeUnit unit, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        int sizeOfBoneyard = Bones.NUMBER_OF_BONES - 2 * HAND_SIZE - 1;
+        TreeMap<Long, Byte> entries = new TreeMap<Long, Byte>();
+        Set<Long> positionsWithoutChoices = new HashSet<Long>();
+
+        for (int deal = 0; deal < numberOfDeals; ++deal) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, random);
+
+            List<ImmutableBone> myBones = bones.subList(0, HAND_SIZE);
+            ImmutableBone layout = bones.get(HAND_SIZE);
+            long key = getKey(Bones.maskOf(myBones), layout.id());
+
+            if (entries.containsKey(key) || positionsWithoutChoices.contains(key))
+                continue;
+
+            ai.setInitialState(myBones, true, sizeOfBoneyard, layout);
+            Choice choice = ai.getBestChoice(budget, unit);
+
+            if (!choice.getAction().isPlacement()) {
+                positionsWithoutChoices.add(key);
+                continue;
+            }
+
+            int end = choice.getAction() == Choice.Action.PLACED_RIGHT ? layout.right() : layout.left();
+            entries.put(key, (byte) (choice.getBone().id() << 3 | end));
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(sizeOfBoneyard);
+            out.writeInt(entries.size());
+
+            for (Long key : entries.keySet()) {
+                out.writeInt((int) (key >>> 5));
+                out.writeByte((int) (key & 0x1F));
+                out.writeByte(entries.get(key));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Generates an opening book file.
+     *
+     * Usage: OpeningBook aiName numberOfDeals budgetMillis outputFile
+     *
+     * @param args the command line arguments.
+     * @throws IOException if the file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: OpeningBook aiName numberOfDeals budgetMillis outputFile");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        File file = new File(args[3]);
+        generate(file, AIBuilder.createAI(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                TimeUnit.MILLISECONDS, 0);
+        System.out.printf("Wrote %d positions (%d bytes) to %s in %.1fs%n", load(file).size(), file.length(), file,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,145 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A RouteSelector which gives the same routes as FastRouteSelector, but searches the subtrees of
+ * the root state and of states near the root in parallel (using a ForkJoinPool).
+ *
+ * States down to 'maxForkDepth' levels below the root, which have at least 'forkThreshold' child
+ * states, have their children searched as separate tasks.  Deeper or smaller subtrees are searched
+ * sequentially by a FastRouteSelector.
+ *
+ * @author Sam Wright
+ */
+public class ParallelRouteSelector implements RouteSelector {
+    public static final int DEFAULT_MAX_FORK_DEPTH = 2;
+    public static final int DEFAULT_FORK_THRESHOLD = 2;
+
+    private final ForkJoinPool pool;
+    private final int maxForkDepth;
+    private final int forkThreshold;
+    private final FastRouteSelector sequentialSelector = new FastRouteSelector();
+
+    public ParallelRouteSelector(ForkJoinPool pool) {
+        this(pool, DEFAULT_MAX_FORK_DEPTH, DEFAULT_FORK_THRESHOLD);
+    }
+
+    /**
+     * Creates a ParallelRouteSelector.
+     *
+     * @param pool the pool to run the search in.
+     * @param maxForkDepth the number of levels below the root state whose children are searched in parallel.
+     * @param forkThreshold the minimum number of child states a state needs for them to be searched in parallel.
+     */
+    public ParallelRouteSelector(ForkJoinPool pool, int maxForkDepth, int forkThreshold) {
+        this.pool = pool;
+        this.maxForkDepth = maxForkDepth;
+        this.forkThreshold = forkThreshold;
+    }
+
+    @Override
+    public List<Route> getBestRoutes(GameState state) {
+        return pool.invoke(new RootTask(state));
+    }
+
+    /**
+     * Runs the given tasks (forking all but the first, as ForkJoinTask.invokeAll) and returns their results.
+     * Unlike invokeAll, if a task throws (eg. a SearchDeadlineException) this still waits for every other
+     * task to finish before rethrowing, so that no task is still searching the tree once the search has
+     * returned.
+     */
+    private static List<Route> invokeAndJoinAll(List<RouteTask> tasks) {
+        for (int i = tasks.size() - 1; i > 0; --i)
+            tasks.get(i).fork();
+
+        List<Route> routes = new ArrayList<Route>(tasks.size());
+        RuntimeException exception = null;
+
+        for (int i = 0; i < tasks.size(); ++i) {
+            try {
+                routes.add(i == 0 ? tasks.get(i).invoke() : tasks.get(i).join());
+            } catch (RuntimeException e) {
+                if (exception == null)
+                    exception = e;
+            }
+        }
+
+        if (exception != null)
+            throw exception;
+
+        return routes;
+    }
+
+    /**
+     * Gets the best route from each non-pickup child of the root state, sorted from best to worst.
+     */
+    @SuppressWarnings("serial")
+    private class RootTask extends RecursiveTask<List<Route>> {
+        private final GameState state;
+
+        private RootTask(GameState state) {
+            this.state = state;
+        }
+
+        @Override
+        protected List<Route> compute() {
+            List<RouteTask> tasks = new ArrayList<RouteTask>();
+
+            for (GameState childState : state.getChildStates()) {
+                // Skip pickup child states
+                Choice choiceTaken = childState.getChoiceTaken();
+                if (choiceTaken != null && choiceTaken.getAction() == Choice.Action.PICKED_UP)
+                    continue;
+
+                tasks.add(new RouteTask(childState, 1));
+            }
+
+            List<Route> bestRoutes = invokeAndJoinAll(tasks);
+
+            FastRouteSelector.sortRoutes(bestRoutes, state.isMyTurn());
+            return bestRoutes;
+        }
+    }
+
+    /**
+     * Gets the best route from a state (extended backward to its parent), as FastRouteSelector.getBestRoute.
+     */
+    @SuppressWarnings("serial")
+    private class RouteTask extends RecursiveTask<Route> {
+        private final GameState state;
+        private final int depth;
+
+        private RouteTask(GameState state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Route compute() {
+            if (depth > maxForkDepth)
+                return sequentialSelector.getBestRoute(state);
+
+            List<GameState> childStates = state.getChildStates();
+            if (childStates.size() < forkThreshold)
+                return sequentialSelector.getBestRoute(state);
+
+            List<RouteTask> tasks = new ArrayList<RouteTask>(childStates.size());
+            for (GameState childState : childStates)
+                tasks.add(new RouteTask(childState, depth + 1));
+
+            List<Route> routesFromChildren = invokeAndJoinAll(tasks);
+
+            Route bestRoute = FastRouteSelector.reduceRoutes(state, routesFromChildren);
+            bestRoute.extendBackward();
+            return bestRoute;
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.Arrays;
+
+/**
+ * Solves the rest of a round exactly, given a Deal of all the bones (so both players know every hand
+ * and the order of the boneyard).
+ *
+ * The value of a position is the points I score at the end of the round, if both players play perfectly
+ * from it: the player with the lighter hand scores the weight of the other player's hand, so this is the
+ * opponent's hand weight if I win, minus my hand weight if I lose and zero for a draw.  Players pick up
+ * (one bone at a time, keeping their turn) whenever they can't place, and pass when they can't place and
+ * the boneyard is empty.  The round ends when a player has placed all their bones or both players pass.
+ *
+ * The search is alpha-beta minimax with a transposition table, trying heavier bones first (as they're
+ * usually best to get rid of).  The table is kept between calls for the same Deal, so solving each choice
+ * from a position shares most of the work.
+ *
+ * NB. this isn't thread-safe, so each thread needs its own PerfectInformationSolver.
+ *
+ * @author Sam Wright
+ */
+public class PerfectInformationSolver {
+    public static final int DEFAULT_TABLE_BITS = 18;
+
+    private static final int INFINITY = 1000;
+
+    /**
+     * Added to values in the transposition table, so they're positive (values are at most the weight
+     * of all the bones, 168).
+     */
+    private static final int VALUE_OFFSET = 512;
+
+    private static final int EXACT = 1;
+    private static final int LOWER_BOUND = 2;
+    private static final int UPPER_BOUND = 3;
+    private static final int NO_MOVE = 0x7F;
+
+    private static final int[] LEFT = new int[Bones.NUMBER_OF_BONES];
+    private static final int[] RIGHT = new int[Bones.NUMBER_OF_BONES];
+    private static final int[] WEIGHT = new int[Bones.NUMBER_OF_BONES];
+
+    /**
+     * The bone ids, from the heaviest bone to the lightest.
+     */
+    private static final int[] IDS_BY_WEIGHT = new int[Bones.NUMBER_OF_BONES];
+
+    static {
+        for (int id = 0; id < Bones.NUMBER_OF_BONES; ++id) {
+            ImmutableBone bone = ImmutableBone.fromId(id);
+            LEFT[id] = bone.left();
+            RIGHT[id] = bone.right();
+            WEIGHT[id] = bone.weight();
+        }
+
+        int n = 0;
+        for (int weight = 12; weight >= 0; --weight)
+            for (int id = 0; id < Bones.NUMBER_OF_BONES; ++id)
+                if (WEIGHT[id] == weight)
+                    IDS_BY_WEIGHT[n++] = id;
+    }
+
+    /**
+     * The transposition table.  Each entry is keyed by the packed position (see getKey) and holds
+     * the value (offset by VALUE_OFFSET), the type of bound, the boneyard index (which the key doesn't
+     * cover), the best move and the generation (so entries from other Deals are ignored).
+     */
+    private final long[] keys;
+    private final int[] entries;
+    private final int tableBits;
+
+    private int generation;
+    private Deal deal;
+    private int[] boneyard;
+    private long nodes;
+
+    public PerfectInformationSolver() {
+        this(DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * Creates a PerfectInformationSolver.
+     *
+     * @param tableBits the log (base 2) of the number of entries in the transposition table.
+     */
+    public PerfectInformationSolver(int tableBits) {
+        if (tableBits < 1 || tableBits > 30)
+            throw new IllegalArgumentException("tableBits must be from 1 to 30");
+
+        this.tableBits = tableBits;
+        keys = new long[1 << tableBits];
+        entries = new int[1 << tableBits];
+    }
+
+    /**
+     * Returns the value of the given position (see the class description).
+     *
+     * @param deal the hands and boneyard.
+     * @param layoutLeft the left end of the layout (or -1 if the layout is empty).
+     * @param layoutRight the right end of the layout (or -1 if the layout is empty).
+     * @param isMyTurn true iff it is my turn.
+     * @param lastChoiceWasPass true iff the last choice made was a pass.
+     * @return the value of the position.
+     */
+    public int solve(Deal deal, int layoutLeft, int layoutRight, boolean isMyTurn, boolean lastChoiceWasPass) {
+        setDeal(deal);
+        return search(deal.getMyBones(), deal.getOpponentBones(), layoutLeft, layoutRight, isMyTurn,
+                lastChoiceWasPass, 0, -INFINITY, INFINITY);
+    }
+
+    /**
+     * Returns the value of the position after the given choice is made from the given position.
+     * A pickup takes the first bone in the boneyard (whatever the choice's bone is).
+     *
+     * @param deal the hands and boneyard.
+     * @param layoutLeft the left end of the layout (or -1 if the layout is empty).
+     * @param layoutRight the right end of the layout (or -1 if the layout is empty).
+     * @param isMyTurn true iff it is my turn.
+     * @param lastChoiceWasPass true iff the last choice made was a pass.
+     * @param choiceCode the code (see Choice.codeOf) of the choice to make, which must be valid.
+     * @return the value of the position after the choice.
+     */
+    public int solveChoice(Deal deal, int layoutLeft, int layoutRight, boolean isMyTurn, boolean lastChoiceWasPass,
+                           int choiceCode) {
+        setDeal(deal);
+
+        int myBones = deal.getMyBones();
+        int opponentBones = deal.getOpponentBones();
+        Choice choice = Choice.fromCode(choiceCode);
+
+        switch (choice.getAction()) {
+            case PICKED_UP:
+                if (boneyard.length == 0)
+                    throw new IllegalArgumentException("Can't pick up from an empty boneyard");
+                if (isMyTurn)
+                    myBones |= 1 << boneyard[0];
+                else
+                    opponentBones |= 1 << boneyard[0];
+                return search(myBones, opponentBones, layoutLeft, layoutRight, isMyTurn, false, 1, -INFINITY, INFINITY);
+
+            case PASS:
+                if (lastChoiceWasPass)
+                    return getScore(myBones, opponentBones);
+                return search(myBones, opponentBones, layoutLeft, layoutRight, !isMyTurn, true, 0, -INFINITY, INFINITY);
+
+            default:
+                int id = choice.getBone().id();
+                int bone = 1 << id;
+                if ((bone & (isMyTurn ? myBones : opponentBones)) == 0)
+                    throw new IllegalArgumentException("Can't place a bone that isn't in the hand");
+
+                if (isMyTurn)
+                    myBones &= ~bone;
+                else
+                    opponentBones &= ~bone;
+
+                if (layoutLeft == -1) {
+                    layoutLeft = LEFT[id];
+                    layoutRight = RIGHT[id];
+                } else if (choice.getAction() == Choice.Action.PLACED_RIGHT) {
+                    layoutRight = LEFT[id] == layoutRight ? RIGHT[id] : LEFT[id];
+                } else {
+                    layoutLeft = LEFT[id] == layoutLeft ? RIGHT[id] : LEFT[id];
+                }
+
+                return search(myBones, opponentBones, layoutLeft, layoutRight, !isMyTurn, false, 0, -INFINITY, INFINITY);
+        }
+    }
+
+    /**
+     * Returns the number of positions searched since this PerfectInformationSolver was created.
+     *
+     * @return the number of positions searched.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the points I score if the round ends with the given hands: the player with the lighter
+     * hand scores the weight of the other player's hand.
+     *
+     * @param myBones the bitmask (see Bones.maskOf) of my hand.
+     * @param opponentBones the bitmask of the opponent's hand.
+     * @return the points I score (which are negative if the opponent scores).
+     */
+    public static int getScore(int myBones, int opponentBones) {
+        int myWeight = getWeight(myBones);
+        int opponentWeight = getWeight(opponentBones);
+
+        if (myWeight < opponentWeight)
+            return opponentWeight;
+        else if (opponentWeight < myWeight)
+            return -myWeight;
+        else
+            return 0;
+    }
+
+    private static int getWeight(int bones) {
+        int weight = 0;
+        for (int mask = bones; mask != 0; mask &= mask - 1)
+            weight += WEIGHT[Integer.numberOfTrailingZeros(mask)];
+        return weight;
+    }
+
+    /**
+     * Starts a new generation of the transposition table if the Deal has changed.
+     */
+    private void setDeal(Deal deal) {
+        if (deal == this.deal)
+            return;
+
+        this.deal = deal;
+        boneyard = deal.getBoneyard();
+
+        if (++generation > 0xFF) {
+            Arrays.fill(entries, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Returns the value of the position, from the given 'boneyardIndex' onwards in the boneyard.  As
+     * usual for alpha-beta search, the value is exact if it is between 'alpha' and 'beta', and otherwise
+     * is a bound on the value on the side of the window it falls.
+     */
+    private int search(int myBones, int opponentBones, int layoutLeft, int layoutRight, boolean isMyTurn,
+                       boolean lastChoiceWasPass, int boneyardIndex, int alpha, int beta) {
+        ++nodes;
+
+        if (myBones == 0 || opponentBones == 0)
+            return getScore(myBones, opponentBones);
+
+        int hand = isMyTurn ? myBones : opponentBones;
+        int placeableBones = layoutLeft == -1 ? hand : hand & Bones.getBonesMatching(layoutLeft, layoutRight);
+
+        if (placeableBones == 0) {
+            if (boneyardIndex < boneyard.length) {
+                int bone = 1 << boneyard[boneyardIndex];
+                if (isMyTurn)
+                    myBones |= bone;
+                else
+                    opponentBones |= bone;
+                return search(myBones, opponentBones, layoutLeft, layoutRight, isMyTurn, false, boneyardIndex + 1,
+                        alpha, beta);
+            }
+
+            // Two passes in a row ends the round
+            if (lastChoiceWasPass)
+                return getScore(myBones, opponentBones);
+
+            return search(myBones, opponentBones, layoutLeft, layoutRight, !isMyTurn, true, boneyardIndex,
+                    alpha, beta);
+        }
+
+        long key = getKey(myBones, opponentBones, layoutLeft, layoutRight, isMyTurn, lastChoiceWasPass);
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - tableBits));
+        int tableMove = NO_MOVE;
+
+        int entry = entries[slot];
+        if (keys[slot] == key && entry >>> 24 == generation && (entry >>> 12 & 0x1F) == boneyardIndex) {
+            int value = (entry & 0x3FF) - VALUE_OFFSET;
+            int bound = entry >>> 10 & 3;
+
+            if (bound == EXACT)
+                return value;
+            else if (bound == LOWER_BOUND)
+                alpha = Math.max(alpha, value);
+            else
+                beta = Math.min(beta, value);
+
+            if (alpha >= beta)
+                return value;
+
+            tableMove = entry >>> 17 & 0x7F;
+        }
+
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        int bestValue = isMyTurn ? -INFINITY : INFINITY;
+        int bestMove = NO_MOVE;
+
+        // Moves are (id << 1 | isLeft), and the table's move is tried first
+        for (int i = -1; i < IDS_BY_WEIGHT.length; ++i) {
+            int id;
+            if (i == -1) {
+                if (tableMove == NO_MOVE)
+                    continue;
+                id = tableMove >>> 1;
+            } else {
+                id = IDS_BY_WEIGHT[i];
+            }
+
+            int bone = 1 << id;
+            if ((placeableBones & bone) == 0)
+                continue;
+
+            for (int side = 0; side < 2; ++side) {
+                int move = id << 1 | side;
+                if (i == -1 ? move != tableMove : move == tableMove)
+                    continue;
+
+                int newLeft = layoutLeft;
+                int newRight = layoutRight;
+
+                if (layoutLeft == -1) {
+                    // The first bone is placed on the right
+                    if (side == 1)
+                        continue;
+                    newLeft = LEFT[id];
+                    newRight = RIGHT[id];
+                } else if (side == 0) {
+                    if (LEFT[id] != layoutRight && RIGHT[id] != layoutRight)
+                        continue;
+                    newRight = LEFT[id] == layoutRight ? RIGHT[id] : LEFT[id];
+                } else {
+                    if (LEFT[id] != layoutLeft && RIGHT[id] != layoutLeft)
+                        continue;
+                    // Placing on either end gives the same position if the ends are equal
+                    if (layoutLeft == layoutRight)
+                        continue;
+                    newLeft = LEFT[id] == layoutLeft ? RIGHT[id] : LEFT[id];
+                }
+
+                int value;
+                if (isMyTurn)
+                    value = search(myBones & ~bone, opponentBones, newLeft, newRight, false, false, boneyardIndex,
+                            alpha, beta);
+                else
+                    value = search(myBones, opponentBones & ~bone, newLeft, newRight, true, false, boneyardIndex,
+                            alpha, beta);
+
+                if (isMyTurn ? value > bestValue : value < bestValue) {
+                    bestValue = value;
+                    bestMove = move;
+                }
+
+                if (isMyTurn)
+                    alpha = Math.max(alpha, value);
+                else
+                    beta = Math.min(beta, value);
+
+                if (alpha >= beta)
+                    break;
+            }
+
+            if (alpha >= beta)
+                break;
+        }
+
+        int bound;
+        if (bestValue <= originalAlpha)
+            bound = UPPER_BOUND;
+        else if (bestValue >= originalBeta)
+            bound = LOWER_BOUND;
+        else
+            bound = EXACT;
+
+        keys[slot] = key;
+        entries[slot] = (bestValue + VALUE_OFFSET) | bound << 10 | boneyardIndex << 12 | bestMove << 17 | generation << 24;
+
+        return bestValue;
+    }
+
+    /**
+     * Packs the position (except the boneyard index) into a long: 28 bits for each hand, 3 bits for
+     * each layout end, and a bit each for whose turn it is and whether the last choice was a pass.
+     */
+    private static long getKey(int myBones, int opponentBones, int layoutLeft, int layoutRight, boolean isMyTurn,
+                               boolean lastChoiceWasPass) {
+        return (myBones & 0xFFFFFFFL)
+                | (opponentBones & 0xFFFFFFFL) << 28
+                | (long) (layoutLeft + 1) << 56
+                | (long) (layoutRight + 1) << 59
+                | (isMyTurn ? 1L << 62 : 0)
+                | (lastChoiceWasPass ? 1L << 63 : 0);
+    }
+}
@@ -12,6 +12,14 @@ import java.util.List;
  */
 public class RouteSelectorImpl extends AbstractRouteSelector {
 
+    public RouteSelectorImpl() {
+        super();
+    }
+
+    public RouteSelectorImpl(TranspositionTable transpositionTable) {
+        super(transpositionTable);
+    }
+
     @Override
     public double extraValueFromDiscardedRoutes(Route chosen, List<Route> discardedRoutes, boolean isMyTurn) {
         double extraValue = 0;
@@ -1,6 +1,7 @@
 package dominoes.players.ai.algorithm.components;
 
 import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
 import dominoes.players.ai.algorithm.helper.Choice;
 
 import java.util.List;
@@ -11,6 +12,12 @@ import java.util.List;
  * @author Sam Wright
  */
 public interface StateEnumerator {
+    /**
+     * The most moves there can be from any state (ie. placing any bone at either end, or one more
+     * for a pass or the opponent's pickup), and so the size of the array to give to getMyValidMoves
+     * and getOpponentValidMoves.
+     */
+    public static final int MAX_MOVES = 2 * Bones.NUMBER_OF_BONES + 1;
 
     /**
      * Returns all valid choices the AI could make, given the current state.
@@ -27,4 +34,24 @@ public interface StateEnumerator {
      * @return all valid choices the AI's opponent could make.
      */
     List<Choice> getOpponentValidChoices(BoneState boneState);
+
+    /**
+     * Writes the codes (see Choice.codeOf) of all valid choices the AI could make into 'moves'.
+     * This gives the same choices as getMyValidChoices, but without creating any objects.
+     *
+     * @param boneState the current state's bone manager.
+     * @param moves the array to write the codes into (of size at least MAX_MOVES).
+     * @return the number of valid choices.
+     */
+    int getMyValidMoves(BoneState boneState, int[] moves);
+
+    /**
+     * Writes the codes (see Choice.codeOf) of all valid choices the AI's opponent could make into 'moves'.
+     * This gives the same choices as getOpponentValidChoices, but without creating any objects.
+     *
+     * @param boneState the current state's bone manager.
+     * @param moves the array to write the codes into (of size at least MAX_MOVES).
+     * @return the number of valid choices.
+     */
+    int getOpponentValidMoves(BoneState boneState, int[] moves);
 }
@@ -1,11 +1,11 @@
 package dominoes.players.ai.algorithm.components;
 
 import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
 import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.ImmutableBone;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
@@ -14,6 +14,8 @@ import java.util.List;
  * @author Sam Wright
  */
 public class StateEnumeratorImpl extends AbstractStateEnumerator {
+    private static final int PASS_CODE = Choice.codeOf(Choice.of(Choice.Action.PASS, null));
+    private static final int OPPONENT_PICKUP_CODE = Choice.codeOf(Choice.of(Choice.Action.PICKED_UP, null));
 
     @Override
     public List<Choice> getMyValidChoices(BoneState boneState) {
@@ -26,9 +28,9 @@ public class StateEnumeratorImpl extends AbstractStateEnumerator {
                     boneState.getLayoutLeft(), boneState.getLayoutRight());
 
         if (validChoices.isEmpty() && boneState.getSizeOfBoneyard() > 0) {
-            List<ImmutableBone> pickupableBones = new LinkedList<ImmutableBone>();
+            List<ImmutableBone> pickupableBones = new ArrayList<ImmutableBone>();
             for (ImmutableBone bone : boneState.getUnknownBones())
-                if (boneState.getProbThatBoneyardHasBone(bone) > 0.001)
+                if (boneState.getProbThatBoneyardHasBone(bone.id()) > 0.001)
                     pickupableBones.add(bone);
 
             validChoices.addAll(getValidPickupChoices(pickupableBones));
@@ -37,7 +39,7 @@ public class StateEnumeratorImpl extends AbstractStateEnumerator {
 
         if (validChoices.isEmpty())
             // Nothing to pick up from boneyard, so pass
-            validChoices.add(new Choice(Choice.Action.PASS, null));
+            validChoices.add(Choice.of(Choice.Action.PASS, null));
 
         return validChoices;
     }
@@ -45,9 +47,9 @@ public class StateEnumeratorImpl extends AbstractStateEnumerator {
     @Override
     public List<Choice> getOpponentValidChoices(BoneState boneState) {
         List<Choice> validChoices;
-        List<ImmutableBone> possibleOpponentBones = new LinkedList<ImmutableBone>();
+        List<ImmutableBone> possibleOpponentBones = new ArrayList<ImmutableBone>();
         for (ImmutableBone bone : boneState.getUnknownBones())
-            if (boneState.getProbThatOpponentHasBone(bone) > 0.001)
+            if (boneState.getProbThatOpponentHasBone(bone.id()) > 0.001)
                 possibleOpponentBones.add(bone);
 
         if (boneState.isLayoutEmpty()) {
@@ -63,40 +65,133 @@ public class StateEnumeratorImpl extends AbstractStateEnumerator {
                 validChoices = new ArrayList<Choice>(1);
             }
 
-            // We want to know if the opponent must be able to play.  To do this, we
-            // can ask "are there any bones matching the layout which MUST be in the
-            // opponent's hand".  However, it's easier to ask the negative question,
-            // "are all bones matching the layout DEFINITELY in the boneyard".
-            int possibleOpponentBonesMatchingLayout = 0;
-            int spacesLeftInBoneyard = boneState.getSizeOfBoneyard();
-            for (ImmutableBone bone : boneState.getUnknownBones())
-                if (boneState.getProbThatBoneyardHasBone(bone) > 0.999)
-                    spacesLeftInBoneyard -= 1;
-                else if (bone.matches(boneState.getLayoutLeft()) || bone.matches(boneState.getLayoutRight()))
-                    possibleOpponentBonesMatchingLayout += 1;
-
-            boolean opponentMustHavePlaceableBone = (possibleOpponentBonesMatchingLayout > spacesLeftInBoneyard);
-
-
-            if (!opponentMustHavePlaceableBone) {
+            if (!opponentMustHavePlaceableBone(boneState)) {
                 if (boneState.getSizeOfBoneyard() > 0) {
-                    // If the next BoneState after a pickup is invalid, it means
-                    boolean opponentCanPickup = true;
-                    try {
-                        boneState.createNext(new Choice(Choice.Action.PICKED_UP, null), false);
-                    } catch (IllegalStateException e) {
-                        opponentCanPickup = false;
-                    }
-                    if (opponentCanPickup)
+                    if (boneState.canOpponentPickUp())
                         // Assuming the opponent can't place a bone, but can pick up:
-                        validChoices.add(new Choice(Choice.Action.PICKED_UP, null));
+                        validChoices.add(Choice.of(Choice.Action.PICKED_UP, null));
                 } else {
                     // Assuming the opponent can't place or pick up a bone:
-                    validChoices.add(new Choice(Choice.Action.PASS, null));
+                    validChoices.add(Choice.of(Choice.Action.PASS, null));
                 }
             }
         }
 
         return validChoices;
     }
+
+    /**
+     * As getMyValidChoices, but the bones are considered in id order (which is the order of
+     * BitmaskBoneState.getMyBones(), but not necessarily of other BoneStates).
+     */
+    @Override
+    public int getMyValidMoves(BoneState boneState, int[] moves) {
+        int myBones = boneState.getMyBonesMask();
+        int n;
+
+        if (boneState.isLayoutEmpty())
+            n = writeInitialMoves(myBones, moves);
+        else
+            n = writePlacingMoves(myBones, boneState.getLayoutLeft(), boneState.getLayoutRight(), moves);
+
+        if (n == 0 && boneState.getSizeOfBoneyard() > 0) {
+            for (int mask = boneState.getUnknownBonesMask(); mask != 0; mask &= mask - 1) {
+                int id = Integer.numberOfTrailingZeros(mask);
+                if (boneState.getProbThatBoneyardHasBone(id) > 0.001)
+                    moves[n++] = Choice.codeOf(Choice.Action.PICKED_UP, id);
+            }
+        }
+
+        if (n == 0)
+            // Nothing to pick up from boneyard, so pass
+            moves[n++] = PASS_CODE;
+
+        return n;
+    }
+
+    /**
+     * As getOpponentValidChoices, but the bones are considered in id order.
+     */
+    @Override
+    public int getOpponentValidMoves(BoneState boneState, int[] moves) {
+        int unknownBones = boneState.getUnknownBonesMask();
+        int possibleOpponentBones = 0;
+        for (int mask = unknownBones; mask != 0; mask &= mask - 1) {
+            int id = Integer.numberOfTrailingZeros(mask);
+            if (boneState.getProbThatOpponentHasBone(id) > 0.001)
+                possibleOpponentBones |= 1 << id;
+        }
+
+        // If this is the first move of the game, the opponent will definitely place.
+        if (boneState.isLayoutEmpty())
+            return writeInitialMoves(possibleOpponentBones, moves);
+
+        int layoutLeft = boneState.getLayoutLeft();
+        int layoutRight = boneState.getLayoutRight();
+        int n = 0;
+
+        if (boneState.getSizeOfOpponentHand() > 0)
+            n = writePlacingMoves(possibleOpponentBones, layoutLeft, layoutRight, moves);
+
+        if (!opponentMustHavePlaceableBone(boneState)) {
+            if (boneState.getSizeOfBoneyard() > 0) {
+                if (boneState.canOpponentPickUp())
+                    moves[n++] = OPPONENT_PICKUP_CODE;
+            } else {
+                moves[n++] = PASS_CODE;
+            }
+        }
+
+        return n;
+    }
+
+    /**
+     * Returns true iff the opponent must have a bone matching the layout.
+     *
+     * We want to know if the opponent must be able to play.  To do this, we
+     * can ask "are there any bones matching the layout which MUST be in the
+     * opponent's hand".  However, it's easier to ask the negative question,
+     * "are all bones matching the layout DEFINITELY in the boneyard".
+     */
+    private static boolean opponentMustHavePlaceableBone(BoneState boneState) {
+        int unknownBones = boneState.getUnknownBonesMask();
+
+        int bonesDefinitelyInBoneyard = 0;
+        for (int mask = unknownBones; mask != 0; mask &= mask - 1) {
+            int id = Integer.numberOfTrailingZeros(mask);
+            if (boneState.getProbThatBoneyardHasBone(id) > 0.999)
+                bonesDefinitelyInBoneyard |= 1 << id;
+        }
+
+        int matchingBones = Bones.getBonesMatching(boneState.getLayoutLeft(), boneState.getLayoutRight());
+        int possibleOpponentBonesMatchingLayout = Integer.bitCount(unknownBones & ~bonesDefinitelyInBoneyard & matchingBones);
+        int spacesLeftInBoneyard = boneState.getSizeOfBoneyard() - Integer.bitCount(bonesDefinitelyInBoneyard);
+
+        return possibleOpponentBonesMatchingLayout > spacesLeftInBoneyard;
+    }
+
+    private static int writeInitialMoves(int bones, int[] moves) {
+        int n = 0;
+        for (int mask = bones; mask != 0; mask &= mask - 1)
+            moves[n++] = Choice.codeOf(Choice.Action.PLACED_RIGHT, Integer.numberOfTrailingZeros(mask));
+        return n;
+    }
+
+    private static int writePlacingMoves(int bones, int layoutLeft, int layoutRight, int[] moves) {
+        int matchingRight = bones & Bones.getBonesMatching(layoutRight);
+        int matchingLeft = bones & Bones.getBonesMatching(layoutLeft);
+        int n = 0;
+
+        for (int mask = matchingRight | matchingLeft; mask != 0; mask &= mask - 1) {
+            int id = Integer.numberOfTrailingZeros(mask);
+            int boneMask = 1 << id;
+
+            if ((matchingRight & boneMask) != 0)
+                moves[n++] = Choice.codeOf(Choice.Action.PLACED_RIGHT, id);
+            if ((matchingLeft & boneMask) != 0)
+                moves[n++] = Choice.codeOf(Choice.Action.PLACED_LEFT, id);
+        }
+
+        return n;
+    }
 }
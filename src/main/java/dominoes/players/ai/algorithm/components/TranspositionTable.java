@@ -0,0 +1,121 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Zobrist;
+
+import java.util.Arrays;
+
+/**
+ * A bounded hash table of the best-route values already calculated for GameStates, so that
+ * a position reached by several orders of choices is only searched once.
+ *
+ * Values are stored relative to the state's own value (ie. route value - state value), since
+ * states reached by different orders of choices can have accumulated different values.  Each
+ * entry records the remaining ply (see GameState.getRemainingPly()) it was searched to, and is
+ * only used for states with at most that remaining ply.
+ *
+ * The tree is deepened between searches, so entries are only valid for one search and clear()
+ * must be called before each one (which is O(1), since entries are marked with a generation).
+ *
+ * @author Sam Wright
+ */
+public class TranspositionTable {
+    private final long[] keys;
+    private final double[] values;
+    private final int[] remainingPlies;
+    private final int[] generations;
+    private final int indexMask;
+    private int generation = 1;
+
+    /**
+     * Creates a table with 2^sizeLog2 entries.
+     *
+     * @param sizeLog2 the log (base 2) of the number of entries.
+     */
+    public TranspositionTable(int sizeLog2) {
+        if (sizeLog2 < 0 || sizeLog2 > 30)
+            throw new IllegalArgumentException("sizeLog2 must be between 0 and 30");
+
+        int size = 1 << sizeLog2;
+        keys = new long[size];
+        values = new double[size];
+        remainingPlies = new int[size];
+        generations = new int[size];
+        indexMask = size - 1;
+    }
+
+    /**
+     * Returns the key of the given state, which is its BoneState's hash combined with
+     * whose turn it is and whether the last choice was a pass (since two passes in a row
+     * end the game).
+     *
+     * @param state the state to get the key of.
+     * @return the key of the state.
+     */
+    public static long keyOf(GameState state) {
+        long key = state.getBoneState().getHash();
+
+        if (state.isMyTurn())
+            key ^= Zobrist.myTurn();
+
+        Choice choiceTaken = state.getChoiceTaken();
+        if (choiceTaken != null && choiceTaken.getAction() == Choice.Action.PASS)
+            key ^= Zobrist.pass();
+
+        return key;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        ++generation;
+
+        // On the (very unlikely) overflow, old generations could come back to life
+        if (generation == 0) {
+            Arrays.fill(generations, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Gets the value stored for the given key, if it was searched to at least the given remaining ply.
+     *
+     * @param key the key of the state (see keyOf).
+     * @param remainingPly the remaining ply the state needs to be searched to.
+     * @return the stored value (relative to the state's value), or Double.NaN if there is no such entry.
+     */
+    public double get(long key, int remainingPly) {
+        int index = indexOf(key);
+
+        if (generations[index] == generation && keys[index] == key && remainingPlies[index] >= remainingPly)
+            return values[index];
+        else
+            return Double.NaN;
+    }
+
+    /**
+     * Stores the value of the given key, replacing any entry in the same slot unless that
+     * entry is from this search and was searched deeper.
+     *
+     * @param key the key of the state (see keyOf).
+     * @param remainingPly the remaining ply the state was searched to.
+     * @param value the value of the best route from the state, relative to the state's value.
+     */
+    public void put(long key, int remainingPly, double value) {
+        int index = indexOf(key);
+
+        if (generations[index] == generation && remainingPlies[index] > remainingPly)
+            return;
+
+        keys[index] = key;
+        values[index] = value;
+        remainingPlies[index] = remainingPly;
+        generations[index] = generation;
+    }
+
+    private int indexOf(long key) {
+        return (int) (key ^ (key >>> 32)) & indexMask;
+    }
+}
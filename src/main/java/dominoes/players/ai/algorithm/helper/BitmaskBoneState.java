@@ -0,0 +1,557 @@
+package dominoes.players.ai.algorithm.helper;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Implementation of BoneState which holds my hand and the opponent's chances to have each
+ * unknown bone as bitmasks over bone.id().
+ *
+ * The chance buckets follow the same model as UnknownBoneManagerImpl (and so give the same
+ * probabilities), but creating the next state only involves integer operations and
+ * probabilities are only calculated when first asked for.
+ *
+ * @author Sam Wright
+ */
+public class BitmaskBoneState implements BoneState {
+    public static final BoneStateFactory FACTORY = new BoneStateFactory() {
+        @Override
+        public BoneState createInitialState(List<ImmutableBone> myBones, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+            return new BitmaskBoneState(myBones, sizeOfBoneyard, initialLayout);
+        }
+    };
+
+    private final int myBones;
+    private final int layoutLeft, layoutRight;
+    private final int sizeOfBoneyard, sizeOfOpponentHand;
+    private final boolean isOpponentPickup;
+
+    /**
+     * The bones the opponent has had 'i' chances to pick up are in chances[i].
+     * There are no trailing empty masks.
+     */
+    private final int[] chances;
+
+    /**
+     * The Zobrist hash of this state, and the part of it which comes from 'chances'.
+     */
+    private final long hash, chancesHash;
+
+    // Lazily calculated:
+    private float[] opponentBoneProbs;
+    private List<ImmutableBone> myBonesList, unknownBonesList;
+
+    public BitmaskBoneState(List<ImmutableBone> myBones, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+        this.myBones = Bones.maskOf(myBones);
+
+        if (initialLayout.length == 0) {
+            layoutLeft = -1;
+            layoutRight = -1;
+        } else {
+            layoutLeft = initialLayout[0].left();
+            layoutRight = initialLayout[initialLayout.length-1].right();
+        }
+
+        int allBones = (1 << Bones.NUMBER_OF_BONES) - 1;
+        int unknownBones = allBones & ~this.myBones & ~Bones.maskOf(Arrays.asList(initialLayout));
+
+        this.sizeOfBoneyard = sizeOfBoneyard;
+        this.sizeOfOpponentHand = Integer.bitCount(unknownBones) - sizeOfBoneyard;
+        this.isOpponentPickup = false;
+
+        // The opponent takes a bone from the boneyard sizeOfOpponentHand times.
+        chances = new int[sizeOfOpponentHand + 1];
+        chances[sizeOfOpponentHand] = unknownBones;
+
+        chancesHash = hashOf(chances);
+        hash = Zobrist.myBones(this.myBones) ^ Zobrist.layoutLeft(layoutLeft) ^ Zobrist.layoutRight(layoutRight)
+                ^ Zobrist.sizeOfBoneyard(sizeOfBoneyard) ^ Zobrist.sizeOfOpponentHand(sizeOfOpponentHand) ^ chancesHash;
+    }
+
+    private BitmaskBoneState(int myBones, int layoutLeft, int layoutRight, int sizeOfBoneyard,
+                             int sizeOfOpponentHand, boolean isOpponentPickup, int[] chances,
+                             long hash, long chancesHash) {
+        this.myBones = myBones;
+        this.layoutLeft = layoutLeft;
+        this.layoutRight = layoutRight;
+        this.sizeOfBoneyard = sizeOfBoneyard;
+        this.sizeOfOpponentHand = sizeOfOpponentHand;
+        this.isOpponentPickup = isOpponentPickup;
+        this.chances = chances;
+        this.hash = hash;
+        this.chancesHash = chancesHash;
+    }
+
+    @Override
+    public BoneState createNext(Choice choiceTaken, boolean isMyTurn) {
+        int newLayoutLeft = layoutLeft;
+        int newLayoutRight = layoutRight;
+        int newMyBones = myBones;
+        int newSizeOfBoneyard = sizeOfBoneyard;
+        int newSizeOfOpponentHand = sizeOfOpponentHand;
+        int[] newChances = chances;
+
+        Choice.Action action = choiceTaken.getAction();
+        ImmutableBone bone = choiceTaken.getBone();
+        int boneMask = bone == null ? 0 : Bones.maskOf(bone);
+
+        // Update layout end values
+        if (action.isPlacement()) {
+            boolean onRight = action == Choice.Action.PLACED_RIGHT;
+
+            if (isLayoutEmpty()) {
+                newLayoutLeft = bone.left();
+                newLayoutRight = bone.right();
+            } else {
+                int oldValue = onRight ? layoutRight : layoutLeft;
+                int newValue = (bone.left() == oldValue) ? bone.right() : bone.left();
+                if (onRight)
+                    newLayoutRight = newValue;
+                else
+                    newLayoutLeft = newValue;
+            }
+        }
+
+        if (isMyTurn) {
+            if (action.isPlacement()) {
+                newMyBones &= ~boneMask;
+            } else if (action == Choice.Action.PICKED_UP) {
+                newMyBones |= boneMask;
+                newSizeOfBoneyard -= 1;
+                newChances = removeBones(chances, boneMask);
+            }
+
+        } else {
+            if (action.isPlacement()) {
+                // See UnknownBoneManagerImpl.createNext for the reasoning behind these updates.
+                newChances = shiftChances(chances, getBoneChances(boneMask), -1);
+                newChances = removeBones(newChances, boneMask);
+                newSizeOfOpponentHand -= 1;
+
+            } else if (action == Choice.Action.PICKED_UP) {
+                newSizeOfBoneyard -= 1;
+                newSizeOfOpponentHand += 1;
+
+                if (!isOpponentPickup) {
+                    newChances = shiftChances(chances, 0, +1);
+
+                    int matchingBones = Bones.getBonesMatching(layoutLeft, layoutRight);
+                    newChances = removeBones(newChances, matchingBones);
+                    newChances[0] |= matchingBones & getUnknownBonesMask();
+                } else {
+                    newChances = shiftChances(chances, 1, +1);
+                }
+            }
+        }
+
+        boolean newIsOpponentPickup = action == Choice.Action.PICKED_UP && !isMyTurn;
+        checkChancesAreValid(newChances, newIsOpponentPickup);
+
+        // Update the hash by swapping the keys of the features which changed.  The chances are
+        // rehashed as a whole, since a shift moves every bone in the shifted buckets.
+        long newChancesHash = newChances == chances ? chancesHash : hashOf(newChances);
+        long newHash = hash ^ chancesHash ^ newChancesHash;
+        if (newMyBones != myBones)
+            newHash ^= Zobrist.myBone(bone.id());
+        if (newLayoutLeft != layoutLeft)
+            newHash ^= Zobrist.layoutLeft(layoutLeft) ^ Zobrist.layoutLeft(newLayoutLeft);
+        if (newLayoutRight != layoutRight)
+            newHash ^= Zobrist.layoutRight(layoutRight) ^ Zobrist.layoutRight(newLayoutRight);
+        if (newSizeOfBoneyard != sizeOfBoneyard)
+            newHash ^= Zobrist.sizeOfBoneyard(sizeOfBoneyard) ^ Zobrist.sizeOfBoneyard(newSizeOfBoneyard);
+        if (newSizeOfOpponentHand != sizeOfOpponentHand)
+            newHash ^= Zobrist.sizeOfOpponentHand(sizeOfOpponentHand) ^ Zobrist.sizeOfOpponentHand(newSizeOfOpponentHand);
+        if (newIsOpponentPickup != isOpponentPickup)
+            newHash ^= Zobrist.opponentPickup();
+
+        return new BitmaskBoneState(newMyBones, newLayoutLeft, newLayoutRight, newSizeOfBoneyard,
+                newSizeOfOpponentHand, newIsOpponentPickup, newChances, newHash, newChancesHash);
+    }
+
+    /**
+     * Returns all fields of this state except for the chances and the hash, packed into a long
+     * (see fromPackedFields).
+     *
+     * @return the packed fields of this state.
+     */
+    public long getPackedFields() {
+        return (myBones & 0xFFFFFFFL)
+                | (long) (layoutLeft + 1) << 28
+                | (long) (layoutRight + 1) << 32
+                | (long) sizeOfBoneyard << 36
+                | (long) sizeOfOpponentHand << 41
+                | (isOpponentPickup ? 1L << 46 : 0);
+    }
+
+    /**
+     * Returns the opponent's chances to have picked up the unknown bones (see fromPackedFields).
+     *
+     * NB. the returned array is shared with this state (and states created from it), so mustn't be modified.
+     *
+     * @return the opponent's chances to have picked up the unknown bones.
+     */
+    public int[] getChances() {
+        return chances;
+    }
+
+    /**
+     * Recreates a BitmaskBoneState from the values returned by getPackedFields(), getChances() and getHash().
+     *
+     * @param packedFields the packed fields of the state.
+     * @param chances the opponent's chances to have picked up the unknown bones.
+     * @param hash the hash of the state.
+     * @return the recreated state.
+     */
+    public static BitmaskBoneState fromPackedFields(long packedFields, int[] chances, long hash) {
+        return new BitmaskBoneState(
+                (int) (packedFields & 0xFFFFFFFL),
+                (int) (packedFields >>> 28 & 0xF) - 1,
+                (int) (packedFields >>> 32 & 0xF) - 1,
+                (int) (packedFields >>> 36 & 0x1F),
+                (int) (packedFields >>> 41 & 0x1F),
+                (packedFields >>> 46 & 1) != 0,
+                chances, hash, hashOf(chances));
+    }
+
+    private static long hashOf(int[] chances) {
+        long hash = 0;
+        for (int i = 0; i < chances.length; ++i)
+            hash ^= Zobrist.chances(chances[i], i);
+        return hash;
+    }
+
+    /**
+     * Returns the number of chances the opponent has had to pick up the given bone.
+     *
+     * @param boneMask the bitmask of the bone.
+     * @return the number of chances the opponent has had to pick up the bone.
+     * @throws IllegalStateException if the bone isn't an unknown bone.
+     */
+    private int getBoneChances(int boneMask) {
+        for (int i = 0; i < chances.length; ++i)
+            if ((chances[i] & boneMask) != 0)
+                return i;
+
+        throw new IllegalStateException("Not an unknown bone");
+    }
+
+    /**
+     * Returns a copy of 'chances' with the given bones removed (and trailing empty masks trimmed).
+     *
+     * NB. The returned array always has at least one element, so bones can be added to chances[0].
+     */
+    private static int[] removeBones(int[] chances, int bonesMask) {
+        int[] newChances = new int[Math.max(chances.length, 1)];
+        for (int i = 0; i < chances.length; ++i)
+            newChances[i] = chances[i] & ~bonesMask;
+
+        return trim(newChances);
+    }
+
+    /**
+     * Returns a copy of 'chances' where the bones that have had at least 'threshold' chances have
+     * 'value' added to their number of chances (to a minimum of zero chances).
+     */
+    private static int[] shiftChances(int[] chances, int threshold, int value) {
+        int[] newChances = new int[Math.max(chances.length + value, 1)];
+
+        for (int i = 0; i < chances.length; ++i) {
+            int newKey = i;
+            if (i >= threshold)
+                newKey += value;
+            if (newKey < 0)
+                newKey = 0;
+
+            newChances[newKey] |= chances[i];
+        }
+
+        return trim(newChances);
+    }
+
+    /**
+     * Returns 'chances' without trailing empty masks (but with at least one element).
+     */
+    private static int[] trim(int[] chances) {
+        int length = chances.length;
+        while (length > 1 && chances[length - 1] == 0)
+            --length;
+
+        return length == chances.length ? chances : Arrays.copyOf(chances, length);
+    }
+
+    /**
+     * Checks it is possible to have picked up bones with the given chances (ie. that no bone
+     * has to have been picked up more than once).  This is the same check performed by
+     * UnknownBoneManagerImpl when calculating the probabilities.
+     *
+     * @throws IllegalStateException if the chances are invalid.
+     */
+    private static void checkChancesAreValid(int[] chances, boolean isOpponentPickup) {
+        int thenAvailableBonesToPickup = 0;
+
+        for (int i = chances.length - 1; i > 0; --i) {
+            thenAvailableBonesToPickup += Integer.bitCount(chances[i]);
+            if (isOpponentPickup && i == 1)
+                thenAvailableBonesToPickup += Integer.bitCount(chances[0]);
+
+            if (thenAvailableBonesToPickup == 0)
+                throw new IllegalStateException("Invalid choice");
+
+            --thenAvailableBonesToPickup;
+        }
+    }
+
+    /**
+     * Gets the probability of the opponent holding each bone, indexed by bone.id().
+     *
+     * NB. this uses the same floating-point operations as UnknownBoneManagerImpl, but all bones with
+     * the same number of chances are calculated together.
+     */
+    private float[] getOpponentBoneProbs() {
+        if (opponentBoneProbs != null)
+            return opponentBoneProbs;
+
+        float[] probs = new float[chances.length];
+        int thenAvailableBonesToPickup = 0;
+
+        for (int i = chances.length - 1; i > 0; --i) {
+            thenAvailableBonesToPickup += Integer.bitCount(chances[i]);
+
+            // Bones with zero chances have one chance if this is a pickup (see UnknownBoneManagerImpl)
+            int lowestChances = i;
+            if (isOpponentPickup && i == 1) {
+                thenAvailableBonesToPickup += Integer.bitCount(chances[0]);
+                lowestChances = 0;
+            }
+
+            for (int j = lowestChances; j < chances.length; ++j) {
+                float probOpponentHasBone = probs[j];
+                float probBoneyardHasBone = 1 - probOpponentHasBone;
+                if (Math.abs(probBoneyardHasBone) > 0.001)
+                    probOpponentHasBone += probBoneyardHasBone / thenAvailableBonesToPickup;
+
+                probs[j] = probOpponentHasBone;
+            }
+
+            --thenAvailableBonesToPickup;
+        }
+
+        float[] boneProbs = new float[Bones.NUMBER_OF_BONES];
+        for (int i = 0; i < chances.length; ++i) {
+            for (int mask = chances[i]; mask != 0; mask &= mask - 1)
+                boneProbs[Integer.numberOfTrailingZeros(mask)] = probs[i];
+        }
+
+        opponentBoneProbs = boneProbs;
+        return boneProbs;
+    }
+
+    @Override
+    public int sampleOpponentBones(Random random) {
+        return sampleOpponentBones(chances, isOpponentPickup, sizeOfOpponentHand, random);
+    }
+
+    /**
+     * Samples the opponent's hand by replaying their pickups as getOpponentBoneProbs() models them:
+     * from the most chances down, each pickup is a random bone (not already picked) from those with
+     * at least that many chances.  So each bone is sampled with the probability calculated for it.
+     *
+     * The chances don't always account for the whole hand (eg. when I pick up the only bone with the
+     * most chances), so any remaining bones are picked from those the opponent could have.
+     *
+     * NB. this is package-private so UnknownBoneManagerImpl can sample from the same model.
+     */
+    static int sampleOpponentBones(int[] chances, boolean isOpponentPickup, int sizeOfOpponentHand, Random random) {
+        int opponentBones = 0;
+        int availableBones = 0;
+
+        for (int i = chances.length - 1; i > 0 && Integer.bitCount(opponentBones) < sizeOfOpponentHand; --i) {
+            availableBones |= chances[i];
+            if (isOpponentPickup && i == 1)
+                availableBones |= chances[0];
+
+            if (availableBones != 0) {
+                int bone = pickRandomBone(availableBones, random);
+                opponentBones |= bone;
+                availableBones &= ~bone;
+            }
+        }
+
+        int unknownBones = 0;
+        for (int mask : chances)
+            unknownBones |= mask;
+
+        int possibleBones = unknownBones & ~opponentBones;
+        if (!isOpponentPickup && Integer.bitCount(possibleBones & ~chances[0]) >= sizeOfOpponentHand - Integer.bitCount(opponentBones))
+            possibleBones &= ~chances[0];
+
+        while (Integer.bitCount(opponentBones) < sizeOfOpponentHand && possibleBones != 0) {
+            int bone = pickRandomBone(possibleBones, random);
+            opponentBones |= bone;
+            possibleBones &= ~bone;
+        }
+
+        return opponentBones;
+    }
+
+    /**
+     * Returns the bitmask of a bone picked uniformly at random from the given (non-empty) bitmask.
+     */
+    private static int pickRandomBone(int bones, Random random) {
+        for (int n = random.nextInt(Integer.bitCount(bones)); n > 0; --n)
+            bones &= bones - 1;
+        return Integer.lowestOneBit(bones);
+    }
+
+    @Override
+    public int getMyBonesMask() {
+        return myBones;
+    }
+
+    @Override
+    public int getUnknownBonesMask() {
+        int unknownBones = 0;
+        for (int mask : chances)
+            unknownBones |= mask;
+        return unknownBones;
+    }
+
+    /**
+     * This does the same check as checkChancesAreValid on the chances createNext would give after an
+     * opponent's pickup, but reads them from this state's chances instead of creating them.
+     */
+    @Override
+    public boolean canOpponentPickUp() {
+        if (sizeOfBoneyard == 0)
+            return false;
+
+        int matchingBones = 0;
+        if (!isOpponentPickup)
+            matchingBones = Bones.getBonesMatching(layoutLeft, layoutRight) & getUnknownBonesMask();
+
+        // Ignore trailing empty masks, as trim(...) would
+        int length = chances.length + 1;
+        while (length > 1 && getChancesAfterOpponentPickup(length - 1, matchingBones) == 0)
+            --length;
+
+        int thenAvailableBonesToPickup = 0;
+
+        for (int i = length - 1; i > 0; --i) {
+            thenAvailableBonesToPickup += Integer.bitCount(getChancesAfterOpponentPickup(i, matchingBones));
+            if (i == 1)
+                thenAvailableBonesToPickup += Integer.bitCount(getChancesAfterOpponentPickup(0, matchingBones));
+
+            if (thenAvailableBonesToPickup == 0)
+                return false;
+
+            --thenAvailableBonesToPickup;
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the i'th mask of the chances createNext would give after an opponent's pickup.
+     */
+    private int getChancesAfterOpponentPickup(int i, int matchingBones) {
+        if (isOpponentPickup) {
+            // Bones with at least one chance get another one
+            if (i == 0)
+                return chances[0];
+            else if (i == 1)
+                return 0;
+            else
+                return chances[i - 1];
+        } else {
+            // All bones get another chance, except those matching the layout (which the opponent can't have)
+            if (i == 0)
+                return matchingBones;
+            else
+                return chances[i - 1] & ~matchingBones;
+        }
+    }
+
+    @Override
+    public int getSizeOfBoneyard() {
+        return sizeOfBoneyard;
+    }
+
+    @Override
+    public int getSizeOfOpponentHand() {
+        return sizeOfOpponentHand;
+    }
+
+    @Override
+    public List<ImmutableBone> getMyBones() {
+        if (myBonesList == null)
+            myBonesList = Bones.fromMask(myBones);
+        return myBonesList;
+    }
+
+    @Override
+    public List<ImmutableBone> getUnknownBones() {
+        if (unknownBonesList == null)
+            unknownBonesList = Bones.fromMask(getUnknownBonesMask());
+        return unknownBonesList;
+    }
+
+    @Override
+    public float getProbThatOpponentHasBone(ImmutableBone bone) {
+        return getProbThatOpponentHasBone(bone.id());
+    }
+
+    @Override
+    public float getProbThatBoneyardHasBone(ImmutableBone bone) {
+        return 1 - getProbThatOpponentHasBone(bone);
+    }
+
+    @Override
+    public float getProbThatOpponentHasBone(int boneId) {
+        return getOpponentBoneProbs()[boneId];
+    }
+
+    @Override
+    public float getProbThatBoneyardHasBone(int boneId) {
+        return 1 - getProbThatOpponentHasBone(boneId);
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int getLayoutLeft() {
+        return layoutLeft;
+    }
+
+    @Override
+    public int getLayoutRight() {
+        return layoutRight;
+    }
+
+    @Override
+    public boolean isLayoutEmpty() {
+        return layoutLeft == -1;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("BitmaskBoneState");
+        sb.append("{layoutLeft=").append(layoutLeft);
+        sb.append(", layoutRight=").append(layoutRight);
+        sb.append(", myBones=").append(getMyBones());
+        sb.append(", sizeOfBoneyard=").append(sizeOfBoneyard);
+        sb.append(", sizeOfOpponentHand=").append(sizeOfOpponentHand);
+        sb.append(", isOpponentPickup=").append(isOpponentPickup);
+        sb.append(", opponentChancesToHaveBone={");
+        for (int i = 0; i < chances.length; ++i) {
+            if (chances[i] != 0)
+                sb.append(i).append('=').append(Bones.fromMask(chances[i])).append(' ');
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+}
@@ -1,6 +1,7 @@
 package dominoes.players.ai.algorithm.helper;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * Keeps track of the bones in a game.
@@ -36,6 +37,28 @@ public interface BoneState {
      */
     List<ImmutableBone> getUnknownBones();
 
+    /**
+     * Returns the bitmask (see Bones.maskOf) of my hand.
+     *
+     * @return the bitmask of my hand.
+     */
+    int getMyBonesMask();
+
+    /**
+     * Returns the bitmask (see Bones.maskOf) of the bones the opponent might have.
+     *
+     * @return the bitmask of the bones the opponent might have.
+     */
+    int getUnknownBonesMask();
+
+    /**
+     * Returns true iff the opponent picking up a bone from this state is consistent with what is known
+     * (ie. iff createNext(new Choice(PICKED_UP, null), false) wouldn't throw an IllegalStateException).
+     *
+     * @return true iff the opponent could pick up a bone.
+     */
+    boolean canOpponentPickUp();
+
     /**
      * Gets the probability that the given bone will be in the opponent's hand.
      *
@@ -52,6 +75,46 @@ public interface BoneState {
      */
     float getProbThatBoneyardHasBone(ImmutableBone bone);
 
+    /**
+     * Gets the probability that the bone with the given id (see ImmutableBone.id()) will be in
+     * the opponent's hand.
+     *
+     * @param boneId the id of the bone to check.
+     * @return the probability that the bone will be in the opponent's hand.
+     */
+    float getProbThatOpponentHasBone(int boneId);
+
+    /**
+     * Gets the probability that the bone with the given id (see ImmutableBone.id()) will be in
+     * the boneyard.
+     *
+     * @param boneId the id of the bone to check.
+     * @return the probability that the bone will be in the boneyard.
+     */
+    float getProbThatBoneyardHasBone(int boneId);
+
+    /**
+     * Samples a hand the opponent could have, consistent with what is known.  Each bone is in the
+     * sampled hand with the probability given by getProbThatOpponentHasBone, and the hand has
+     * getSizeOfOpponentHand() bones (the rest of the unknown bones being in the boneyard).
+     *
+     * @param random the source of randomness for the sample.
+     * @return the bitmask (see Bones.maskOf) of the sampled opponent's hand.
+     */
+    int sampleOpponentBones(Random random);
+
+    /**
+     * Returns the Zobrist hash (see Zobrist) of this state, which covers my hand, the layout ends,
+     * the sizes of the boneyard and the opponent's hand, and the opponent's chances to have
+     * picked up each unknown bone.  Equal states have equal hashes, whatever order of choices
+     * led to them.
+     *
+     * NB. whose turn it is isn't known by the BoneState, so must be added by the caller.
+     *
+     * @return the Zobrist hash of this state.
+     */
+    long getHash();
+
     /**
      * Gets the left value of the leftmost bone in the layout.
      * @return the left value of the leftmost bone in the layout.
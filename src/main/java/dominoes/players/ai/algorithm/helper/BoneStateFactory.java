@@ -0,0 +1,21 @@
+package dominoes.players.ai.algorithm.helper;
+
+import java.util.List;
+
+/**
+ * Creates the initial BoneState for a round, so the BoneState implementation used
+ * by the AI can be swapped.
+ *
+ * @author Sam Wright
+ */
+public interface BoneStateFactory {
+    /**
+     * Creates the BoneState at the start of a round.
+     *
+     * @param myBones the bones I have been dealt.
+     * @param sizeOfBoneyard the initial size of the boneyard.
+     * @param initialLayout the initial layout.
+     * @return the initial BoneState.
+     */
+    BoneState createInitialState(List<ImmutableBone> myBones, int sizeOfBoneyard, ImmutableBone... initialLayout);
+}
@@ -4,6 +4,13 @@ import java.util.*;
 
 
 public class BoneStateImpl implements BoneState {
+    public static final BoneStateFactory FACTORY = new BoneStateFactory() {
+        @Override
+        public BoneState createInitialState(List<ImmutableBone> myBones, int sizeOfBoneyard, ImmutableBone... initialLayout) {
+            return new BoneStateImpl(myBones, sizeOfBoneyard, initialLayout);
+        }
+    };
+
     private static final int INITIAL_LAYOUT_SIZE = 1;
     private static final int INITIAL_HAND_SIZE = 7;
 
@@ -11,6 +18,11 @@ public class BoneStateImpl implements BoneState {
     private final List<ImmutableBone> myBones;
     private final UnknownBoneManager unknownBoneManager;
 
+    /**
+     * The part of the Zobrist hash from my hand and the layout ends.
+     */
+    private final long knownBonesHash;
+
     public BoneStateImpl(List<ImmutableBone> myBones, int sizeOfBoneyard, ImmutableBone... initialLayout) {
         this.myBones = new ArrayList<ImmutableBone>(myBones);
 
@@ -27,13 +39,16 @@ public class BoneStateImpl implements BoneState {
         unknownBones.removeAll(Arrays.asList(initialLayout));
 
         unknownBoneManager = new UnknownBoneManagerImpl(unknownBones, sizeOfBoneyard);
+        knownBonesHash = Zobrist.myBones(Bones.maskOf(myBones)) ^ Zobrist.layoutLeft(layoutLeft) ^ Zobrist.layoutRight(layoutRight);
     }
 
-    private BoneStateImpl(List<ImmutableBone> myBones, UnknownBoneManager unknownBoneManager, int layoutLeft, int layoutRight) {
+    private BoneStateImpl(List<ImmutableBone> myBones, UnknownBoneManager unknownBoneManager, int layoutLeft,
+                          int layoutRight, long knownBonesHash) {
         this.myBones = myBones;
         this.unknownBoneManager = unknownBoneManager;
         this.layoutLeft = layoutLeft;
         this.layoutRight = layoutRight;
+        this.knownBonesHash = knownBonesHash;
     }
 
     @Override
@@ -64,15 +79,21 @@ public class BoneStateImpl implements BoneState {
             }
         }
 
+        long newKnownBonesHash = knownBonesHash ^ Zobrist.layoutLeft(layoutLeft) ^ Zobrist.layoutLeft(newLayoutLeft)
+                ^ Zobrist.layoutRight(layoutRight) ^ Zobrist.layoutRight(newLayoutRight);
+
         // Update my bones
         if (isMyTurn) {
-            if (action.isPlacement())
+            if (action.isPlacement()) {
                 newMyBones.remove(bone);
-            else if (action == Choice.Action.PICKED_UP)
+                newKnownBonesHash ^= Zobrist.myBone(bone.id());
+            } else if (action == Choice.Action.PICKED_UP) {
                 newMyBones.add(bone);
+                newKnownBonesHash ^= Zobrist.myBone(bone.id());
+            }
         }
 
-        return new BoneStateImpl(newMyBones, nextUnknownBoneManager, newLayoutLeft, newLayoutRight);
+        return new BoneStateImpl(newMyBones, nextUnknownBoneManager, newLayoutLeft, newLayoutRight, newKnownBonesHash);
     }
 
     @Override
@@ -95,9 +116,29 @@ public class BoneStateImpl implements BoneState {
         return unknownBoneManager.getUnknownBones();
     }
 
+    @Override
+    public int getMyBonesMask() {
+        return Bones.maskOf(myBones);
+    }
+
+    @Override
+    public int getUnknownBonesMask() {
+        return Bones.maskOf(getUnknownBones());
+    }
+
+    @Override
+    public boolean canOpponentPickUp() {
+        try {
+            createNext(Choice.of(Choice.Action.PICKED_UP, null), false);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
     @Override
     public float getProbThatOpponentHasBone(ImmutableBone bone) {
-        return unknownBoneManager.getOpponentBoneProbs().get(bone);
+        return getProbThatOpponentHasBone(bone.id());
     }
 
     @Override
@@ -105,6 +146,26 @@ public class BoneStateImpl implements BoneState {
         return 1 - getProbThatOpponentHasBone(bone);
     }
 
+    @Override
+    public float getProbThatOpponentHasBone(int boneId) {
+        return unknownBoneManager.getOpponentBoneProbsByIndex()[boneId];
+    }
+
+    @Override
+    public int sampleOpponentBones(Random random) {
+        return unknownBoneManager.sampleOpponentBones(random);
+    }
+
+    @Override
+    public float getProbThatBoneyardHasBone(int boneId) {
+        return 1 - getProbThatOpponentHasBone(boneId);
+    }
+
+    @Override
+    public long getHash() {
+        return knownBonesHash ^ unknownBoneManager.getHash();
+    }
+
     @Override
     public int getLayoutLeft() {
         return layoutLeft;
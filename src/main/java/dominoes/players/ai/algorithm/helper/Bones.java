@@ -8,17 +8,35 @@ import java.util.*;
  * Helper class for Bones
  */
 public class Bones {
+    /**
+     * The number of bones in a double-six set.
+     */
+    public static final int NUMBER_OF_BONES = 28;
+
     private static final Set<ImmutableBone> allBones;
+    private static final int[] bonesMatchingValue = new int[7];
+
+    /**
+     * The bones matching either of two values (each -1 to 6), indexed by (value1 + 1) * 8 + (value2 + 1).
+     */
+    private static final int[] bonesMatchingEitherValue = new int[64];
 
     static {
-        // Enumerate all bones
+        // Enumerate all bones, and record which bones match each value
         Set<ImmutableBone> tempAllBones = new HashSet<ImmutableBone>();
         for (int i = 0; i < 7; ++i) {
-            for (int j = 0; j < 7; ++j) {
-                tempAllBones.add(new ImmutableBone(i, j));
+            for (int j = i; j < 7; ++j) {
+                ImmutableBone bone = ImmutableBone.of(i, j);
+                tempAllBones.add(bone);
+                bonesMatchingValue[i] |= maskOf(bone);
+                bonesMatchingValue[j] |= maskOf(bone);
             }
         }
         allBones = Collections.unmodifiableSet(tempAllBones);
+
+        for (int i = -1; i < 7; ++i)
+            for (int j = -1; j < 7; ++j)
+                bonesMatchingEitherValue[(i + 1) * 8 + (j + 1)] = getBonesMatching(i) | getBonesMatching(j);
     }
 
     /**
@@ -30,6 +48,71 @@ public class Bones {
         return allBones;
     }
 
+    /**
+     * Returns the bitmask of the given bone (ie. with only the bit at bone.id() set).
+     *
+     * @param bone the bone to get the bitmask of.
+     * @return the bitmask of the bone.
+     */
+    public static int maskOf(ImmutableBone bone) {
+        return 1 << bone.id();
+    }
+
+    /**
+     * Returns the bitmask of the given bones.
+     *
+     * @param bones the bones to get the bitmask of.
+     * @return the bitmask of the bones.
+     */
+    public static int maskOf(Collection<ImmutableBone> bones) {
+        int mask = 0;
+        for (ImmutableBone bone : bones)
+            mask |= maskOf(bone);
+        return mask;
+    }
+
+    /**
+     * Returns the bitmask of all bones which match the given value.  If the
+     * value is -1 (ie. an empty layout) no bones match.
+     *
+     * @param value the value to match.
+     * @return the bitmask of all bones matching the value.
+     */
+    public static int getBonesMatching(int value) {
+        if (value == -1)
+            return 0;
+        return bonesMatchingValue[value];
+    }
+
+    /**
+     * Returns the bitmask of all bones which match either of the given values (eg. the two ends
+     * of the layout).  A value of -1 matches no bones.
+     *
+     * @param value1 the first value to match.
+     * @param value2 the second value to match.
+     * @return the bitmask of all bones matching either value.
+     */
+    public static int getBonesMatching(int value1, int value2) {
+        return bonesMatchingEitherValue[(value1 + 1) * 8 + (value2 + 1)];
+    }
+
+    /**
+     * Returns the bones in the given bitmask, in id order.
+     *
+     * @param mask the bitmask of bones.
+     * @return the bones in the bitmask.
+     */
+    public static List<ImmutableBone> fromMask(int mask) {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Integer.bitCount(mask));
+
+        while (mask != 0) {
+            bones.add(ImmutableBone.fromId(Integer.numberOfTrailingZeros(mask)));
+            mask &= mask - 1;
+        }
+
+        return bones;
+    }
+
     /**
      * Given a list of ImmutableBones, this will return an array of equivalent
      * Bones.
@@ -47,6 +130,15 @@ public class Bones {
         return array;
     }
 
+    /**
+     * Given an array of Bones, this will return a list of equivalent ImmutableBones.
+     *
+     * NB. the orientation of each bone is kept, since this is used to find the values
+     * at each end of the initial layout.
+     *
+     * @param array an array of Bones.
+     * @return a list of equivalent ImmutableBones.
+     */
     public static List<ImmutableBone> convertToImmutableBoneList(Bone[] array) {
         List<ImmutableBone> list = new ArrayList<ImmutableBone>();
         for (Bone bone : array)
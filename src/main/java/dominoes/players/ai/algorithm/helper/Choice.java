@@ -22,6 +22,29 @@ public class Choice {
         }
     }
 
+    /**
+     * The number of distinct choice codes (see codeOf).
+     */
+    public static final int NUMBER_OF_CODES = 128;
+
+    private static final int NO_BONE = 31;
+
+    /**
+     * The shared instance of each choice, indexed by code.
+     */
+    private static final Choice[] choicesByCode = new Choice[NUMBER_OF_CODES];
+
+    static {
+        for (Action action : Action.values()) {
+            if (action != Action.PASS) {
+                for (int id = 0; id < Bones.NUMBER_OF_BONES; ++id)
+                    choicesByCode[codeOf(action, id)] = new Choice(action, ImmutableBone.fromId(id));
+            }
+            if (!action.isPlacement())
+                choicesByCode[codeOf(action, NO_BONE)] = new Choice(action, null);
+        }
+    }
+
     private final Action action;
     private final ImmutableBone bone;
 
@@ -55,7 +78,51 @@ public class Choice {
             this.action = Action.PLACED_LEFT;
         else
             this.action = Action.PLACED_RIGHT;
-        this.bone = new ImmutableBone(play.bone());
+        this.bone = ImmutableBone.of(play.bone());
+    }
+
+    /**
+     * Returns the shared instance of the choice with the given action and bone (which must be valid,
+     * as for the constructor).  This avoids creating a new Choice each time one is needed.
+     *
+     * @param action the action to take.
+     * @param bone the bone to perform the action on.
+     * @return the shared instance of the choice.
+     */
+    public static Choice of(Action action, ImmutableBone bone) {
+        return choicesByCode[codeOf(action, bone == null ? NO_BONE : bone.id())];
+    }
+
+    /**
+     * Returns the shared instance of the choice with the given code (see codeOf).
+     *
+     * @param code the code of the choice.
+     * @return the shared instance of the choice.
+     */
+    public static Choice fromCode(int code) {
+        return choicesByCode[code];
+    }
+
+    /**
+     * Returns the code of the given choice, which is a number in [0, NUMBER_OF_CODES).
+     *
+     * @param choice the choice to get the code of.
+     * @return the code of the choice.
+     */
+    public static int codeOf(Choice choice) {
+        ImmutableBone bone = choice.getBone();
+        return codeOf(choice.getAction(), bone == null ? NO_BONE : bone.id());
+    }
+
+    /**
+     * Returns the code of the choice with the given action and bone id (or 31 for no bone).
+     *
+     * @param action the action to take.
+     * @param boneId the id of the bone to perform the action on.
+     * @return the code of the choice.
+     */
+    public static int codeOf(Action action, int boneId) {
+        return action.ordinal() * 32 + boneId;
     }
 
     /**
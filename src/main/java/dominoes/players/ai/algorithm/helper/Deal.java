@@ -0,0 +1,94 @@
+package dominoes.players.ai.algorithm.helper;
+
+import java.util.Random;
+
+/**
+ * A concrete deal of the bones that aren't in the layout: my hand, the opponent's hand and the
+ * boneyard (in the order it would be picked up from).  This makes the game one of perfect information,
+ * which PerfectInformationSolver can solve.
+ *
+ * @author Sam Wright
+ */
+public class Deal {
+    private final int myBones;
+    private final int opponentBones;
+    private final int[] boneyard;
+
+    /**
+     * Creates a Deal.
+     *
+     * @param myBones the bitmask (see Bones.maskOf) of my hand.
+     * @param opponentBones the bitmask of the opponent's hand.
+     * @param boneyard the ids of the bones in the boneyard, in the order they would be picked up.
+     */
+    public Deal(int myBones, int opponentBones, int[] boneyard) {
+        this.myBones = myBones;
+        this.opponentBones = opponentBones;
+        this.boneyard = boneyard;
+    }
+
+    /**
+     * Samples a deal consistent with the given state: the opponent's hand is sampled by
+     * BoneState.sampleOpponentBones, and the rest of the unknown bones are put in the boneyard
+     * in a random order.
+     *
+     * @param boneState the state to sample a deal from.
+     * @param random the source of randomness for the sample.
+     * @return the sampled deal.
+     */
+    public static Deal sample(BoneState boneState, Random random) {
+        int opponentBones = boneState.sampleOpponentBones(random);
+        int boneyardBones = boneState.getUnknownBonesMask() & ~opponentBones;
+
+        int[] boneyard = new int[Integer.bitCount(boneyardBones)];
+        for (int i = 0; boneyardBones != 0; ++i) {
+            boneyard[i] = Integer.numberOfTrailingZeros(boneyardBones);
+            boneyardBones &= boneyardBones - 1;
+        }
+
+        // Fisher-Yates shuffle
+        for (int i = boneyard.length - 1; i > 0; --i) {
+            int j = random.nextInt(i + 1);
+            int id = boneyard[i];
+            boneyard[i] = boneyard[j];
+            boneyard[j] = id;
+        }
+
+        return new Deal(boneState.getMyBonesMask(), opponentBones, boneyard);
+    }
+
+    public int getMyBones() {
+        return myBones;
+    }
+
+    public int getOpponentBones() {
+        return opponentBones;
+    }
+
+    /**
+     * Returns the ids of the bones in the boneyard, in the order they would be picked up.
+     *
+     * NB. the returned array must not be modified.
+     *
+     * @return the ids of the bones in the boneyard.
+     */
+    public int[] getBoneyard() {
+        return boneyard;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Deal");
+        sb.append("{myBones=").append(Bones.fromMask(myBones));
+        sb.append(", opponentBones=").append(Bones.fromMask(opponentBones));
+        sb.append(", boneyard=[");
+        for (int i = 0; i < boneyard.length; ++i) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(ImmutableBone.fromId(boneyard[i]));
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+}
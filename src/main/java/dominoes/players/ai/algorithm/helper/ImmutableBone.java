@@ -5,9 +5,24 @@ import dominoes.Bone;
 
 /**
  * An immutable bone (like dominoes.Bone, but not flippable).
+ *
+ * Each of the 28 bones has a canonical instance (returned by ImmutableBone.of(...)) and a
+ * stable id from 0 to 27, which flipped bones share.  The constructors are only needed
+ * where the orientation of the bone matters (eg. for the bones in the initial layout).
  */
 public class ImmutableBone {
-    private final int left, right, weight;
+    private static final ImmutableBone[] canonicalBones = new ImmutableBone[Bones.NUMBER_OF_BONES];
+
+    static {
+        for (int i = 0; i < 7; ++i) {
+            for (int j = i; j < 7; ++j) {
+                ImmutableBone bone = new ImmutableBone(i, j);
+                canonicalBones[bone.id()] = bone;
+            }
+        }
+    }
+
+    private final int left, right, weight, id;
 
     public ImmutableBone(Bone bone) {
         this(bone.left(), bone.right());
@@ -17,6 +32,45 @@ public class ImmutableBone {
         this.weight = left + right;
         this.right = right;
         this.left = left;
+        this.id = idOf(left, right);
+    }
+
+    /**
+     * Returns the canonical instance of the bone with the given values.  Flipped
+     * values give the same instance (whose left value is the smaller of the two).
+     *
+     * @param left one value of the bone.
+     * @param right the other value of the bone.
+     * @return the canonical instance of the bone.
+     */
+    public static ImmutableBone of(int left, int right) {
+        return canonicalBones[idOf(left, right)];
+    }
+
+    /**
+     * Returns the canonical instance of the given bone.
+     *
+     * @param bone the bone to get the canonical instance of.
+     * @return the canonical instance of the bone.
+     */
+    public static ImmutableBone of(Bone bone) {
+        return of(bone.left(), bone.right());
+    }
+
+    /**
+     * Returns the canonical instance of the bone with the given id.
+     *
+     * @param id the id of the bone (from 0 to 27).
+     * @return the canonical instance of the bone.
+     */
+    public static ImmutableBone fromId(int id) {
+        return canonicalBones[id];
+    }
+
+    private static int idOf(int left, int right) {
+        int low = Math.min(left, right);
+        int high = Math.max(left, right);
+        return 7 * low - low * (low - 1) / 2 + (high - low);
     }
 
     public int left() {
@@ -31,6 +85,15 @@ public class ImmutableBone {
         return weight;
     }
 
+    /**
+     * Returns the id of this bone, from 0 to 27.  Flipped bones have the same id.
+     *
+     * @return the id of this bone.
+     */
+    public int id() {
+        return id;
+    }
+
     /**
      * Returns false if neither left nor right match the given number, or true
      * if either left or right match the given number.
@@ -48,20 +111,15 @@ public class ImmutableBone {
 
     @Override
     public boolean equals(Object o) {
-        if (o == null) return false;
+        if (this == o) return true;
         if (!(o instanceof ImmutableBone)) return false;
 
-        ImmutableBone b = (ImmutableBone) o;
-
-        if (left() == b.left() && right() == b.right()) return true;
-        if (left() == b.right() && right() == b.left()) return true;
-
-        return false;
+        return id == ((ImmutableBone) o).id;
     }
 
     @Override
     public int hashCode() {
-        return weight;
+        return id;
     }
 
     @Override
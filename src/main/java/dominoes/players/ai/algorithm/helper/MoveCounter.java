@@ -1,11 +1,17 @@
 package dominoes.players.ai.algorithm.helper;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * A memo object shared among nodes in the GameState tree to record the number of moves played.
+ * A memo object shared among nodes in the GameState tree to record the number of moves played,
+ * and the number of states in the tree (which can be limited to a maximum).
+ * This is safe to use from several threads.
  */
 public class MoveCounter {
-    private int movesPlayed = 0;
+    private final AtomicInteger movesPlayed = new AtomicInteger();
+    private final AtomicInteger numberOfStates = new AtomicInteger(1);
     private final int minPly;
+    private volatile int maxStates = Integer.MAX_VALUE;
 
     /**
      * Initialises a MoveCounter with moves played = 0 and the given minimum ply.
@@ -20,7 +26,7 @@ public class MoveCounter {
      * Increment the number of moves played.
      */
     public void incrementMovesPlayed() {
-        ++movesPlayed;
+        movesPlayed.incrementAndGet();
     }
 
     /**
@@ -29,7 +35,7 @@ public class MoveCounter {
      * @return the number of moves played.
      */
     public int getMovesPlayed() {
-        return movesPlayed;
+        return movesPlayed.get();
     }
 
     /**
@@ -40,4 +46,76 @@ public class MoveCounter {
     public int getMinPly() {
         return minPly;
     }
+
+    /**
+     * Gets the number of states in the tree (which starts at 1, for the root state).
+     *
+     * @return the number of states in the tree.
+     */
+    public int getNumberOfStates() {
+        return numberOfStates.get();
+    }
+
+    /**
+     * Sets the number of states in the tree (eg. after part of the tree has been discarded).
+     *
+     * @param numberOfStates the number of states in the tree.
+     */
+    public void setNumberOfStates(int numberOfStates) {
+        this.numberOfStates.set(numberOfStates);
+    }
+
+    /**
+     * Gets the maximum number of states allowed in the tree.
+     *
+     * @return the maximum number of states allowed in the tree.
+     */
+    public int getMaxStates() {
+        return maxStates;
+    }
+
+    /**
+     * Sets the maximum number of states allowed in the tree (Integer.MAX_VALUE by default).
+     *
+     * @param maxStates the maximum number of states allowed in the tree.
+     */
+    public void setMaxStates(int maxStates) {
+        if (maxStates < 1)
+            throw new IllegalArgumentException("maxStates must be positive");
+        this.maxStates = maxStates;
+    }
+
+    /**
+     * Adds the given number of states to the tree, if that doesn't take it over the maximum.
+     *
+     * @param n the number of states to add.
+     * @return true iff the states were added.
+     */
+    public boolean tryAddStates(int n) {
+        while (true) {
+            int current = numberOfStates.get();
+            if (current + n > maxStates)
+                return false;
+            if (numberOfStates.compareAndSet(current, current + n))
+                return true;
+        }
+    }
+
+    /**
+     * Adds the given number of states to the tree, even if that takes it over the maximum.
+     *
+     * @param n the number of states to add.
+     */
+    public void addStates(int n) {
+        numberOfStates.addAndGet(n);
+    }
+
+    /**
+     * Removes the given number of states from the tree.
+     *
+     * @param n the number of states to remove.
+     */
+    public void removeStates(int n) {
+        numberOfStates.addAndGet(-n);
+    }
 }
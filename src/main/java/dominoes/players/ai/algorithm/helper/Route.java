@@ -30,6 +30,19 @@ public class Route {
         length = 1;
     }
 
+    /**
+     * Creates a copy of the given route (which can then be extended and added to separately).
+     *
+     * @param route the route to copy.
+     */
+    public Route(Route route) {
+        this.finalState = route.finalState;
+        this.earliestState = route.earliestState;
+        this.earliestChoice = route.earliestChoice;
+        this.value = route.value;
+        this.length = route.length;
+    }
+
     /**
      * Extend the route backward (ie. prepend earliestState().getParent() to the route).
      *
@@ -112,7 +125,7 @@ public class Route {
         do {
             stack.addFirst(state);
 
-            if (state == earliestState)
+            if (state.equals(earliestState))
                 break;
 
             state = state.getParent();
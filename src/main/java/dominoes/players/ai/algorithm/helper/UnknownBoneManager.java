@@ -2,6 +2,7 @@ package dominoes.players.ai.algorithm.helper;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 /**
  * Keeps track of the unknown bones (ie. those in the opponent's hand and the boneyard).
@@ -28,6 +29,24 @@ public interface UnknownBoneManager {
      */
     Map<ImmutableBone, Float> getOpponentBoneProbs();
 
+    /**
+     * Returns the probabilities of the opponent holding each bone, indexed by bone.id().
+     * Bones which aren't unknown have zero probability.
+     *
+     * NB. the returned array must not be modified.
+     *
+     * @return the probabilities of the opponent holding each bone, indexed by bone.id().
+     */
+    float[] getOpponentBoneProbsByIndex();
+
+    /**
+     * Returns the Zobrist hash (see Zobrist) of the sizes of the opponent's hand and the boneyard
+     * and of the opponent's chances to have picked up each bone.
+     *
+     * @return the Zobrist hash of this UnknownBoneManager.
+     */
+    long getHash();
+
     /**
      * Returns the size of the opponent's hand.
      *
@@ -48,4 +67,12 @@ public interface UnknownBoneManager {
      * @return all bones which are in either the opponent's hand or the boneyard.
      */
     List<ImmutableBone> getUnknownBones();
+
+    /**
+     * Samples a hand the opponent could have (see BoneState.sampleOpponentBones).
+     *
+     * @param random the source of randomness for the sample.
+     * @return the bitmask (see Bones.maskOf) of the sampled opponent's hand.
+     */
+    int sampleOpponentBones(Random random);
 }
@@ -9,7 +9,9 @@ import java.util.*;
  */
 public class UnknownBoneManagerImpl implements UnknownBoneManager {
     private final Map<Integer, List<ImmutableBone>> opponentChancesToHaveBone;
-    private final Map<ImmutableBone, Float> opponentBoneProbs;
+    private final float[] opponentBoneProbs;
+    private volatile Map<ImmutableBone, Float> opponentBoneProbsMap;
+    private final long hash;
     private final List<ImmutableBone> unknownBones;
     private final int sizeOfOpponentHand;
     private final boolean isOpponentPickup;
@@ -27,7 +29,7 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
         opponentChancesToHaveBone.put(sizeOfOpponentHand, unknownBones);
 
         opponentBoneProbs = calculateProbabilities();
-
+        hash = calculateHash();
     }
 
     private UnknownBoneManagerImpl(Map<Integer, List<ImmutableBone>> opponentChancesToHaveBone,
@@ -42,13 +44,21 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
             unknownBones.addAll(boneList);
 
         opponentBoneProbs = calculateProbabilities();
+        hash = calculateHash();
     }
 
-    private Map<ImmutableBone, Float> calculateProbabilities() {
-        Map<ImmutableBone, Float> newOpponentBoneProbs = new HashMap<ImmutableBone, Float>();
+    /**
+     * Calculates the probability of the opponent holding each bone, indexed by bone.id().
+     *
+     * NB. this is package-private so it can be benchmarked on its own.
+     *
+     * @return the probability of the opponent holding each bone.
+     */
+    float[] calculateProbabilities() {
+        float[] newOpponentBoneProbs = new float[Bones.NUMBER_OF_BONES];
 
         if (opponentChancesToHaveBone.isEmpty())
-            return Collections.emptyMap();
+            return newOpponentBoneProbs;
 
         int largestNumberOfChances = Collections.max(opponentChancesToHaveBone.keySet());
 
@@ -116,9 +126,9 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
                 possibleBonesToTake.addAll(bonesWithZeroProb);
         }
 
-        // Now persist these probabilities in a map:
+        // Now persist these probabilities in the table:
         for (int boneId = 0; boneId < possibleBonesToTake.size(); ++boneId)
-            newOpponentBoneProbs.put(possibleBonesToTake.get(boneId), thenBoneProb[boneId]);
+            newOpponentBoneProbs[possibleBonesToTake.get(boneId).id()] = thenBoneProb[boneId];
 
         return newOpponentBoneProbs;
     }
@@ -179,6 +189,9 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
             }
         }
 
+        if (newSizeOfBoneyard < 0)
+            throw new IllegalStateException("Boneyard is empty");
+
         // Clean up 'newOpponentChancesToHaveBone' by removing empty lists
         List<Integer> keysToRemove = new LinkedList<Integer>();
         for (Map.Entry<Integer,List<ImmutableBone>> e : newOpponentChancesToHaveBone.entrySet())
@@ -240,34 +253,64 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
     }
 
     private static void setBonesMatchingLayoutToBoneyard(Map<Integer, List<ImmutableBone>> opponentChancesToHaveBone, int layoutLeft, int layoutRight) {
-        List<ImmutableBone> bonesToPutInBoneyard = new LinkedList<ImmutableBone>();
-        List<ImmutableBone> matchingBonesInList = new LinkedList<ImmutableBone>();
-
-        for (List<ImmutableBone> boneList : opponentChancesToHaveBone.values()) {
-            matchingBonesInList.clear();
+        int unknownMask = 0;
+        for (List<ImmutableBone> boneList : opponentChancesToHaveBone.values())
+            unknownMask |= Bones.maskOf(boneList);
 
-            for (ImmutableBone bone : boneList)
-                if (bone.matches(layoutLeft) || bone.matches(layoutRight))
-                    matchingBonesInList.add(bone);
+        int bonesToPutInBoneyard = unknownMask & Bones.getBonesMatching(layoutLeft, layoutRight);
+        if (bonesToPutInBoneyard == 0)
+            return;
 
-            boneList.removeAll(matchingBonesInList);
-            bonesToPutInBoneyard.addAll(matchingBonesInList);
+        // Only the lists holding a matching bone are rebuilt (from their masks, less the matching bones).
+        for (Map.Entry<Integer, List<ImmutableBone>> e : opponentChancesToHaveBone.entrySet()) {
+            int boneListMask = Bones.maskOf(e.getValue());
+            if ((boneListMask & bonesToPutInBoneyard) != 0)
+                e.setValue(new LinkedList<ImmutableBone>(Bones.fromMask(boneListMask & ~bonesToPutInBoneyard)));
         }
 
         List<ImmutableBone> bonesWithZeroChances = opponentChancesToHaveBone.get(0);
-        if (bonesWithZeroChances == null) {
-            bonesWithZeroChances = new LinkedList<ImmutableBone>();
-            opponentChancesToHaveBone.put(0, bonesWithZeroChances);
+        int bonesWithZeroChancesMask = bonesWithZeroChances == null ? 0 : Bones.maskOf(bonesWithZeroChances);
+        opponentChancesToHaveBone.put(0,
+                new LinkedList<ImmutableBone>(Bones.fromMask(bonesWithZeroChancesMask | bonesToPutInBoneyard)));
+    }
+
+    @Override
+    public Map<ImmutableBone, Float> getOpponentBoneProbs() {
+        if (opponentBoneProbsMap == null) {
+            Map<ImmutableBone, Float> map = new HashMap<ImmutableBone, Float>();
+            for (ImmutableBone bone : unknownBones)
+                map.put(bone, opponentBoneProbs[bone.id()]);
+            opponentBoneProbsMap = Collections.unmodifiableMap(map);
         }
 
-        bonesWithZeroChances.addAll(bonesToPutInBoneyard);
+        return opponentBoneProbsMap;
     }
 
     @Override
-    public Map<ImmutableBone, Float> getOpponentBoneProbs() {
+    public float[] getOpponentBoneProbsByIndex() {
         return opponentBoneProbs;
     }
 // {layoutLeft=3, layoutRight=6, myBones=[[2,1], [1,1], [4,1], [1,0], [2,4], [4,4], [0,0]],
+    /**
+     * Calculates the hash (see getHash), which is done in the constructor so that the (final) hash can be
+     * read by other threads without synchronisation.
+     */
+    private long calculateHash() {
+        long newHash = Zobrist.sizeOfOpponentHand(sizeOfOpponentHand) ^ Zobrist.sizeOfBoneyard(sizeOfBoneyard);
+        if (isOpponentPickup)
+            newHash ^= Zobrist.opponentPickup();
+
+        for (Map.Entry<Integer, List<ImmutableBone>> e : opponentChancesToHaveBone.entrySet())
+            newHash ^= Zobrist.chances(Bones.maskOf(e.getValue()), e.getKey());
+
+        return newHash;
+    }
+
+    @Override
+    public long getHash() {
+        return hash;
+    }
+
     @Override
     public int getSizeOfOpponentHand() {
         return sizeOfOpponentHand;
@@ -283,6 +326,15 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
         return Collections.unmodifiableList(unknownBones);
     }
 
+    @Override
+    public int sampleOpponentBones(Random random) {
+        int[] chances = new int[opponentChancesToHaveBone.isEmpty() ? 1 : Collections.max(opponentChancesToHaveBone.keySet()) + 1];
+        for (Map.Entry<Integer, List<ImmutableBone>> e : opponentChancesToHaveBone.entrySet())
+            chances[e.getKey()] = Bones.maskOf(e.getValue());
+
+        return BitmaskBoneState.sampleOpponentBones(chances, isOpponentPickup, sizeOfOpponentHand, random);
+    }
+
     @Override
     public String toString() {
         final StringBuilder sb = new StringBuilder();
@@ -294,7 +346,7 @@ public class UnknownBoneManagerImpl implements UnknownBoneManager {
 
         float total = 0;
         for (ImmutableBone bone : unknownBones) {
-            float prob = opponentBoneProbs.get(bone);
+            float prob = opponentBoneProbs[bone.id()];
             total += prob;
             sb.append("\n\t\t opponent has bone ").append(bone).append(" with prob = ").append(prob);
         }
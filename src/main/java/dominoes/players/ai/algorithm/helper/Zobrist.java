@@ -0,0 +1,155 @@
+package dominoes.players.ai.algorithm.helper;
+
+import java.util.Random;
+
+/**
+ * The random keys used to build Zobrist hashes of BoneStates (and GameStates).  A hash is the
+ * XOR of the keys for each feature of the state, so it can be updated incrementally by XOR-ing
+ * out the keys of the old features and XOR-ing in the keys of the new ones.
+ *
+ * @author Sam Wright
+ */
+public class Zobrist {
+    private static final int MAX_SIZE = Bones.NUMBER_OF_BONES + 1;
+
+    private static final long[] myBoneKeys = new long[Bones.NUMBER_OF_BONES];
+    private static final long[] layoutLeftKeys = new long[8];
+    private static final long[] layoutRightKeys = new long[8];
+    private static final long[] sizeOfBoneyardKeys = new long[MAX_SIZE];
+    private static final long[] sizeOfOpponentHandKeys = new long[MAX_SIZE];
+    private static final long opponentPickupKey, myTurnKey, passKey;
+
+    static {
+        // A fixed seed, so hashes are reproducible between runs.
+        Random random = new Random(0x5eed);
+
+        fill(myBoneKeys, random);
+        fill(layoutLeftKeys, random);
+        fill(layoutRightKeys, random);
+        fill(sizeOfBoneyardKeys, random);
+        fill(sizeOfOpponentHandKeys, random);
+        opponentPickupKey = random.nextLong();
+        myTurnKey = random.nextLong();
+        passKey = random.nextLong();
+    }
+
+    private static void fill(long[] keys, Random random) {
+        for (int i = 0; i < keys.length; ++i)
+            keys[i] = random.nextLong();
+    }
+
+    /**
+     * Returns the key for the given bone being in my hand.
+     *
+     * @param boneId the id of the bone in my hand.
+     * @return the key for the bone being in my hand.
+     */
+    public static long myBone(int boneId) {
+        return myBoneKeys[boneId];
+    }
+
+    /**
+     * Returns the key for all of the given bones being in my hand.
+     *
+     * @param bonesMask the bitmask of the bones in my hand.
+     * @return the key for the bones being in my hand.
+     */
+    public static long myBones(int bonesMask) {
+        long key = 0;
+        for (int mask = bonesMask; mask != 0; mask &= mask - 1)
+            key ^= myBoneKeys[Integer.numberOfTrailingZeros(mask)];
+        return key;
+    }
+
+    /**
+     * Returns the key for the left end of the layout having the given value (-1 for an empty layout).
+     *
+     * @param value the value at the left end of the layout.
+     * @return the key for the left end of the layout.
+     */
+    public static long layoutLeft(int value) {
+        return layoutLeftKeys[value + 1];
+    }
+
+    /**
+     * Returns the key for the right end of the layout having the given value (-1 for an empty layout).
+     *
+     * @param value the value at the right end of the layout.
+     * @return the key for the right end of the layout.
+     */
+    public static long layoutRight(int value) {
+        return layoutRightKeys[value + 1];
+    }
+
+    /**
+     * Returns the key for the boneyard having the given size.
+     *
+     * @param size the size of the boneyard.
+     * @return the key for the size of the boneyard.
+     */
+    public static long sizeOfBoneyard(int size) {
+        return sizeOfBoneyardKeys[size];
+    }
+
+    /**
+     * Returns the key for the opponent's hand having the given size.
+     *
+     * @param size the size of the opponent's hand.
+     * @return the key for the size of the opponent's hand.
+     */
+    public static long sizeOfOpponentHand(int size) {
+        return sizeOfOpponentHandKeys[size];
+    }
+
+    /**
+     * Returns the key for the given bones having had the given number of chances to be
+     * picked up by the opponent.
+     *
+     * NB. there are too many combinations for a table, so this mixes the two values instead.
+     *
+     * @param bonesMask the bitmask of the bones.
+     * @param chances the number of chances the opponent has had to pick up the bones.
+     * @return the key for the bones' chances.
+     */
+    public static long chances(int bonesMask, int chances) {
+        if (bonesMask == 0)
+            return 0;
+        return mix(((long) chances << 32) | (bonesMask & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Returns the key for the last choice having been an opponent's pickup.
+     *
+     * @return the key for the last choice having been an opponent's pickup.
+     */
+    public static long opponentPickup() {
+        return opponentPickupKey;
+    }
+
+    /**
+     * Returns the key for it being my turn.
+     *
+     * @return the key for it being my turn.
+     */
+    public static long myTurn() {
+        return myTurnKey;
+    }
+
+    /**
+     * Returns the key for the last choice having been a pass.
+     *
+     * @return the key for the last choice having been a pass.
+     */
+    public static long pass() {
+        return passKey;
+    }
+
+    /**
+     * The SplitMix64 finaliser.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,236 @@
+package dominoes.players.ai.tournament;
+
+import dominoes.players.ai.algorithm.AIController;
+import dominoes.players.ai.algorithm.ProbabilisticAI;
+import dominoes.players.ai.algorithm.SearchStats;
+import dominoes.players.ai.algorithm.SearchStatsListener;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Plays a match between two AIControllers directly (ie. without dominoes.Dominoes, a DominoUI or any
+ * DominoPlayers), so that many matches can be played quickly and reproducibly.
+ *
+ * Each round, the bones are shuffled by the match's Random.  Each player is dealt 7 bones, one bone
+ * starts the layout and the rest are the boneyard.  Players who can't place a bone pick up until they can
+ * (or until the boneyard is empty, when they pass).  The round ends when a player has placed all their bones
+ * or both players pass, and whoever has the lighter hand scores the weight of the other player's hand.
+ * The first player alternates between rounds, and the match ends when a player has the target points.
+ *
+ * Given the same seed and deterministic AIControllers, a match is always played the same way.
+ *
+ * The match sets each AIController's SearchStatsListener (to count the states it expands for each choice),
+ * and turns off pondering when it ends so that no background search outlives it.  Setting the listener turns
+ * on the AIController's instrumentation (see SearchStats), so the latencies of choices include its overhead.
+ *
+ * @author Sam Wright
+ */
+public class HeadlessMatch {
+    public static final int HAND_SIZE = 7;
+
+    private final AIController[] ais;
+    private final Random random;
+    private final int targetPoints;
+    private final int firstPlayer;
+
+    private final int[] points = new int[2];
+    private final LatencySamples[] latencies = {new LatencySamples(), new LatencySamples()};
+    private final long[] statesSearched = new long[2];
+
+    private final List<List<ImmutableBone>> hands = new ArrayList<List<ImmutableBone>>(2);
+    private List<ImmutableBone> boneyard;
+    private int layoutLeft, layoutRight;
+
+    /**
+     * Creates a match between two AIControllers.
+     *
+     * @param player0 the AIController of player 0.
+     * @param player1 the AIController of player 1.
+     * @param seed the seed of the Random which shuffles the bones.
+     * @param targetPoints the points a player needs to win the match.
+     * @param firstPlayer the player (0 or 1) who goes first in the first round.
+     */
+    public HeadlessMatch(AIController player0, AIController player1, long seed, int targetPoints, int firstPlayer) {
+        if (targetPoints < 1)
+            throw new IllegalArgumentException("targetPoints must be positive");
+        if (firstPlayer != 0 && firstPlayer != 1)
+            throw new IllegalArgumentException("firstPlayer must be 0 or 1");
+
+        this.ais = new AIController[] {player0, player1};
+        this.random = new Random(seed);
+        this.targetPoints = targetPoints;
+        this.firstPlayer = firstPlayer;
+
+        for (int i = 0; i < 2; ++i)
+            ais[i].setSearchStatsListener(new StatesSearchedListener(i));
+    }
+
+    /**
+     * Plays the match.  This may only be called once.
+     *
+     * @return the result of the match.
+     */
+    public MatchResult play() {
+        int rounds = 0;
+
+        try {
+            while (points[0] < targetPoints && points[1] < targetPoints)
+                playRound((firstPlayer + rounds++) % 2);
+        } finally {
+            for (AIController ai : ais)
+                if (ai instanceof ProbabilisticAI)
+                    ((ProbabilisticAI) ai).setPondering(false);
+        }
+
+        int winner = points[0] >= targetPoints ? 0 : 1;
+        return new MatchResult(winner, points, rounds, latencies, statesSearched);
+    }
+
+    private void playRound(int player) {
+        deal(player);
+        int consecutivePasses = 0;
+
+        while (true) {
+            int opponent = 1 - player;
+            Choice choice = getChoice(player);
+
+            switch (choice.getAction()) {
+                case PICKED_UP:
+                    if (boneyard.isEmpty() || canPlace(hands.get(player)))
+                        throw new IllegalStateException("Player " + player + " can't pick up");
+
+                    ImmutableBone bone = boneyard.remove(boneyard.size() - 1);
+                    hands.get(player).add(bone);
+                    ais[player].choose(Choice.of(Choice.Action.PICKED_UP, bone));
+                    ais[opponent].choose(Choice.of(Choice.Action.PICKED_UP, null));
+
+                    // The same player goes again
+                    continue;
+
+                case PASS:
+                    if (!boneyard.isEmpty() || canPlace(hands.get(player)))
+                        throw new IllegalStateException("Player " + player + " can't pass");
+
+                    ais[player].choose(choice);
+                    ais[opponent].choose(choice);
+
+                    if (++consecutivePasses == 2) {
+                        scoreRound();
+                        return;
+                    }
+                    break;
+
+                default:
+                    place(player, choice);
+                    ais[player].choose(choice);
+                    ais[opponent].choose(choice);
+                    consecutivePasses = 0;
+
+                    if (hands.get(player).isEmpty()) {
+                        scoreRound();
+                        return;
+                    }
+            }
+
+            player = opponent;
+        }
+    }
+
+    /**
+     * Shuffles and deals the bones, and gives each AIController its initial state.
+     */
+    private void deal(int player) {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, random);
+
+        hands.clear();
+        hands.add(new ArrayList<ImmutableBone>(bones.subList(0, HAND_SIZE)));
+        hands.add(new ArrayList<ImmutableBone>(bones.subList(HAND_SIZE, 2 * HAND_SIZE)));
+        ImmutableBone initialLayout = bones.get(2 * HAND_SIZE);
+        boneyard = new ArrayList<ImmutableBone>(bones.subList(2 * HAND_SIZE + 1, bones.size()));
+
+        layoutLeft = initialLayout.left();
+        layoutRight = initialLayout.right();
+
+        for (int i = 0; i < 2; ++i)
+            ais[i].setInitialState(hands.get(i), i == player, boneyard.size(), initialLayout);
+    }
+
+    /**
+     * Gets the player's choice, recording how long it took (the states searched are recorded by the
+     * player's StatesSearchedListener).
+     */
+    private Choice getChoice(int player) {
+        long start = System.nanoTime();
+        Choice choice = ais[player].getBestChoice();
+        latencies[player].add(System.nanoTime() - start);
+
+        return choice;
+    }
+
+    /**
+     * Adds the number of states a player expanded for each choice to their total.
+     */
+    private class StatesSearchedListener implements SearchStatsListener {
+        private final int player;
+
+        private StatesSearchedListener(int player) {
+            this.player = player;
+        }
+
+        @Override
+        public void searchFinished(SearchStats stats) {
+            statesSearched[player] += stats.getStatesExpanded();
+        }
+    }
+
+    private void place(int player, Choice choice) {
+        ImmutableBone bone = choice.getBone();
+
+        if (!hands.get(player).remove(bone))
+            throw new IllegalStateException("Player " + player + " doesn't have " + bone);
+
+        if (choice.getAction() == Choice.Action.PLACED_LEFT) {
+            if (!bone.matches(layoutLeft))
+                throw new IllegalStateException(bone + " doesn't match the left of the layout");
+            layoutLeft = bone.left() == layoutLeft ? bone.right() : bone.left();
+        } else {
+            if (!bone.matches(layoutRight))
+                throw new IllegalStateException(bone + " doesn't match the right of the layout");
+            layoutRight = bone.left() == layoutRight ? bone.right() : bone.left();
+        }
+    }
+
+    private boolean canPlace(List<ImmutableBone> hand) {
+        for (ImmutableBone bone : hand)
+            if (bone.matches(layoutLeft) || bone.matches(layoutRight))
+                return true;
+
+        return false;
+    }
+
+    private void scoreRound() {
+        int weight0 = getWeight(hands.get(0));
+        int weight1 = getWeight(hands.get(1));
+
+        assert ais[0].getHandWeight() == weight0 && ais[1].getHandWeight() == weight1;
+
+        if (weight0 < weight1)
+            points[0] += weight1;
+        else if (weight1 < weight0)
+            points[1] += weight0;
+    }
+
+    private static int getWeight(List<ImmutableBone> hand) {
+        int weight = 0;
+        for (ImmutableBone bone : hand)
+            weight += bone.weight();
+        return weight;
+    }
+}
@@ -0,0 +1,84 @@
+package dominoes.players.ai.tournament;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of latencies (in nanoseconds), from which percentiles can be taken.
+ *
+ * @author Sam Wright
+ */
+public class LatencySamples {
+    private long[] samples = new long[64];
+    private int size = 0;
+    private long total = 0;
+    private boolean isSorted = true;
+
+    /**
+     * Adds a latency.
+     *
+     * @param nanos the latency, in nanoseconds.
+     */
+    public void add(long nanos) {
+        if (size == samples.length)
+            samples = Arrays.copyOf(samples, size * 2);
+
+        samples[size++] = nanos;
+        total += nanos;
+        isSorted = false;
+    }
+
+    /**
+     * Adds all the latencies in 'other'.
+     *
+     * @param other the latencies to add.
+     */
+    public void addAll(LatencySamples other) {
+        if (size + other.size > samples.length)
+            samples = Arrays.copyOf(samples, Math.max(size + other.size, size * 2));
+
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        size += other.size;
+        total += other.total;
+        isSorted = false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the mean latency, or 0 if there are none.
+     *
+     * @return the mean latency, in nanoseconds.
+     */
+    public double getMean() {
+        return size == 0 ? 0 : total * 1.0 / size;
+    }
+
+    /**
+     * Returns the latency which the given fraction of latencies are no greater than (by the
+     * nearest-rank method), or 0 if there are none.
+     *
+     * @param fraction the fraction of latencies, from 0 to 1 (eg. 0.99 for the 99th percentile).
+     * @return the latency at the given percentile, in nanoseconds.
+     */
+    public long getPercentile(double fraction) {
+        if (fraction < 0 || fraction > 1)
+            throw new IllegalArgumentException("fraction must be between 0 and 1");
+
+        if (size == 0)
+            return 0;
+
+        if (!isSorted) {
+            Arrays.sort(samples, 0, size);
+            isSorted = true;
+        }
+
+        int rank = (int) Math.ceil(fraction * size);
+        return samples[Math.max(rank, 1) - 1];
+    }
+}
@@ -0,0 +1,62 @@
+package dominoes.players.ai.tournament;
+
+/**
+ * The result of a HeadlessMatch.  Players are numbered 0 and 1 (in the order they were given to
+ * the HeadlessMatch).
+ *
+ * @author Sam Wright
+ */
+public class MatchResult {
+    private final int winner;
+    private final int[] points;
+    private final int rounds;
+    private final LatencySamples[] latencies;
+    private final long[] statesSearched;
+
+    MatchResult(int winner, int[] points, int rounds, LatencySamples[] latencies, long[] statesSearched) {
+        this.winner = winner;
+        this.points = points.clone();
+        this.rounds = rounds;
+        this.latencies = latencies.clone();
+        this.statesSearched = statesSearched.clone();
+    }
+
+    /**
+     * Returns the player who won the match (ie. who reached the target points first).
+     *
+     * @return the player (0 or 1) who won the match.
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getPoints(int player) {
+        return points[player];
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    /**
+     * Returns the time the player took over each of their choices.
+     *
+     * @param player the player (0 or 1).
+     * @return the time the player took over each of their choices.
+     */
+    public LatencySamples getLatencies(int player) {
+        return latencies[player];
+    }
+
+    /**
+     * Returns the total, over all of the player's choices, of the number of states they expanded while
+     * searching for the choice (see SearchStats.getStatesExpanded()), or 0 if the player doesn't report
+     * SearchStats.
+     *
+     * @param player the player (0 or 1).
+     * @return the number of states the player searched.
+     */
+    public long getStatesSearched(int player) {
+        return statesSearched[player];
+    }
+}
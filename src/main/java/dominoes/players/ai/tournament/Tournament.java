@@ -0,0 +1,164 @@
+package dominoes.players.ai.tournament;
+
+import dominoes.players.ai.algorithm.AIBuilder;
+import dominoes.players.ai.algorithm.AIController;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many HeadlessMatches between two AIs (named as in AIBuilder) on a pool of threads.
+ *
+ * Each match gets new AIControllers and its own seed (derived from the tournament's seed and the match's
+ * index), and the first AI goes first in the even-numbered matches.  Results are added to the summary in
+ * match order, so a tournament between deterministic AIs gives the same wins and points whatever the
+ * number of threads (although latencies depend on how many matches run at once).
+ *
+ * @author Sam Wright
+ */
+public class Tournament {
+    public static final int DEFAULT_NUMBER_OF_MATCHES = 100;
+    public static final int DEFAULT_TARGET_POINTS = 100;
+
+    private final String aiName0, aiName1;
+    private int numberOfMatches = DEFAULT_NUMBER_OF_MATCHES;
+    private int targetPoints = DEFAULT_TARGET_POINTS;
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+    private long seed = 0;
+
+    public Tournament(String aiName0, String aiName1) {
+        if (!AIBuilder.getValidAINames().contains(aiName0))
+            throw new IllegalArgumentException("Unknown AI " + aiName0);
+        if (!AIBuilder.getValidAINames().contains(aiName1))
+            throw new IllegalArgumentException("Unknown AI " + aiName1);
+
+        this.aiName0 = aiName0;
+        this.aiName1 = aiName1;
+    }
+
+    public void setNumberOfMatches(int numberOfMatches) {
+        if (numberOfMatches < 0)
+            throw new IllegalArgumentException("numberOfMatches can't be negative");
+        this.numberOfMatches = numberOfMatches;
+    }
+
+    public void setTargetPoints(int targetPoints) {
+        if (targetPoints < 1)
+            throw new IllegalArgumentException("targetPoints must be positive");
+        this.targetPoints = targetPoints;
+    }
+
+    public void setNumberOfThreads(int numberOfThreads) {
+        if (numberOfThreads < 1)
+            throw new IllegalArgumentException("numberOfThreads must be positive");
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the seed of the given match, which mixes the tournament's seed and the match's index
+     * (so that neighbouring matches don't get similar deals, as they would with consecutive seeds).
+     *
+     * @param seed the tournament's seed.
+     * @param matchIndex the index of the match.
+     * @return the seed of the match.
+     */
+    static long getMatchSeed(long seed, int matchIndex) {
+        // The SplitMix64 finaliser
+        long z = seed + (matchIndex + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays all the matches.
+     *
+     * @return the summary of the matches.
+     * @throws InterruptedException if interrupted while waiting for the matches to finish.
+     */
+    public TournamentSummary run() throws InterruptedException {
+        TournamentSummary summary = new TournamentSummary(aiName0, aiName1, seed, targetPoints, numberOfThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        long start = System.nanoTime();
+
+        try {
+            List<Future<MatchResult>> results = new ArrayList<Future<MatchResult>>(numberOfMatches);
+            for (int i = 0; i < numberOfMatches; ++i)
+                results.add(executor.submit(new MatchTask(i)));
+
+            for (Future<MatchResult> result : results)
+                summary.add(result.get());
+        } catch (ExecutionException e) {
+            throw new RuntimeException("A match failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        summary.setElapsedMillis((System.nanoTime() - start) / 1000000);
+        return summary;
+    }
+
+    private class MatchTask implements Callable<MatchResult> {
+        private final int matchIndex;
+
+        private MatchTask(int matchIndex) {
+            this.matchIndex = matchIndex;
+        }
+
+        @Override
+        public MatchResult call() {
+            AIController ai0 = AIBuilder.createAI(aiName0);
+            AIController ai1 = AIBuilder.createAI(aiName1);
+
+            return new HeadlessMatch(ai0, ai1, getMatchSeed(seed, matchIndex), targetPoints, matchIndex % 2).play();
+        }
+    }
+
+    /**
+     * Runs a tournament and writes its summary as JSON (to the output file, or else to stdout).
+     *
+     * Usage: Tournament aiName0 aiName1 [matches] [seed] [threads] [outputFile]
+     *
+     * @param args the command-line arguments.
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: Tournament aiName0 aiName1 [matches] [seed] [threads] [outputFile]");
+            System.err.println("AI names: " + AIBuilder.getValidAINames());
+            System.exit(1);
+        }
+
+        Tournament tournament = new Tournament(args[0], args[1]);
+        if (args.length > 2)
+            tournament.setNumberOfMatches(Integer.parseInt(args[2]));
+        if (args.length > 3)
+            tournament.setSeed(Long.parseLong(args[3]));
+        if (args.length > 4)
+            tournament.setNumberOfThreads(Integer.parseInt(args[4]));
+
+        String json = tournament.run().toJson();
+
+        if (args.length > 5) {
+            Writer writer = new FileWriter(args[5]);
+            try {
+                writer.write(json);
+            } finally {
+                writer.close();
+            }
+        } else {
+            System.out.print(json);
+        }
+    }
+}
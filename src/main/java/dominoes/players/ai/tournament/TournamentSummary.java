@@ -0,0 +1,137 @@
+package dominoes.players.ai.tournament;
+
+import java.util.Locale;
+
+/**
+ * The totals over all the matches of a Tournament, which can be written as JSON.
+ *
+ * @author Sam Wright
+ */
+public class TournamentSummary {
+    private final String[] names;
+    private final long seed;
+    private final int targetPoints;
+    private final int numberOfThreads;
+
+    private int matches = 0;
+    private long elapsedMillis = 0;
+    private final int[] wins = new int[2];
+    private final long[] points = new long[2];
+    private long rounds = 0;
+    private final LatencySamples[] latencies = {new LatencySamples(), new LatencySamples()};
+    private final long[] statesSearched = new long[2];
+
+    public TournamentSummary(String name0, String name1, long seed, int targetPoints, int numberOfThreads) {
+        this.names = new String[] {name0, name1};
+        this.seed = seed;
+        this.targetPoints = targetPoints;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Adds the result of a match to the totals.
+     *
+     * @param result the result of the match.
+     */
+    public void add(MatchResult result) {
+        ++matches;
+        ++wins[result.getWinner()];
+        rounds += result.getRounds();
+
+        for (int i = 0; i < 2; ++i) {
+            points[i] += result.getPoints(i);
+            latencies[i].addAll(result.getLatencies(i));
+            statesSearched[i] += result.getStatesSearched(i);
+        }
+    }
+
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getName(int player) {
+        return names[player];
+    }
+
+    public int getMatches() {
+        return matches;
+    }
+
+    public int getWins(int player) {
+        return wins[player];
+    }
+
+    public long getPoints(int player) {
+        return points[player];
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    public LatencySamples getLatencies(int player) {
+        return latencies[player];
+    }
+
+    public long getStatesSearched(int player) {
+        return statesSearched[player];
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the summary as a JSON object.  Latencies are in microseconds, and are measured with the
+     * SearchStats instrumentation on (see HeadlessMatch), which the JSON says with
+     * "latencyIncludesSearchStats".
+     *
+     * @return the summary as a JSON object.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append(format("  \"matches\": %d,\n", matches));
+        sb.append(format("  \"rounds\": %d,\n", rounds));
+        sb.append(format("  \"seed\": %d,\n", seed));
+        sb.append(format("  \"targetPoints\": %d,\n", targetPoints));
+        sb.append(format("  \"threads\": %d,\n", numberOfThreads));
+        sb.append(format("  \"elapsedMillis\": %d,\n", elapsedMillis));
+        sb.append("  \"latencyIncludesSearchStats\": true,\n");
+        sb.append("  \"players\": [\n");
+
+        for (int i = 0; i < 2; ++i) {
+            LatencySamples latency = latencies[i];
+            int moves = latency.size();
+
+            sb.append("    {\n");
+            sb.append(format("      \"name\": \"%s\",\n", escape(names[i])));
+            sb.append(format("      \"wins\": %d,\n", wins[i]));
+            sb.append(format("      \"winRate\": %.4f,\n", matches == 0 ? 0 : wins[i] * 1.0 / matches));
+            sb.append(format("      \"points\": %d,\n", points[i]));
+            sb.append(format("      \"moves\": %d,\n", moves));
+            sb.append(format("      \"statesSearched\": %d,\n", statesSearched[i]));
+            sb.append(format("      \"statesPerMove\": %.1f,\n", moves == 0 ? 0 : statesSearched[i] * 1.0 / moves));
+            sb.append("      \"latencyMicros\": {");
+            sb.append(format("\"mean\": %.1f, ", latency.getMean() / 1000));
+            sb.append(format("\"p50\": %d, ", latency.getPercentile(0.5) / 1000));
+            sb.append(format("\"p90\": %d, ", latency.getPercentile(0.9) / 1000));
+            sb.append(format("\"p99\": %d, ", latency.getPercentile(0.99) / 1000));
+            sb.append(format("\"max\": %d}\n", latency.getPercentile(1) / 1000));
+            sb.append(i == 0 ? "    },\n" : "    }\n");
+        }
+
+        sb.append("  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static String format(String format, Object... args) {
+        // Always use '.' as the decimal separator, as JSON needs
+        return String.format(Locale.ROOT, format, args);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
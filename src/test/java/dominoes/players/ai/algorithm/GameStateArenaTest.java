@@ -0,0 +1,158 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.ExpectationWeightEvaluator;
+import dominoes.players.ai.algorithm.components.FastRouteSelector;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class GameStateArenaTest {
+    private static final int MIN_PLY = 3;
+
+    private GameStateArena arena;
+    private List<ImmutableBone> bones;
+
+    @Before
+    public void setUp() throws Exception {
+        arena = new GameStateArena(new StateEnumeratorImpl(), new ExpectationWeightEvaluator(), MIN_PLY, 4);
+
+        bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(5));
+    }
+
+    private BitmaskBoneState createInitialBoneState() {
+        return new BitmaskBoneState(bones.subList(0, 7), 13, bones.get(7));
+    }
+
+    private GameState createImplRoot() {
+        return new GameStateImpl(new StateEnumeratorImpl(), new ExpectationWeightEvaluator(), MIN_PLY, true,
+                createInitialBoneState());
+    }
+
+    /**
+     * Checks the two trees have the same states (creating the children of both as it goes).
+     */
+    private static int assertSameTree(GameState expected, GameState actual) {
+        assertEquals(expected.getChoiceTaken(), actual.getChoiceTaken());
+        assertEquals(expected.isMyTurn(), actual.isMyTurn());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getRemainingPly(), actual.getRemainingPly());
+        assertEquals(expected.getBoneState().getHash(), actual.getBoneState().getHash());
+
+        List<GameState> expectedChildStates = expected.getChildStates();
+        List<GameState> actualChildStates = actual.getChildStates();
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expectedChildStates.size(), actualChildStates.size());
+
+        int count = 1;
+        for (int i = 0; i < expectedChildStates.size(); ++i) {
+            assertEquals(actual, actualChildStates.get(i).getParent());
+            count += assertSameTree(expectedChildStates.get(i), actualChildStates.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Checks the states of the arena's tree are the same as the expected tree's, where the arena's
+     * tree may stop short (because the arena is full).
+     *
+     * @return the number of states in the arena's tree which were left as leaves although the expected tree has children.
+     */
+    private static int assertSameStatesUntilFull(GameState expected, GameState actual) {
+        assertEquals(expected.getChoiceTaken(), actual.getChoiceTaken());
+        assertEquals(expected.isMyTurn(), actual.isMyTurn());
+        assertEquals(expected.getValue(), actual.getValue());
+        assertEquals(expected.getBoneState().getHash(), actual.getBoneState().getHash());
+
+        List<GameState> expectedChildStates = expected.getChildStates();
+        List<GameState> actualChildStates = actual.getChildStates();
+
+        if (actualChildStates.isEmpty() && !expectedChildStates.isEmpty()) {
+            assertEquals(GameState.Status.NOT_YET_CALCULATED, actual.getStatus());
+            return 1;
+        }
+
+        assertEquals(expected.getStatus(), actual.getStatus());
+        assertEquals(expectedChildStates.size(), actualChildStates.size());
+
+        int leftAsLeaves = 0;
+        for (int i = 0; i < expectedChildStates.size(); ++i)
+            leftAsLeaves += assertSameStatesUntilFull(expectedChildStates.get(i), actualChildStates.get(i));
+        return leftAsLeaves;
+    }
+
+    @Test
+    public void testSameTreeAsGameStateImpl() throws Exception {
+        int count = assertSameTree(createImplRoot(), arena.createRoot(true, createInitialBoneState()));
+        assertEquals(count, arena.size());
+    }
+
+    @Test
+    public void testCursorsAreEqual() throws Exception {
+        GameState root = arena.createRoot(true, createInitialBoneState());
+        GameState child = root.getChildStates().get(0);
+
+        assertEquals(child, root.getChildStates().get(0));
+        assertEquals(child.hashCode(), root.getChildStates().get(0).hashCode());
+        assertEquals(root, child.getParent());
+        assertFalse(root.equals(child));
+        assertNull(root.getParent());
+    }
+
+    @Test
+    public void testSameBestRouteAsGameStateImpl() throws Exception {
+        FastRouteSelector routeSelector = new FastRouteSelector();
+        List<GameState> expected = routeSelector.getBestRoutes(createImplRoot()).get(0).getAllStates();
+        List<GameState> actual = routeSelector.getBestRoutes(arena.createRoot(true, createInitialBoneState())).get(0).getAllStates();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertEquals(expected.get(i).getChoiceTaken(), actual.get(i).getChoiceTaken());
+    }
+
+    @Test
+    public void testRetainSubtree() throws Exception {
+        GameState expected = createImplRoot();
+        GameState actual = arena.createRoot(true, createInitialBoneState());
+
+        // Play a few moves, keeping only the subtree under each choice
+        for (int i = 0; i < 4; ++i) {
+            assertSameTree(expected, actual);
+
+            Choice choice = expected.getChildStates().get(0).getChoiceTaken();
+            expected = expected.choose(choice);
+            actual = arena.retainSubtree(actual.choose(choice));
+
+            assertNull(actual.getParent());
+        }
+
+        int count = assertSameTree(expected, actual);
+        assertEquals(count, arena.size());
+    }
+
+    @Test
+    public void testMaxStates() throws Exception {
+        arena.setMaxStates(100);
+        GameState root = arena.createRoot(true, createInitialBoneState());
+
+        assertTrue(assertSameStatesUntilFull(createImplRoot(), root) > 0);
+        assertTrue(arena.size() <= 100);
+    }
+}
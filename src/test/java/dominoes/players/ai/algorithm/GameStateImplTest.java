@@ -1,16 +1,34 @@
 package dominoes.players.ai.algorithm;
 
+import dominoes.players.ai.algorithm.components.EndgameTablebase;
+import dominoes.players.ai.algorithm.components.FastRouteSelector;
+import dominoes.players.ai.algorithm.components.LinearPlyManager;
 import dominoes.players.ai.algorithm.components.MockHandEvaluator;
+import dominoes.players.ai.algorithm.components.OpeningStates;
+import dominoes.players.ai.algorithm.components.PlyManager;
+import dominoes.players.ai.algorithm.components.RouteSelector;
 import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
 import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import dominoes.players.ai.algorithm.helper.Route;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: Sam Wright
@@ -73,5 +91,267 @@ public class GameStateImplTest {
         topState.choose(new Choice(Choice.Action.PASS, null));
     }
 
+    private static class CountingStateEnumerator extends StateEnumeratorImpl {
+        final AtomicInteger statesExpanded = new AtomicInteger();
 
+        @Override
+        public List<Choice> getMyValidChoices(BoneState boneState) {
+            statesExpanded.incrementAndGet();
+            return super.getMyValidChoices(boneState);
+        }
+
+        @Override
+        public List<Choice> getOpponentValidChoices(BoneState boneState) {
+            statesExpanded.incrementAndGet();
+            return super.getOpponentValidChoices(boneState);
+        }
+    }
+
+    private static int countStates(GameState state) {
+        int count = 1;
+        for (GameState childState : state.getChildStates())
+            count += countStates(childState);
+        return count;
+    }
+
+    @Test
+    public void testConcurrentExpansion() throws Exception {
+        CountingStateEnumerator stateEnumerator = new CountingStateEnumerator();
+        final GameState state = new GameStateImpl(stateEnumerator, new MockHandEvaluator(), 3, myBones, true, 14);
+        final List<List<GameState>> childStatesSeen = new Vector<List<GameState>>();
+
+        // Several threads walk the whole tree at once
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; ++i) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    childStatesSeen.add(state.getChildStates());
+                    countStates(state);
+                }
+            });
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        // Every thread saw the same children, and each state was only expanded once
+        for (List<GameState> childStates : childStatesSeen)
+            assertSame(state.getChildStates(), childStates);
+
+        assertEquals(countExpandedStates(state), stateEnumerator.statesExpanded.get());
+    }
+
+    private static int countExpandedStates(GameState state) {
+        if (state.getStatus() == GameState.Status.NOT_YET_CALCULATED)
+            return 0;
+
+        int count = 1;
+        for (GameState childState : state.getChildStates())
+            count += countExpandedStates(childState);
+        return count;
+    }
+
+    @Test
+    public void testConcurrentPlyIncreases() throws Exception {
+        final GameState state = topState.getChildStates().get(0);
+        int initialRemainingPly = state.getRemainingPly();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; ++i) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; ++j)
+                        state.increasePly(1);
+                }
+            });
+        }
+
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(initialRemainingPly + 8000, state.getRemainingPly());
+    }
+
+    @Test
+    public void testMaxStates() throws Exception {
+        GameStateImpl state = new GameStateImpl(new StateEnumeratorImpl(), new MockHandEvaluator(), 4, myBones, true, 14);
+        state.setMaxStates(100);
+
+        countStates(state);
+
+        assertTrue(state.getNumberOfStates() <= 100);
+        assertEquals(state.countRetainedStates(), state.getNumberOfStates());
+    }
+
+    @Test
+    public void testCollapse() throws Exception {
+        GameStateImpl state = (GameStateImpl) topState.getChildStates().get(0);
+        int statesBefore = countStates(state);
+        int numberOfStatesBefore = ((GameStateImpl) topState).getNumberOfStates();
+        double valueBefore = state.getValue();
+
+        assertEquals(statesBefore - 1, state.collapse());
+        assertEquals(numberOfStatesBefore - statesBefore + 1, state.getNumberOfStates());
+        assertEquals(GameState.Status.NOT_YET_CALCULATED, state.getStatus());
+        assertTrue(state.getChildStates().isEmpty());
+        assertEquals(valueBefore, state.getValue());
+
+        // The children are created again once the ply is increased
+        state.increasePly(1);
+        assertEquals(GameState.Status.HAS_CHILD_STATES, state.getStatus());
+        assertTrue(!state.getChildStates().isEmpty());
+        assertEquals(((GameStateImpl) topState).countRetainedStates(), state.getNumberOfStates());
+    }
+
+    @Test
+    public void testCollapseKeepsBackedUpValue() throws Exception {
+        GameStateImpl root = OpeningStates.create(0, 4);
+        RouteSelector routeSelector = new FastRouteSelector();
+        PlyManager plyManager = new LinearPlyManager();
+
+        List<Route> routes = routeSelector.getBestRoutes(root);
+        for (int iteration = 0; iteration < 3; ++iteration) {
+            increasePly(routes, plyManager);
+            routes = routeSelector.getBestRoutes(root);
+        }
+
+        // Collapse the least valuable route's subtree, as ProbabilisticAI does when the tree is full
+        Route route = routes.get(routes.size() - 1);
+        GameStateImpl collapsedState = (GameStateImpl) route.getAllStates().get(1);
+        collapsedState.collapse(route.getValue());
+        assertEquals(route.getValue(), collapsedState.getValue());
+
+        // Deepening the route which now ends at the collapsed state doesn't rebuild the same subtree...
+        routes = routeSelector.getBestRoutes(root);
+        increasePly(routes, plyManager);
+        routes = routeSelector.getBestRoutes(root);
+
+        assertEquals(GameState.Status.NOT_YET_CALCULATED, collapsedState.getStatus());
+        assertTrue(collapsedState.getChildStates().isEmpty());
+
+        // ...and the search still gives it the value it had before it was collapsed
+        Route newRoute = null;
+        for (Route candidateRoute : routes)
+            if (candidateRoute.getAllStates().get(1) == collapsedState)
+                newRoute = candidateRoute;
+
+        assertSame(collapsedState, newRoute.getFinalState());
+        assertEquals(route.getValue(), newRoute.getValue());
+
+        // It's expanded again once it would be searched deeper than before
+        for (int iteration = 0; iteration < 20 && collapsedState.getChildStates().isEmpty(); ++iteration)
+            collapsedState.increasePly(2);
+
+        assertEquals(GameState.Status.HAS_CHILD_STATES, collapsedState.getStatus());
+        assertTrue(!collapsedState.getChildStates().isEmpty());
+    }
+
+    private static void increasePly(List<Route> routes, PlyManager plyManager) {
+        double[] values = new double[routes.size()];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = routes.get(i).getValue();
+
+        int[] plyIncreases = plyManager.getPlyIncreases(values);
+        for (int i = 0; i < values.length; ++i)
+            routes.get(i).getFinalState().increasePly(plyIncreases[i]);
+    }
+
+    @Test
+    public void testEndgameTablebaseLeaves() throws Exception {
+        File file = File.createTempFile("endgame", ".tb");
+
+        try {
+            EndgameTablebase.generate(file, 1);
+            EndgameTablebase tablebase = EndgameTablebase.load(file);
+
+            for (long seed = 0; seed < 20; ++seed) {
+                List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+                Collections.shuffle(bones, new Random(seed));
+
+                // With most bones in the layout and an empty boneyard, the opponent has the other bone
+                ImmutableBone[] layout = bones.subList(2, 27).toArray(new ImmutableBone[25]);
+                GameStateImpl state = new GameStateImpl(new StateEnumeratorImpl(), new MockHandEvaluator(), 4, true,
+                        BitmaskBoneState.FACTORY.createInitialState(bones.subList(0, 2), 0, layout));
+                state.setEndgameTablebase(tablebase);
+
+                for (GameState childState : state.getChildStates()) {
+                    if (!childState.getChoiceTaken().getAction().isPlacement())
+                        continue;
+
+                    // After my placement each hand has one bone, so the rest of the round is solved...
+                    BoneState boneState = childState.getBoneState();
+                    ImmutableBone myBone = boneState.getMyBones().get(0);
+                    ImmutableBone opponentBone = ImmutableBone.fromId(
+                            Integer.numberOfTrailingZeros(boneState.getUnknownBonesMask()));
+                    boolean opponentPasses = !opponentBone.matches(boneState.getLayoutLeft())
+                            && !opponentBone.matches(boneState.getLayoutRight());
+                    boolean iPlace = myBone.matches(boneState.getLayoutLeft())
+                            || myBone.matches(boneState.getLayoutRight());
+
+                    assertEquals(GameState.Status.SOLVED, childState.getStatus());
+                    assertTrue(childState.getChildStates().isEmpty());
+
+                    // ...and valued at its end (where MockHandEvaluator adds the weight of the bones I place)
+                    double value = state.getValue() + childState.getChoiceTaken().getBone().weight();
+                    if (opponentPasses && iPlace)
+                        value += myBone.weight();
+                    assertEquals(value, childState.getValue(), 1e-9);
+                }
+
+                // Once chosen, the game can be played from the state
+                for (GameState childState : state.getChildStates()) {
+                    if (childState.getChoiceTaken().getAction().isPlacement()) {
+                        GameState chosenState = state.choose(childState.getChoiceTaken());
+                        assertEquals(GameState.Status.HAS_CHILD_STATES, chosenState.getStatus());
+                        assertTrue(!chosenState.getChildStates().isEmpty());
+                        break;
+                    }
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testEndgameTablebaseLeafWithNoChoices() throws Exception {
+        File file = File.createTempFile("endgame", ".tb");
+
+        try {
+            EndgameTablebase.generate(file, 1);
+            EndgameTablebase tablebase = EndgameTablebase.load(file);
+
+            // The opponent has no valid choices after my placement, which ends the round (as it would in the tree)
+            StateEnumeratorImpl stateEnumerator = new StateEnumeratorImpl() {
+                @Override
+                public List<Choice> getOpponentValidChoices(BoneState boneState) {
+                    return new ArrayList<Choice>();
+                }
+            };
+
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, new Random(0));
+            ImmutableBone[] layout = bones.subList(2, 27).toArray(new ImmutableBone[25]);
+            GameStateImpl state = new GameStateImpl(stateEnumerator, new MockHandEvaluator(), 4, true,
+                    BitmaskBoneState.FACTORY.createInitialState(bones.subList(0, 2), 0, layout));
+            state.setEndgameTablebase(tablebase);
+
+            for (GameState childState : state.getChildStates()) {
+                if (!childState.getChoiceTaken().getAction().isPlacement())
+                    continue;
+
+                assertEquals(GameState.Status.SOLVED, childState.getStatus());
+                assertEquals(state.getValue() + childState.getChoiceTaken().getBone().weight(),
+                        childState.getValue(), 1e-9);
+            }
+        } finally {
+            file.delete();
+        }
+    }
 }
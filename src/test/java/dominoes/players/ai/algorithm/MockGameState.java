@@ -91,6 +91,11 @@ public class MockGameState implements GameState {
         throw new UnsupportedOperationException("Not supported in mock");
     }
 
+    @Override
+    public int getRemainingPly() {
+        throw new UnsupportedOperationException("Not supported in mock");
+    }
+
     @Override
     public void increasePly(int plyIncrease) {
         throw new UnsupportedOperationException("Not supported in mock");
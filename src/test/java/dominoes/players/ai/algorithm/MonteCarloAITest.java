@@ -0,0 +1,107 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.ExpectationWeightEvaluator;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class MonteCarloAITest {
+    private List<ImmutableBone> bones;
+
+    @Before
+    public void setUp() throws Exception {
+        bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+    }
+
+    private MonteCarloAI createAI(int iterations) {
+        MonteCarloAI ai = new MonteCarloAI(new StateEnumeratorImpl(), new ExpectationWeightEvaluator(),
+                BitmaskBoneState.FACTORY);
+        ai.setIterations(iterations);
+        ai.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        return ai;
+    }
+
+    private static boolean isValidChoice(AIController ai, Choice choice) {
+        for (GameState childState : ai.getGameState().getChildStates())
+            if (childState.getChoiceTaken().equals(choice))
+                return true;
+        return false;
+    }
+
+    @Test
+    public void testChoicesAreValid() throws Exception {
+        MonteCarloAI ai = createAI(200);
+        Random random = new Random(0);
+
+        // Play against a random opponent until the game ends
+        for (int i = 0; i < 60; ++i) {
+            Choice choice;
+            try {
+                choice = ai.getBestChoice();
+            } catch (GameOverException e) {
+                return;
+            }
+
+            if (choice.getAction() == Choice.Action.PICKED_UP && ai.getGameState().isMyTurn()) {
+                List<GameState> childStates = ai.getGameState().getChildStates();
+                choice = childStates.get(random.nextInt(childStates.size())).getChoiceTaken();
+            }
+
+            assertTrue(isValidChoice(ai, choice));
+            ai.choose(choice);
+        }
+    }
+
+    @Test
+    public void testSameIterationsGiveSameChoice() throws Exception {
+        assertEquals(createAI(500).getBestChoice(), createAI(500).getBestChoice());
+    }
+
+    @Test
+    public void testGetBestChoiceWithBudget() throws Exception {
+        MonteCarloAI ai = createAI(1);
+
+        long start = System.nanoTime();
+        Choice choice = ai.getBestChoice(100, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertNotNull(choice);
+        assertTrue(isValidChoice(ai, choice));
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 100 && elapsedMillis < 400);
+    }
+
+    @Test
+    public void testTreeIsKeptAfterChoose() throws Exception {
+        MonteCarloAI ai = createAI(500);
+        Choice choice = ai.getBestChoice();
+
+        GameState chosenState = null;
+        for (GameState childState : ai.getGameState().getChildStates())
+            if (childState.getChoiceTaken().equals(choice))
+                chosenState = childState;
+
+        // The chosen state was searched, so already has its children
+        ai.choose(choice);
+        assertTrue(ai.getGameState() == chosenState);
+        assertEquals(GameState.Status.HAS_CHILD_STATES, chosenState.getStatus());
+        assertTrue(((GameStateImpl) chosenState).getNumberOfStates() > 1);
+    }
+}
@@ -0,0 +1,98 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.ExpectationWeightEvaluator;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class PerfectInformationSamplingAITest {
+    private List<ImmutableBone> bones;
+
+    @Before
+    public void setUp() throws Exception {
+        bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+    }
+
+    private PerfectInformationSamplingAI createAI(int numberOfThreads) {
+        PerfectInformationSamplingAI ai = new PerfectInformationSamplingAI(new StateEnumeratorImpl(),
+                new ExpectationWeightEvaluator(), BitmaskBoneState.FACTORY, new ForkJoinPool(numberOfThreads));
+        ai.setNumberOfDeals(8);
+        ai.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        return ai;
+    }
+
+    private static boolean isValidChoice(AIController ai, Choice choice) {
+        for (GameState childState : ai.getGameState().getChildStates())
+            if (childState.getChoiceTaken().equals(choice))
+                return true;
+        return false;
+    }
+
+    /**
+     * Plays both sides of a game (picking up bones at random), returning the choices made.
+     */
+    private static List<Choice> playGame(PerfectInformationSamplingAI ai) {
+        List<Choice> choices = new ArrayList<Choice>();
+        Random random = new Random(0);
+
+        for (int i = 0; i < 60; ++i) {
+            Choice choice;
+            try {
+                choice = ai.getBestChoice();
+            } catch (GameOverException e) {
+                break;
+            }
+
+            if (choice.getAction() == Choice.Action.PICKED_UP && ai.getGameState().isMyTurn()) {
+                List<GameState> childStates = ai.getGameState().getChildStates();
+                choice = childStates.get(random.nextInt(childStates.size())).getChoiceTaken();
+            }
+
+            assertTrue(isValidChoice(ai, choice));
+            ai.choose(choice);
+            choices.add(choice);
+        }
+
+        return choices;
+    }
+
+    @Test
+    public void testChoicesAreValid() throws Exception {
+        assertTrue(playGame(createAI(2)).size() > 2);
+    }
+
+    @Test
+    public void testNumberOfThreadsDoesntChangeChoices() throws Exception {
+        assertEquals(playGame(createAI(1)), playGame(createAI(4)));
+    }
+
+    @Test
+    public void testGetBestChoiceWithBudget() throws Exception {
+        PerfectInformationSamplingAI ai = createAI(2);
+
+        long start = System.nanoTime();
+        Choice choice = ai.getBestChoice(100, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(isValidChoice(ai, choice));
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis >= 100 && elapsedMillis < 1000);
+    }
+}
@@ -0,0 +1,444 @@
+package dominoes.players.ai.algorithm;
+
+import dominoes.players.ai.algorithm.components.ExpectationWeightEvaluator;
+import dominoes.players.ai.algorithm.components.FastRouteSelector;
+import dominoes.players.ai.algorithm.components.LinearPlyManager;
+import dominoes.players.ai.algorithm.components.OpeningBook;
+import dominoes.players.ai.algorithm.components.PerfectInformationSolver;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.BoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class ProbabilisticAITest {
+    private AIController ai;
+
+    @Before
+    public void setUp() throws Exception {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+
+        ai = AIBuilder.createAI("BitmaskProbabilisticAI");
+        ai.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+    }
+
+    private boolean isValidChoice(Choice choice) {
+        for (GameState childState : ai.getGameState().getChildStates())
+            if (childState.getChoiceTaken().equals(choice))
+                return true;
+        return false;
+    }
+
+    @Test
+    public void testGetBestChoiceWithBudget() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ai.setSearchStatsListener(listener);
+
+        Choice choice = ai.getBestChoice(100, TimeUnit.MILLISECONDS);
+
+        assertNotNull(choice);
+        assertTrue(isValidChoice(choice));
+
+        // With a deadline the search doesn't stop because the choice is stable, but is still capped
+        SearchStats stats = listener.stats.get(0);
+        assertTrue(stats.getStopReason().toString(), stats.getStopReason() != SearchStats.StopReason.STABLE);
+        assertTrue(stats.getIterations() > 0);
+        assertTrue(stats.getIterations() <= 301);
+    }
+
+    @Test
+    public void testGetBestChoiceWithTinyBudget() throws Exception {
+        // At least one iteration is always searched, so there is always a choice.
+        Choice choice = ai.getBestChoice(1, TimeUnit.NANOSECONDS);
+
+        assertNotNull(choice);
+        assertTrue(isValidChoice(choice));
+    }
+
+    @Test
+    public void testIterationIsStoppedAtDeadline() throws Exception {
+        // After the second iteration every expansion is slow, so the third iteration takes far longer than
+        // predicted from the first two
+        final SlowStateEnumerator stateEnumerator = new SlowStateEnumerator();
+        ProbabilisticAI slowAI = new ProbabilisticAI(new LinearPlyManager() {
+            private int iterations = 0;
+
+            @Override
+            public int[] getPlyIncreases(double[] bestFinalStateValues) {
+                if (++iterations == 2)
+                    stateEnumerator.isSlow = true;
+                return super.getPlyIncreases(bestFinalStateValues);
+            }
+        }, new FastRouteSelector(), stateEnumerator, new ExpectationWeightEvaluator(), BitmaskBoneState.FACTORY);
+
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+        slowAI.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        RecordingListener listener = new RecordingListener();
+        slowAI.setSearchStatsListener(listener);
+
+        long start = System.nanoTime();
+        Choice choice = slowAI.getBestChoice(100, TimeUnit.MILLISECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // The iteration under way is dropped at the first expansion after the deadline
+        assertNotNull(choice);
+        assertEquals(SearchStats.StopReason.DEADLINE, listener.stats.get(0).getStopReason());
+        assertTrue("took " + elapsedMillis + "ms", elapsedMillis < 100 + 2 * SlowStateEnumerator.DELAY_MILLIS);
+    }
+
+    /**
+     * A StateEnumeratorImpl which sleeps for DELAY_MILLIS before each expansion once 'isSlow' is set.
+     */
+    private static class SlowStateEnumerator extends StateEnumeratorImpl {
+        static final int DELAY_MILLIS = 50;
+        volatile boolean isSlow = false;
+
+        private void delay() {
+            if (isSlow) {
+                try {
+                    Thread.sleep(DELAY_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public List<Choice> getMyValidChoices(BoneState boneState) {
+            delay();
+            return super.getMyValidChoices(boneState);
+        }
+
+        @Override
+        public List<Choice> getOpponentValidChoices(BoneState boneState) {
+            delay();
+            return super.getOpponentValidChoices(boneState);
+        }
+    }
+
+    private static int countStates(GameState state) {
+        int count = 1;
+        for (GameState childState : state.getChildStates())
+            count += countStates(childState);
+        return count;
+    }
+
+    @Test
+    public void testPondering() throws Exception {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+
+        ProbabilisticAI pondering = (ProbabilisticAI) AIBuilder.createAI("PonderingProbabilisticAI");
+        pondering.setMaxPonderIterations(2);
+        pondering.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        ProbabilisticAI notPondering = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+        notPondering.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+        Choice myChoice = pondering.getBestChoice();
+        assertEquals(myChoice, notPondering.getBestChoice());
+        pondering.choose(myChoice);
+        notPondering.choose(myChoice);
+        pondering.waitForPondering();
+
+        // The background search deepens the tree under each of the opponent's choices (including picking up)
+        List<GameState> ponderedStates = pondering.getGameState().getChildStates();
+        List<GameState> unponderedStates = notPondering.getGameState().getChildStates();
+        assertEquals(unponderedStates.size(), ponderedStates.size());
+
+        boolean hasPickup = false;
+        for (int i = 0; i < ponderedStates.size(); ++i) {
+            GameState ponderedState = ponderedStates.get(i);
+            hasPickup |= ponderedState.getChoiceTaken().getAction() == Choice.Action.PICKED_UP;
+
+            if (ponderedState.getStatus() != GameState.Status.GAME_OVER)
+                assertTrue(countStates(ponderedState) > countStates(unponderedStates.get(i)));
+        }
+        assertTrue(hasPickup);
+
+        // and the AI can carry on after the opponent's choice
+        GameState opponentChoice = ponderedStates.get(0);
+        pondering.choose(opponentChoice.getChoiceTaken());
+
+        if (opponentChoice.getChoiceTaken().getAction() != Choice.Action.PICKED_UP) {
+            assertSame(opponentChoice, pondering.getGameState());
+            assertNotNull(pondering.getBestChoice());
+        }
+    }
+
+    @Test
+    public void testPonderingHalts() throws Exception {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+
+        ProbabilisticAI pondering = (ProbabilisticAI) AIBuilder.createAI("PonderingProbabilisticAI");
+        pondering.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        pondering.choose(pondering.getBestChoice());
+
+        // Halting in the middle of pondering leaves the tree usable
+        pondering.setPondering(false);
+        GameState opponentChoice = pondering.getGameState().getChildStates().get(0);
+        pondering.choose(opponentChoice.getChoiceTaken());
+        assertNotNull(pondering.getBestChoice());
+    }
+
+    /**
+     * Plays both sides of a game for up to the given number of choices, and returns the
+     * largest number of retained states seen along the way.
+     */
+    private static int playAndGetMaxRetainedStates(ProbabilisticAI probabilisticAI, int numberOfChoices) {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(4));
+        probabilisticAI.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+        int maxRetainedStates = 0;
+        for (int i = 0; i < numberOfChoices; ++i) {
+            Choice choice;
+            try {
+                choice = probabilisticAI.getBestChoice();
+            } catch (GameOverException e) {
+                break;
+            }
+
+            // I pick up a particular bone (but the opponent's pickup is unknown)
+            if (choice.getAction() == Choice.Action.PICKED_UP && probabilisticAI.getGameState().isMyTurn())
+                choice = probabilisticAI.getGameState().getChildStates().get(0).getChoiceTaken();
+
+            probabilisticAI.choose(choice);
+            maxRetainedStates = Math.max(maxRetainedStates, probabilisticAI.getRetainedStateCount());
+        }
+
+        return maxRetainedStates;
+    }
+
+    @Test
+    public void testDetachingOnChoose() throws Exception {
+        ProbabilisticAI detaching = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+        ProbabilisticAI notDetaching = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+        notDetaching.setDetachingOnChoose(false);
+
+        int detachedStates = playAndGetMaxRetainedStates(detaching, 10);
+        int attachedStates = playAndGetMaxRetainedStates(notDetaching, 10);
+
+        assertTrue(detachedStates < attachedStates);
+        assertNull(detaching.getGameState().getParent());
+    }
+
+    @Test
+    public void testMaxStates() throws Exception {
+        ProbabilisticAI probabilisticAI = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+        probabilisticAI.setMaxStates(2000);
+
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(4));
+        probabilisticAI.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+        for (int i = 0; i < 10; ++i) {
+            Choice choice;
+            try {
+                choice = probabilisticAI.getBestChoice();
+            } catch (GameOverException e) {
+                break;
+            }
+
+            assertTrue(probabilisticAI.getRetainedStateCount() <= 2000);
+
+            if (choice.getAction() == Choice.Action.PICKED_UP && probabilisticAI.getGameState().isMyTurn())
+                choice = probabilisticAI.getGameState().getChildStates().get(0).getChoiceTaken();
+
+            probabilisticAI.choose(choice);
+        }
+    }
+
+    @Test
+    public void testArenaGivesSameChoices() throws Exception {
+        ProbabilisticAI objects = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+        ProbabilisticAI arena = (ProbabilisticAI) AIBuilder.createAI("ArenaProbabilisticAI");
+
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(4));
+        objects.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+        arena.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+        for (int i = 0; i < 10; ++i) {
+            Choice choice;
+            try {
+                choice = objects.getBestChoice();
+            } catch (GameOverException e) {
+                break;
+            }
+
+            assertEquals(choice, arena.getBestChoice());
+
+            if (choice.getAction() == Choice.Action.PICKED_UP && objects.getGameState().isMyTurn())
+                choice = objects.getGameState().getChildStates().get(0).getChoiceTaken();
+
+            objects.choose(choice);
+            arena.choose(choice);
+            assertEquals(objects.getGameState().getValue(), arena.getGameState().getValue());
+        }
+    }
+
+    private static class RecordingListener implements SearchStatsListener {
+        final List<SearchStats> stats = new ArrayList<SearchStats>();
+
+        @Override
+        public void searchFinished(SearchStats stats) {
+            this.stats.add(stats);
+        }
+    }
+
+    private void assertStatsAreRecorded(String aiName) throws Exception {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+
+        RecordingListener listener = new RecordingListener();
+        AIController instrumentedAI = AIBuilder.createAI(aiName);
+        instrumentedAI.setSearchStatsListener(listener);
+        instrumentedAI.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+        // The stats don't change the choice
+        assertEquals(ai.getBestChoice(), instrumentedAI.getBestChoice());
+        assertEquals(1, listener.stats.size());
+
+        SearchStats stats = listener.stats.get(0);
+        assertNotNull(stats.getStopReason());
+        assertTrue(stats.getIterations() > 0);
+        assertTrue(stats.getMaxDepth() > 0);
+        assertTrue(stats.getStatesExpanded() > 0);
+        assertTrue(stats.getStatesCreated() >= stats.getStatesExpanded());
+        assertTrue(stats.getTotalNanos() >= stats.getRouteSelectionNanos());
+    }
+
+    @Test
+    public void testSearchStats() throws Exception {
+        assertStatsAreRecorded("BitmaskProbabilisticAI");
+    }
+
+    @Test
+    public void testSearchStatsWithArena() throws Exception {
+        assertStatsAreRecorded("ArenaProbabilisticAI");
+    }
+
+    @Test
+    public void testSearchStatsWithParallelSearch() throws Exception {
+        assertStatsAreRecorded("ParallelProbabilisticAI");
+    }
+
+    @Test
+    public void testSearchStatsListenerSetAfterInitialState() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ai.setSearchStatsListener(listener);
+
+        ai.getBestChoice();
+        assertTrue(listener.stats.get(0).getStatesExpanded() > 0);
+        assertTrue(listener.stats.get(0).getStatesCreated() > 0);
+    }
+
+    @Test
+    public void testSearchStatsStopReason() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ai.setSearchStatsListener(listener);
+
+        ai.getBestChoice(1, TimeUnit.NANOSECONDS);
+        assertEquals(SearchStats.StopReason.DEADLINE, listener.stats.get(0).getStopReason());
+        assertEquals(1, listener.stats.get(0).getIterations());
+
+        // Removing the listener stops the stats
+        ai.setSearchStatsListener(null);
+        ai.getBestChoice(1, TimeUnit.NANOSECONDS);
+        assertEquals(1, listener.stats.size());
+    }
+
+    @Test
+    public void testEndgameIsSolved() throws Exception {
+        PerfectInformationSolver solver = new PerfectInformationSolver();
+
+        for (long seed = 0; seed < 20; ++seed) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, new Random(seed));
+
+            // With most bones in the layout and an empty boneyard, the opponent has the other 6 bones
+            ImmutableBone[] layout = bones.subList(10, 28).toArray(new ImmutableBone[18]);
+            RecordingListener listener = new RecordingListener();
+            AIController endgameAI = AIBuilder.createAI("BitmaskProbabilisticAI");
+            endgameAI.setSearchStatsListener(listener);
+            endgameAI.setInitialState(bones.subList(0, 4), true, 0, layout);
+
+            BoneState boneState = endgameAI.getGameState().getBoneState();
+            int expectedScore = solver.solve(new Deal(boneState.getMyBonesMask(), boneState.getUnknownBonesMask(),
+                    new int[0]), boneState.getLayoutLeft(), boneState.getLayoutRight(), true, false);
+
+            // Both players playing perfectly gives the solved score
+            while (true) {
+                Choice choice;
+                try {
+                    choice = endgameAI.getBestChoice();
+                } catch (GameOverException e) {
+                    break;
+                }
+
+                SearchStats.StopReason stopReason = listener.stats.get(listener.stats.size() - 1).getStopReason();
+                assertTrue(stopReason == SearchStats.StopReason.ENDGAME_SOLVED
+                        || stopReason == SearchStats.StopReason.ONE_CHOICE);
+                endgameAI.choose(choice);
+            }
+
+            boneState = endgameAI.getGameState().getBoneState();
+            assertEquals(expectedScore, PerfectInformationSolver.getScore(boneState.getMyBonesMask(),
+                    boneState.getUnknownBonesMask()));
+        }
+    }
+
+    @Test
+    public void testOpeningBook() throws Exception {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(3));
+        File file = File.createTempFile("opening", ".book");
+
+        try {
+            // The book's one deal is the same as setUp's
+            OpeningBook.generate(file, AIBuilder.createAI("ShortSightedAI"), 1, 1, TimeUnit.MILLISECONDS, 3);
+            OpeningBook book = OpeningBook.load(file);
+            Choice bookChoice = book.getChoice(bones.subList(0, 7), 13, bones.get(7).left(), bones.get(7).right());
+            assertNotNull(bookChoice);
+
+            RecordingListener listener = new RecordingListener();
+            ProbabilisticAI bookAI = (ProbabilisticAI) AIBuilder.createAI("BitmaskProbabilisticAI");
+            bookAI.setSearchStatsListener(listener);
+            bookAI.setOpeningBook(book);
+            bookAI.setInitialState(bones.subList(0, 7), true, 13, bones.get(7));
+
+            assertEquals(bookChoice, bookAI.getBestChoice());
+            assertEquals(SearchStats.StopReason.OPENING_BOOK, listener.stats.get(0).getStopReason());
+
+            // Only the first choice comes from the book
+            bookAI.choose(bookChoice);
+            bookAI.getBestChoice();
+            assertTrue(listener.stats.get(1).getStopReason() != SearchStats.StopReason.OPENING_BOOK);
+        } finally {
+            file.delete();
+        }
+    }
+}
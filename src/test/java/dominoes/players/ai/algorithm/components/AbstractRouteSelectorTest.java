@@ -2,6 +2,7 @@ package dominoes.players.ai.algorithm.components;
 
 import dominoes.players.ai.algorithm.MockGameState;
 import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.GameStateImpl;
 import dominoes.players.ai.algorithm.helper.Choice;
 import dominoes.players.ai.algorithm.helper.Route;
 import org.junit.Before;
@@ -11,6 +12,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: Sam Wright
@@ -112,4 +114,44 @@ public class AbstractRouteSelectorTest {
         // the best thing for me (ie. grandChild2b)
         assertEquals(Arrays.asList(parent, child2, grandChild2b), bestRoutes.get(1).getAllStates());
     }
+
+    @Test
+    public void testRoutesThroughTranspositionsKeepDeepening() throws Exception {
+        int hits = 0;
+
+        for (long seed = 0; seed < 10; ++seed) {
+            GameStateImpl state = OpeningStates.create(seed, 4);
+            CountingTranspositionTable transpositionTable = new CountingTranspositionTable();
+            RouteSelector routeSelector = new RouteSelectorImpl(transpositionTable);
+            PlyManager plyManager = new LinearPlyManager();
+
+            List<Route> routes = routeSelector.getBestRoutes(state);
+
+            for (int iteration = 0; iteration < 20; ++iteration) {
+                // Every route ends at a leaf, even when its value came from the table...
+                for (Route route : routes)
+                    assertTrue(route.getFinalState().getStatus() != GameState.Status.HAS_CHILD_STATES);
+
+                int numberOfStates = state.getNumberOfStates();
+
+                double[] values = new double[routes.size()];
+                for (int i = 0; i < values.length; ++i)
+                    values[i] = routes.get(i).getValue();
+
+                int[] plyIncreases = plyManager.getPlyIncreases(values);
+                for (int i = 0; i < values.length; ++i)
+                    routes.get(i).getFinalState().increasePly(plyIncreases[i]);
+
+                routes = routeSelector.getBestRoutes(state);
+
+                // ...so deepening them always grows the tree
+                assertTrue(state.getNumberOfStates() > numberOfStates);
+            }
+
+            hits += transpositionTable.hits;
+        }
+
+        // Some of the routes went through transpositions
+        assertTrue(hits > 0);
+    }
 }
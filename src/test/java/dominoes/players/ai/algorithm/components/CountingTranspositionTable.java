@@ -0,0 +1,22 @@
+package dominoes.players.ai.algorithm.components;
+
+/**
+ * A TranspositionTable which counts its hits, for the RouteSelector tests.
+ *
+ * @author Sam Wright
+ */
+class CountingTranspositionTable extends TranspositionTable {
+    int hits;
+
+    CountingTranspositionTable() {
+        super(16);
+    }
+
+    @Override
+    public double get(long key, int remainingPly) {
+        double value = super.get(key, remainingPly);
+        if (!Double.isNaN(value))
+            ++hits;
+        return value;
+    }
+}
@@ -0,0 +1,116 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * @author Sam Wright
+ */
+public class EndgameTablebaseTest {
+    /**
+     * Generating the tablebase takes a few seconds, so it is shared by the tests.
+     */
+    private static EndgameTablebase sharedTablebase;
+
+    private EndgameTablebase tablebase;
+
+    @Before
+    public void setUp() throws Exception {
+        if (sharedTablebase == null) {
+            File file = File.createTempFile("endgame", ".tb");
+            file.deleteOnExit();
+            EndgameTablebase.generate(file, 2);
+            sharedTablebase = EndgameTablebase.load(file);
+        }
+
+        tablebase = sharedTablebase;
+    }
+
+    @Test
+    public void testSameValuesAsSolver() throws Exception {
+        Random random = new Random(0);
+        PerfectInformationSolver solver = new PerfectInformationSolver();
+
+        for (int i = 0; i < 500; ++i) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, random);
+
+            int mySize = 1 + random.nextInt(2);
+            int opponentSize = 1 + random.nextInt(2);
+            int myBones = Bones.maskOf(bones.subList(1, 1 + mySize));
+            int opponentBones = Bones.maskOf(bones.subList(1 + mySize, 1 + mySize + opponentSize));
+            ImmutableBone ends = bones.get(0);
+            boolean isMyTurn = random.nextBoolean();
+            boolean lastChoiceWasPass = random.nextInt(4) == 0;
+
+            assertTrue(tablebase.covers(myBones, opponentBones));
+            assertEquals(solver.solve(new Deal(myBones, opponentBones, new int[0]), ends.left(), ends.right(),
+                            isMyTurn, lastChoiceWasPass),
+                    tablebase.getValue(myBones, opponentBones, ends.left(), ends.right(), isMyTurn, lastChoiceWasPass));
+        }
+    }
+
+    @Test
+    public void testCovers() throws Exception {
+        int bone1 = Bones.maskOf(ImmutableBone.of(0, 1));
+        int bone2 = Bones.maskOf(ImmutableBone.of(2, 3));
+        int bone3 = Bones.maskOf(ImmutableBone.of(4, 5));
+
+        assertEquals(2, tablebase.getMaxBonesPerHand());
+        assertTrue(tablebase.covers(bone1 | bone2, bone3));
+        assertFalse(tablebase.covers(bone1 | bone2 | bone3, Bones.maskOf(ImmutableBone.of(6, 6))));
+        assertFalse(tablebase.covers(bone1, 0));
+        assertFalse(tablebase.covers(bone1 | bone2, bone2));
+    }
+
+    @Test
+    public void testLoadRejectsOtherFiles() throws Exception {
+        File otherFile = File.createTempFile("endgame", ".tb");
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(otherFile));
+            out.writeInt(EndgameTablebase.MAGIC);
+            out.writeInt(EndgameTablebase.VERSION);
+            out.writeInt(2);
+            out.writeInt(12345);
+            out.close();
+
+            try {
+                EndgameTablebase.load(otherFile);
+                fail("Loaded a truncated tablebase");
+            } catch (IOException e) {
+                // Expected
+            }
+
+            out = new DataOutputStream(new FileOutputStream(otherFile));
+            out.writeInt(0);
+            out.close();
+
+            try {
+                EndgameTablebase.load(otherFile);
+                fail("Loaded a file that isn't a tablebase");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            otherFile.delete();
+        }
+    }
+}
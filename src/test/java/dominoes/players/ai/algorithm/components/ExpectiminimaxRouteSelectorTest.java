@@ -0,0 +1,168 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.MockGameState;
+import dominoes.players.ai.algorithm.helper.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class ExpectiminimaxRouteSelectorTest {
+    private ExpectiminimaxRouteSelector routeSelector;
+    private MockGameState parent, child1, child2;
+
+    @Before
+    public void setUp() throws Exception {
+        routeSelector = new ExpectiminimaxRouteSelector();
+
+        // The same tree as AbstractRouteSelectorTest
+        parent = MockGameState.createRoot();
+
+        child1 = new MockGameState(parent, 10);
+        child2 = new MockGameState(parent, 20);
+        child1.setChoiceTaken(new Choice(Choice.Action.PASS, null));
+
+        new MockGameState(child1, 9);
+        new MockGameState(child1, 11);
+        new MockGameState(child2, 19);
+        new MockGameState(child2, 21);
+    }
+
+    private void setTurnOwnership(MockGameState gameState, boolean isTurnMine) {
+        gameState.setMyTurn(isTurnMine);
+        for (GameState childState : gameState.getChildStates()) {
+            setTurnOwnership((MockGameState) childState, !isTurnMine);
+        }
+    }
+
+    private void assertSameBestRouteAsFastRouteSelector() {
+        Route expected = new FastRouteSelector().getBestRoutes(parent).get(0);
+        Route actual = routeSelector.getBestRoutes(parent).get(0);
+
+        // NB. the values differ, since FastRouteSelector adds value from discarded routes.
+        assertEquals(expected.getAllStates(), actual.getAllStates());
+    }
+
+    @Test
+    public void testGetBestRoutesWhenMyTurn() throws Exception {
+        setTurnOwnership(parent, true);
+        assertSameBestRouteAsFastRouteSelector();
+    }
+
+    @Test
+    public void testGetBestRoutesWhenOpponentTurn() throws Exception {
+        setTurnOwnership(parent, false);
+        assertSameBestRouteAsFastRouteSelector();
+    }
+
+    private static class CountingStateEnumerator extends StateEnumeratorImpl {
+        int statesExpanded;
+
+        @Override
+        public List<Choice> getMyValidChoices(BoneState boneState) {
+            ++statesExpanded;
+            return super.getMyValidChoices(boneState);
+        }
+
+        @Override
+        public List<Choice> getOpponentValidChoices(BoneState boneState) {
+            ++statesExpanded;
+            return super.getOpponentValidChoices(boneState);
+        }
+    }
+
+    /**
+     * Gets the value of the state by a full expectiminimax search (with no pruning).
+     */
+    private static double getExpectiminimaxValue(GameState state) {
+        List<GameState> childStates = state.getChildStates();
+        if (childStates.isEmpty())
+            return state.getValue();
+
+        Choice firstChoice = childStates.get(0).getChoiceTaken();
+        if (state.isMyTurn() && firstChoice.getAction() == Choice.Action.PICKED_UP) {
+            double expectedValue = 0, totalProbability = 0;
+            for (GameState childState : childStates) {
+                double probability = state.getBoneState().getProbThatBoneyardHasBone(childState.getChoiceTaken().getBone());
+                expectedValue += probability * getExpectiminimaxValue(childState);
+                totalProbability += probability;
+            }
+            return expectedValue / totalProbability;
+        }
+
+        double bestValue = state.isMyTurn() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        for (GameState childState : childStates) {
+            double value = getExpectiminimaxValue(childState);
+            bestValue = state.isMyTurn() ? Math.max(bestValue, value) : Math.min(bestValue, value);
+        }
+        return bestValue;
+    }
+
+    @Test
+    public void testBestRouteHasExpectiminimaxValue() throws Exception {
+        for (long seed = 0; seed < 5; ++seed) {
+            GameState state = OpeningStates.create(new StateEnumeratorImpl(), seed, 5, true);
+            Route bestRoute = routeSelector.getBestRoutes(state).get(0);
+
+            double expectedValue = Double.NEGATIVE_INFINITY;
+            for (GameState childState : state.getChildStates())
+                if (childState.getChoiceTaken().getAction() != Choice.Action.PICKED_UP)
+                    expectedValue = Math.max(expectedValue, getExpectiminimaxValue(childState));
+
+            assertEquals(expectedValue, bestRoute.getValue(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testPruning() throws Exception {
+        for (long seed = 0; seed < 5; ++seed) {
+            CountingStateEnumerator fastEnumerator = new CountingStateEnumerator();
+            new FastRouteSelector().getBestRoutes(OpeningStates.create(fastEnumerator, seed, 5, true));
+
+            CountingStateEnumerator prunedEnumerator = new CountingStateEnumerator();
+            routeSelector.getBestRoutes(OpeningStates.create(prunedEnumerator, seed, 5, true));
+
+            assertTrue(prunedEnumerator.statesExpanded < fastEnumerator.statesExpanded);
+        }
+    }
+
+    @Test
+    public void testMoveOrderingFindsSameBestRoute() throws Exception {
+        for (long seed = 0; seed < 5; ++seed) {
+            GameState expectedState = OpeningStates.create(new StateEnumeratorImpl(), seed, 5, true);
+            Route expected = routeSelector.getBestRoutes(expectedState).get(0);
+
+            ExpectiminimaxRouteSelector orderedRouteSelector = new ExpectiminimaxRouteSelector(new MoveOrderer());
+            GameState actualState = OpeningStates.create(new StateEnumeratorImpl(), seed, 5, true);
+            Route actual = orderedRouteSelector.getBestRoutes(actualState).get(0);
+
+            assertEquals(expected.getValue(), actual.getValue(), 0.0001);
+        }
+    }
+
+    @Test
+    public void testMoveOrderingExpandsFewerStates() throws Exception {
+        int unorderedStatesExpanded = 0, orderedStatesExpanded = 0;
+        MoveOrderer moveOrderer = new MoveOrderer();
+
+        for (long seed = 0; seed < 10; ++seed) {
+            CountingStateEnumerator unorderedEnumerator = new CountingStateEnumerator();
+            routeSelector.getBestRoutes(OpeningStates.create(unorderedEnumerator, seed, 5, true));
+            unorderedStatesExpanded += unorderedEnumerator.statesExpanded;
+
+            CountingStateEnumerator orderedEnumerator = new CountingStateEnumerator();
+            new ExpectiminimaxRouteSelector(moveOrderer)
+                    .getBestRoutes(OpeningStates.create(orderedEnumerator, seed, 5, true));
+            orderedStatesExpanded += orderedEnumerator.statesExpanded;
+        }
+
+        assertTrue(orderedStatesExpanded < unorderedStatesExpanded);
+    }
+}
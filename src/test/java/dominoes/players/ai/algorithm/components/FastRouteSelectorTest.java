@@ -0,0 +1,154 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.GameStateImpl;
+import dominoes.players.ai.algorithm.helper.*;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class FastRouteSelectorTest {
+
+    private static List<Choice> getChoices(Route route) {
+        List<Choice> choices = new ArrayList<Choice>();
+        for (GameState state : route.getAllStates())
+            choices.add(state.getChoiceTaken());
+        return choices;
+    }
+
+    private static void assertSameRoutes(List<Route> expected, List<Route> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), 0.0);
+            assertEquals(expected.get(i).length(), actual.get(i).length());
+            assertEquals(getChoices(expected.get(i)), getChoices(actual.get(i)));
+        }
+    }
+
+    /**
+     * Deepens the given routes (in both trees) as ProbabilisticAI does, with a LinearPlyManager.
+     */
+    private static void deepen(PlyManager plyManager, List<Route> expected, List<Route> actual) {
+        double[] values = new double[expected.size()];
+        for (int i = 0; i < values.length; ++i)
+            values[i] = expected.get(i).getValue();
+
+        int[] plyIncreases = plyManager.getPlyIncreases(values);
+        for (int i = 0; i < values.length; ++i) {
+            expected.get(i).getFinalState().increasePly(plyIncreases[i]);
+            actual.get(i).getFinalState().increasePly(plyIncreases[i]);
+        }
+    }
+
+    @Test
+    public void testCachedRoutesAreSameAsSearchedRoutes() throws Exception {
+        for (long seed = 0; seed < 5; ++seed) {
+            GameState expectedState = OpeningStates.create(seed, 2);
+            GameState actualState = OpeningStates.create(seed, 2);
+            RouteSelector searchingSelector = new FastRouteSelector(false);
+            RouteSelector cachingSelector = new FastRouteSelector(true);
+            PlyManager plyManager = new LinearPlyManager();
+
+            for (int move = 0; move < 3; ++move) {
+                for (int iteration = 0; iteration < 30; ++iteration) {
+                    List<Route> expected = searchingSelector.getBestRoutes(expectedState);
+                    List<Route> actual = cachingSelector.getBestRoutes(actualState);
+                    assertSameRoutes(expected, actual);
+
+                    if (expected.isEmpty())
+                        break;
+
+                    deepen(plyManager, expected, actual);
+
+                    // Collapse the worst route's first state (as a full tree would)
+                    if (iteration % 10 == 9 && expected.size() > 1) {
+                        ((GameStateImpl) expected.get(expected.size() - 1).getAllStates().get(1)).collapse();
+                        ((GameStateImpl) actual.get(actual.size() - 1).getAllStates().get(1)).collapse();
+                    }
+                }
+
+                List<GameState> childStates = expectedState.getChildStates();
+                if (childStates.isEmpty())
+                    break;
+
+                Choice choice = childStates.get(0).getChoiceTaken();
+                expectedState = expectedState.choose(choice);
+                actualState = actualState.choose(choice);
+            }
+        }
+    }
+
+    @Test
+    public void testIncreasingPlyInvalidatesAncestors() throws Exception {
+        GameStateImpl root = OpeningStates.create(0, 2);
+        List<Route> routes = new FastRouteSelector(true).getBestRoutes(root);
+
+        List<GameState> states = routes.get(0).getAllStates();
+        GameStateImpl child = (GameStateImpl) states.get(1);
+        GameStateImpl finalState = (GameStateImpl) states.get(states.size() - 1);
+        GameStateImpl otherChild = (GameStateImpl) routes.get(1).getAllStates().get(1);
+
+        assertNotNull(child.getCachedRoute());
+        assertNotNull(otherChild.getCachedRoute());
+
+        // Only the deepened state's ancestors need searching again
+        finalState.increasePly(1);
+        assertNull(child.getCachedRoute());
+        assertNotNull(otherChild.getCachedRoute());
+
+        // Playing a move deepens every state
+        root.choose(otherChild.getChoiceTaken());
+        assertNull(otherChild.getCachedRoute());
+    }
+
+    /**
+     * A TranspositionTable which counts its hits.
+     */
+    @Test
+    public void testRoutesThroughTranspositionsKeepDeepening() throws Exception {
+        int hits = 0;
+
+        for (long seed = 0; seed < 10; ++seed) {
+            GameStateImpl state = OpeningStates.create(seed, 4);
+            CountingTranspositionTable transpositionTable = new CountingTranspositionTable();
+            RouteSelector routeSelector = new FastRouteSelector(transpositionTable);
+            PlyManager plyManager = new LinearPlyManager();
+
+            List<Route> routes = routeSelector.getBestRoutes(state);
+
+            for (int iteration = 0; iteration < 20; ++iteration) {
+                // Every route ends at a leaf, even when its value came from the table...
+                for (Route route : routes)
+                    assertTrue(route.getFinalState().getStatus() != GameState.Status.HAS_CHILD_STATES);
+
+                int numberOfStates = state.getNumberOfStates();
+
+                double[] values = new double[routes.size()];
+                for (int i = 0; i < values.length; ++i)
+                    values[i] = routes.get(i).getValue();
+
+                int[] plyIncreases = plyManager.getPlyIncreases(values);
+                for (int i = 0; i < values.length; ++i)
+                    routes.get(i).getFinalState().increasePly(plyIncreases[i]);
+
+                routes = routeSelector.getBestRoutes(state);
+
+                // ...so deepening them always grows the tree
+                assertTrue(state.getNumberOfStates() > numberOfStates);
+            }
+
+            hits += transpositionTable.hits;
+        }
+
+        // Some of the routes went through transpositions
+        assertTrue(hits > 0);
+    }
+}
@@ -0,0 +1,79 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class MoveOrdererTest {
+    private MoveOrderer moveOrderer;
+    private GameState state;
+
+    @Before
+    public void setUp() throws Exception {
+        moveOrderer = new MoveOrderer();
+        state = OpeningStates.create(1, 3);
+    }
+
+    private static void assertOrderedByValue(List<GameState> orderedStates, boolean isMyTurn) {
+        for (int i = 1; i < orderedStates.size(); ++i) {
+            double previousValue = orderedStates.get(i - 1).getValue();
+            double value = orderedStates.get(i).getValue();
+            assertTrue(isMyTurn ? previousValue >= value : previousValue <= value);
+        }
+    }
+
+    @Test
+    public void testOrdersByAddedValue() throws Exception {
+        moveOrderer.startSearch(state);
+        List<GameState> orderedStates = moveOrderer.order(state, state.getChildStates());
+
+        assertTrue(orderedStates.size() > 1);
+        assertEquals(new HashSet<GameState>(state.getChildStates()), new HashSet<GameState>(orderedStates));
+        assertOrderedByValue(orderedStates, true);
+
+        // The opponent's best choices are the ones which lower the value most
+        GameState opponentState = orderedStates.get(0);
+        List<GameState> orderedOpponentStates = moveOrderer.order(opponentState, opponentState.getChildStates());
+        assertOrderedByValue(orderedOpponentStates, false);
+    }
+
+    @Test
+    public void testHistoryComesFirst() throws Exception {
+        moveOrderer.startSearch(state);
+        List<GameState> orderedStates = moveOrderer.order(state, state.getChildStates());
+        GameState worstState = orderedStates.get(orderedStates.size() - 1);
+
+        moveOrderer.recordCutoff(state, worstState);
+        assertTrue(moveOrderer.getScore(state.getBoneState(), true, worstState.getChoiceTaken()) > 0);
+        assertSame(worstState, moveOrderer.order(state, state.getChildStates()).get(0));
+
+        // The history is mine, so doesn't affect the opponent's choices
+        assertEquals(0, moveOrderer.getScore(state.getBoneState(), false, worstState.getChoiceTaken()));
+    }
+
+    @Test
+    public void testHistoryIsKeptForTheRound() throws Exception {
+        moveOrderer.startSearch(state);
+        GameState childState = state.getChildStates().get(0);
+        moveOrderer.recordCutoff(state, childState);
+
+        // A later search in the same round keeps the history...
+        GameState nextState = childState.getChildStates().get(0);
+        moveOrderer.startSearch(nextState);
+        assertTrue(moveOrderer.getScore(state.getBoneState(), true, childState.getChoiceTaken()) > 0);
+
+        // ...but a search in a new round doesn't
+        moveOrderer.startSearch(OpeningStates.create(2, 3));
+        assertEquals(0, moveOrderer.getScore(state.getBoneState(), true, childState.getChoiceTaken()));
+    }
+}
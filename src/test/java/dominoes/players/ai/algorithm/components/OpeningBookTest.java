@@ -0,0 +1,184 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.AIBuilder;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+/**
+ * @author Sam Wright
+ */
+public class OpeningBookTest {
+    private static final int NUMBER_OF_DEALS = 30;
+    private static final int SEED = 4;
+
+    private static OpeningBook sharedBook;
+
+    private OpeningBook book;
+
+    @Before
+    public void setUp() throws Exception {
+        if (sharedBook == null) {
+            File file = File.createTempFile("opening", ".book");
+            file.deleteOnExit();
+            OpeningBook.generate(file, AIBuilder.createAI("ShortSightedAI"), NUMBER_OF_DEALS, 1,
+                    TimeUnit.MILLISECONDS, SEED);
+            sharedBook = OpeningBook.load(file);
+        }
+
+        book = sharedBook;
+    }
+
+    /**
+     * Returns the bones of the deals the book was generated from, in the same order.
+     */
+    private static List<List<ImmutableBone>> getDeals() {
+        Random random = new Random(SEED);
+        List<List<ImmutableBone>> deals = new ArrayList<List<ImmutableBone>>();
+
+        for (int i = 0; i < NUMBER_OF_DEALS; ++i) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, random);
+            deals.add(bones);
+        }
+
+        return deals;
+    }
+
+    private static boolean canPlace(List<ImmutableBone> myBones, ImmutableBone layout) {
+        for (ImmutableBone bone : myBones)
+            if (bone.matches(layout.left()) || bone.matches(layout.right()))
+                return true;
+        return false;
+    }
+
+    private static void assertValid(Choice choice, List<ImmutableBone> myBones, ImmutableBone layout) {
+        assertTrue(myBones.contains(choice.getBone()));
+        if (choice.getAction() == Choice.Action.PLACED_RIGHT)
+            assertTrue(choice.getBone().matches(layout.right()));
+        else
+            assertTrue(choice.getBone().matches(layout.left()));
+    }
+
+    @Test
+    public void testDealtPositionsAreInBook() throws Exception {
+        int positionsWithChoices = 0;
+
+        for (List<ImmutableBone> bones : getDeals()) {
+            List<ImmutableBone> myBones = bones.subList(0, OpeningBook.HAND_SIZE);
+            ImmutableBone layout = bones.get(OpeningBook.HAND_SIZE);
+            Choice choice = book.getChoice(myBones, 13, layout.left(), layout.right());
+
+            if (canPlace(myBones, layout)) {
+                assertNotNull(choice);
+                assertValid(choice, myBones, layout);
+                ++positionsWithChoices;
+            } else {
+                assertNull(choice);
+            }
+        }
+
+        assertTrue(book.size() <= positionsWithChoices);
+        assertTrue(book.size() > 0);
+    }
+
+    @Test
+    public void testMirroredPositionsAreInBook() throws Exception {
+        for (List<ImmutableBone> bones : getDeals()) {
+            List<ImmutableBone> myBones = bones.subList(0, OpeningBook.HAND_SIZE);
+            ImmutableBone layout = bones.get(OpeningBook.HAND_SIZE);
+            ImmutableBone mirroredLayout = new ImmutableBone(layout.right(), layout.left());
+
+            Choice choice = book.getChoice(myBones, 13, layout.left(), layout.right());
+            Choice mirroredChoice = book.getChoice(myBones, 13, mirroredLayout.left(), mirroredLayout.right());
+            assertEquals(choice != null, mirroredChoice != null);
+
+            // The same bone is placed on the same end
+            if (choice != null && layout.left() != layout.right()) {
+                assertValid(mirroredChoice, myBones, mirroredLayout);
+                assertEquals(choice.getBone(), mirroredChoice.getBone());
+                assertTrue(choice.getAction() != mirroredChoice.getAction());
+            }
+        }
+    }
+
+    @Test
+    public void testPermutedPositionsAreNotShared() throws Exception {
+        // Swapping two pips changes the weights, so the position needs its own entry
+        List<ImmutableBone> bones = getDeals().get(0);
+        List<ImmutableBone> myBones = new ArrayList<ImmutableBone>();
+        for (ImmutableBone bone : bones.subList(0, OpeningBook.HAND_SIZE))
+            myBones.add(ImmutableBone.of(swap(bone.left()), swap(bone.right())));
+        ImmutableBone initialLayout = bones.get(OpeningBook.HAND_SIZE);
+        ImmutableBone layout = new ImmutableBone(swap(initialLayout.left()), swap(initialLayout.right()));
+
+        if (!myBones.equals(bones.subList(0, OpeningBook.HAND_SIZE)) || !layout.equals(initialLayout))
+            assertNull(book.getChoice(myBones, 13, layout.left(), layout.right()));
+    }
+
+    private static int swap(int value) {
+        return value == 0 ? 6 : value == 6 ? 0 : value;
+    }
+
+    @Test
+    public void testOtherPositionsAreNotInBook() throws Exception {
+        List<ImmutableBone> bones = getDeals().get(0);
+        ImmutableBone layout = bones.get(OpeningBook.HAND_SIZE);
+
+        assertNull(book.getChoice(bones.subList(0, OpeningBook.HAND_SIZE), 12, layout.left(), layout.right()));
+        assertNull(book.getChoice(bones.subList(0, 6), 13, layout.left(), layout.right()));
+    }
+
+    @Test
+    public void testLoadRejectsOtherFiles() throws Exception {
+        File otherFile = File.createTempFile("opening", ".book");
+
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(otherFile));
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(13);
+            out.writeInt(2);
+            out.writeInt(1);
+            out.close();
+
+            try {
+                OpeningBook.load(otherFile);
+                fail("Loaded a truncated opening book");
+            } catch (IOException e) {
+                // Expected
+            }
+
+            out = new DataOutputStream(new FileOutputStream(otherFile));
+            out.writeInt(0);
+            out.close();
+
+            try {
+                OpeningBook.load(otherFile);
+                fail("Loaded a file that isn't an opening book");
+            } catch (IOException e) {
+                // Expected
+            }
+        } finally {
+            otherFile.delete();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameStateImpl;
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Creates the opening states of random games for the RouteSelector (and MoveOrderer) tests.
+ *
+ * @author Sam Wright
+ */
+public class OpeningStates {
+
+    /**
+     * Returns the opening state of a game (at my turn) dealt by shuffling the bones with the given seed,
+     * with children enumerated by a StateEnumeratorImpl.
+     *
+     * @param seed the seed to shuffle the bones with.
+     * @param minPly the minimum ply of the state.
+     * @return the opening state.
+     */
+    public static GameStateImpl create(long seed, int minPly) {
+        return create(new StateEnumeratorImpl(), seed, minPly, true);
+    }
+
+    /**
+     * Returns the opening state of a game dealt by shuffling the bones with the given seed: I have the
+     * first 7 bones, the layout is the 8th and the boneyard has 13 of the rest.
+     *
+     * @param stateEnumerator the StateEnumerator to enumerate the children with.
+     * @param seed the seed to shuffle the bones with.
+     * @param minPly the minimum ply of the state.
+     * @param isMyTurn true iff it's my turn.
+     * @return the opening state.
+     */
+    public static GameStateImpl create(StateEnumerator stateEnumerator, long seed, int minPly, boolean isMyTurn) {
+        List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(bones, new Random(seed));
+
+        return new GameStateImpl(stateEnumerator, new ExpectationWeightEvaluator(), minPly, isMyTurn,
+                BitmaskBoneState.FACTORY.createInitialState(bones.subList(0, 7), 13, bones.get(7)));
+    }
+}
@@ -0,0 +1,66 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.GameState;
+import dominoes.players.ai.algorithm.helper.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * @author Sam Wright
+ */
+public class ParallelRouteSelectorTest {
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    private static List<Choice> getChoices(Route route) {
+        List<Choice> choices = new ArrayList<Choice>();
+        for (GameState state : route.getAllStates())
+            choices.add(state.getChoiceTaken());
+        return choices;
+    }
+
+    private void assertSameRoutes(RouteSelector routeSelector, long seed, boolean isMyTurn) {
+        GameState expectedState = OpeningStates.create(new StateEnumeratorImpl(), seed, 4, isMyTurn);
+        GameState actualState = OpeningStates.create(new StateEnumeratorImpl(), seed, 4, isMyTurn);
+        FastRouteSelector sequentialSelector = new FastRouteSelector();
+
+        // Search a few times, deepening the routes in between (as ProbabilisticAI does)
+        for (int iteration = 0; iteration < 3; ++iteration) {
+            List<Route> expected = sequentialSelector.getBestRoutes(expectedState);
+            List<Route> actual = routeSelector.getBestRoutes(actualState);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                assertEquals(expected.get(i).getValue(), actual.get(i).getValue(), 0.0);
+                assertEquals(getChoices(expected.get(i)), getChoices(actual.get(i)));
+
+                expected.get(i).getFinalState().increasePly(2);
+                actual.get(i).getFinalState().increasePly(2);
+            }
+        }
+    }
+
+    @Test
+    public void testSameRoutesAsFastRouteSelector() throws Exception {
+        RouteSelector routeSelector = new ParallelRouteSelector(pool);
+
+        for (long seed = 0; seed < 5; ++seed) {
+            assertSameRoutes(routeSelector, seed, true);
+            assertSameRoutes(routeSelector, seed, false);
+        }
+    }
+
+    @Test
+    public void testSameRoutesWithDeepForking() throws Exception {
+        assertSameRoutes(new ParallelRouteSelector(pool, 4, 1), 7, true);
+    }
+}
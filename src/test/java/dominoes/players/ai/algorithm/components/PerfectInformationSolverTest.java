@@ -0,0 +1,141 @@
+package dominoes.players.ai.algorithm.components;
+
+import dominoes.players.ai.algorithm.helper.BitmaskBoneState;
+import dominoes.players.ai.algorithm.helper.Bones;
+import dominoes.players.ai.algorithm.helper.Choice;
+import dominoes.players.ai.algorithm.helper.Deal;
+import dominoes.players.ai.algorithm.helper.ImmutableBone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * @author Sam Wright
+ */
+public class PerfectInformationSolverTest {
+
+    /**
+     * Solves the position by plain minimax (without pruning or a transposition table).
+     */
+    private static int minimax(int myBones, int opponentBones, int[] boneyard, int boneyardIndex, int layoutLeft,
+                               int layoutRight, boolean isMyTurn, boolean lastChoiceWasPass) {
+        if (myBones == 0 || opponentBones == 0)
+            return PerfectInformationSolver.getScore(myBones, opponentBones);
+
+        int hand = isMyTurn ? myBones : opponentBones;
+        Integer best = null;
+
+        for (ImmutableBone bone : Bones.fromMask(hand)) {
+            int newMyBones = isMyTurn ? myBones & ~Bones.maskOf(bone) : myBones;
+            int newOpponentBones = isMyTurn ? opponentBones : opponentBones & ~Bones.maskOf(bone);
+
+            for (int[] ends : getNewEnds(bone, layoutLeft, layoutRight)) {
+                int value = minimax(newMyBones, newOpponentBones, boneyard, boneyardIndex, ends[0], ends[1],
+                        !isMyTurn, false);
+                if (best == null || (isMyTurn ? value > best : value < best))
+                    best = value;
+            }
+        }
+
+        if (best != null)
+            return best;
+
+        if (boneyardIndex < boneyard.length) {
+            int bone = 1 << boneyard[boneyardIndex];
+            return minimax(isMyTurn ? myBones | bone : myBones, isMyTurn ? opponentBones : opponentBones | bone,
+                    boneyard, boneyardIndex + 1, layoutLeft, layoutRight, isMyTurn, false);
+        }
+
+        if (lastChoiceWasPass)
+            return PerfectInformationSolver.getScore(myBones, opponentBones);
+
+        return minimax(myBones, opponentBones, boneyard, boneyardIndex, layoutLeft, layoutRight, !isMyTurn, true);
+    }
+
+    private static List<int[]> getNewEnds(ImmutableBone bone, int layoutLeft, int layoutRight) {
+        List<int[]> newEnds = new ArrayList<int[]>();
+        if (bone.matches(layoutRight))
+            newEnds.add(new int[] {layoutLeft, bone.left() == layoutRight ? bone.right() : bone.left()});
+        if (bone.matches(layoutLeft))
+            newEnds.add(new int[] {bone.left() == layoutLeft ? bone.right() : bone.left(), layoutRight});
+        return newEnds;
+    }
+
+    private static Deal createDeal(List<ImmutableBone> bones, int handSize, int boneyardSize) {
+        int[] boneyard = new int[boneyardSize];
+        for (int i = 0; i < boneyardSize; ++i)
+            boneyard[i] = bones.get(1 + 2 * handSize + i).id();
+
+        return new Deal(Bones.maskOf(bones.subList(1, 1 + handSize)),
+                Bones.maskOf(bones.subList(1 + handSize, 1 + 2 * handSize)), boneyard);
+    }
+
+    @Test
+    public void testSameValuesAsMinimax() throws Exception {
+        Random random = new Random(0);
+        PerfectInformationSolver solver = new PerfectInformationSolver();
+
+        // A tiny table has many collisions, and its generations wrap around
+        PerfectInformationSolver tinySolver = new PerfectInformationSolver(4);
+
+        for (int i = 0; i < 300; ++i) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, random);
+
+            Deal deal = createDeal(bones, 2 + random.nextInt(3), random.nextInt(4));
+            ImmutableBone layout = bones.get(0);
+            boolean isMyTurn = random.nextBoolean();
+            boolean lastChoiceWasPass = random.nextInt(4) == 0;
+
+            int expected = minimax(deal.getMyBones(), deal.getOpponentBones(), deal.getBoneyard(), 0,
+                    layout.left(), layout.right(), isMyTurn, lastChoiceWasPass);
+
+            assertEquals(expected, solver.solve(deal, layout.left(), layout.right(), isMyTurn, lastChoiceWasPass));
+            assertEquals(expected, tinySolver.solve(deal, layout.left(), layout.right(), isMyTurn, lastChoiceWasPass));
+        }
+    }
+
+    @Test
+    public void testBestChoiceHasSameValueAsPosition() throws Exception {
+        Random random = new Random(1);
+        PerfectInformationSolver solver = new PerfectInformationSolver();
+        StateEnumerator stateEnumerator = new StateEnumeratorImpl();
+
+        for (int i = 0; i < 20; ++i) {
+            List<ImmutableBone> bones = new ArrayList<ImmutableBone>(Bones.getAllBones());
+            Collections.shuffle(bones, random);
+
+            // A full deal, after the first bone is placed
+            Deal deal = createDeal(bones, 7, 13);
+            ImmutableBone layout = bones.get(0);
+
+            int best = Integer.MIN_VALUE;
+            for (Choice choice : stateEnumerator.getMyValidChoices(
+                    BitmaskBoneState.FACTORY.createInitialState(bones.subList(1, 8), 13, layout))) {
+                if (choice.getAction() == Choice.Action.PICKED_UP)
+                    choice = Choice.of(Choice.Action.PICKED_UP, null);
+
+                best = Math.max(best, solver.solveChoice(deal, layout.left(), layout.right(), true, false,
+                        Choice.codeOf(choice)));
+            }
+
+            assertEquals(best, solver.solve(deal, layout.left(), layout.right(), true, false));
+        }
+    }
+
+    @Test
+    public void testScore() throws Exception {
+        int light = Bones.maskOf(ImmutableBone.of(0, 1));
+        int heavy = Bones.maskOf(ImmutableBone.of(6, 6)) | Bones.maskOf(ImmutableBone.of(2, 3));
+
+        assertEquals(17, PerfectInformationSolver.getScore(light, heavy));
+        assertEquals(-17, PerfectInformationSolver.getScore(heavy, light));
+        assertEquals(0, PerfectInformationSolver.getScore(Bones.maskOf(ImmutableBone.of(0, 2)), Bones.maskOf(ImmutableBone.of(1, 1))));
+        assertEquals(12, PerfectInformationSolver.getScore(0, Bones.maskOf(ImmutableBone.of(6, 6))));
+    }
+}
@@ -0,0 +1,58 @@
+package dominoes.players.ai.algorithm.components;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class TranspositionTableTest {
+    private TranspositionTable table;
+
+    @Before
+    public void setUp() throws Exception {
+        table = new TranspositionTable(4);
+    }
+
+    @Test
+    public void testMissingEntry() throws Exception {
+        assertTrue(Double.isNaN(table.get(123L, 0)));
+    }
+
+    @Test
+    public void testStoredEntry() throws Exception {
+        table.put(123L, 3, 4.5);
+
+        // Usable for states needing the same or less remaining ply...
+        assertEquals(4.5, table.get(123L, 3), 0.0);
+        assertEquals(4.5, table.get(123L, 1), 0.0);
+
+        // ... but not for states needing more, or with a different key in the same slot.
+        assertTrue(Double.isNaN(table.get(123L, 4)));
+        assertTrue(Double.isNaN(table.get(123L + 16, 3)));
+    }
+
+    @Test
+    public void testDeeperEntryIsKept() throws Exception {
+        table.put(123L, 3, 4.5);
+        table.put(123L + 16, 2, 1.0);
+        assertEquals(4.5, table.get(123L, 3), 0.0);
+
+        table.put(123L + 16, 5, 1.0);
+        assertEquals(1.0, table.get(123L + 16, 5), 0.0);
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        table.put(123L, 3, 4.5);
+        table.clear();
+        assertTrue(Double.isNaN(table.get(123L, 0)));
+
+        // After clearing, shallower entries can replace deeper ones
+        table.put(123L + 16, 1, 1.0);
+        assertEquals(1.0, table.get(123L + 16, 1), 0.0);
+    }
+}
@@ -0,0 +1,222 @@
+package dominoes.players.ai.algorithm.helper;
+
+import dominoes.players.ai.algorithm.components.StateEnumerator;
+import dominoes.players.ai.algorithm.components.StateEnumeratorImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+
+/**
+ * Checks BitmaskBoneState against BoneStateImpl, using the scenarios in BoneStateTest.
+ *
+ * @author Sam Wright
+ */
+public class BitmaskBoneStateTest {
+    private List<ImmutableBone> myBones;
+    private List<ImmutableBone> unknownBones;
+    private ImmutableBone opponentChosenBone, myChosenBone, placedBone;
+    private BoneState expectedInitialState, initialState;
+
+    @Before
+    public void setUp() throws Exception {
+        List<ImmutableBone> all_bones = new LinkedList<ImmutableBone>(Bones.getAllBones());
+        Collections.shuffle(all_bones, new Random(1));
+
+        myBones = new LinkedList<ImmutableBone>(all_bones.subList(0, 7));
+        unknownBones = new LinkedList<ImmutableBone>(all_bones.subList(7, 28));
+
+        myChosenBone = myBones.get(0);
+        opponentChosenBone = unknownBones.get(0);
+        placedBone = myBones.get(3);
+
+        Choice firstPlacement = new Choice(Choice.Action.PLACED_RIGHT, placedBone);
+        expectedInitialState = new BoneStateImpl(myBones, 14).createNext(firstPlacement, true);
+        initialState = new BitmaskBoneState(myBones, 14).createNext(firstPlacement, true);
+        myBones.remove(placedBone);
+    }
+
+    private void assertSameState(BoneState expected, BoneState actual) {
+        assertEquals(expected.getSizeOfBoneyard(), actual.getSizeOfBoneyard());
+        assertEquals(expected.getSizeOfOpponentHand(), actual.getSizeOfOpponentHand());
+        assertEquals(expected.getLayoutLeft(), actual.getLayoutLeft());
+        assertEquals(expected.getLayoutRight(), actual.getLayoutRight());
+        assertEquals(expected.getHash(), actual.getHash());
+        assertEquals(new HashSet<ImmutableBone>(expected.getMyBones()), new HashSet<ImmutableBone>(actual.getMyBones()));
+        assertEquals(new HashSet<ImmutableBone>(expected.getUnknownBones()), new HashSet<ImmutableBone>(actual.getUnknownBones()));
+
+        for (ImmutableBone bone : expected.getUnknownBones())
+            assertEquals(expected.getProbThatOpponentHasBone(bone), actual.getProbThatOpponentHasBone(bone), 0.00001);
+    }
+
+    private void assertSameNextState(Choice choice, boolean isMyTurn) {
+        assertSameState(expectedInitialState.createNext(choice, isMyTurn), initialState.createNext(choice, isMyTurn));
+    }
+
+    @Test
+    public void testInitialState() throws Exception {
+        assertSameState(expectedInitialState, initialState);
+    }
+
+    @Test
+    public void testPassed() throws Exception {
+        assertSameNextState(new Choice(Choice.Action.PASS, null), true);
+        assertSameNextState(new Choice(Choice.Action.PASS, null), false);
+    }
+
+    @Test
+    public void testPickedUp() throws Exception {
+        assertSameNextState(new Choice(Choice.Action.PICKED_UP, opponentChosenBone), true);
+        assertSameNextState(new Choice(Choice.Action.PICKED_UP, null), false);
+    }
+
+    @Test
+    public void testPlaced() throws Exception {
+        assertSameNextState(new Choice(Choice.Action.PLACED_RIGHT, myChosenBone), true);
+        assertSameNextState(new Choice(Choice.Action.PLACED_LEFT, opponentChosenBone), false);
+    }
+
+    @Test
+    public void testOpponentPickedUpThenPlaced() throws Exception {
+        Choice pickup = new Choice(Choice.Action.PICKED_UP, null);
+        BoneState expected = expectedInitialState.createNext(pickup, false);
+        BoneState actual = initialState.createNext(pickup, false);
+
+        for (ImmutableBone bone : expected.getUnknownBones()) {
+            Choice choice;
+            if (bone.matches(placedBone.right()))
+                choice = new Choice(Choice.Action.PLACED_RIGHT, bone);
+            else if (bone.matches(placedBone.left()))
+                choice = new Choice(Choice.Action.PLACED_LEFT, bone);
+            else
+                continue;
+
+            assertSameState(expected.createNext(choice, false), actual.createNext(choice, false));
+        }
+    }
+
+    @Test
+    public void testTranspositionsHaveSameHash() throws Exception {
+        List<ImmutableBone> hand = Arrays.asList(ImmutableBone.of(1, 5), ImmutableBone.of(2, 6), ImmutableBone.of(0, 0));
+        Choice placeLeft = new Choice(Choice.Action.PLACED_LEFT, ImmutableBone.of(1, 5));
+        Choice placeRight = new Choice(Choice.Action.PLACED_RIGHT, ImmutableBone.of(2, 6));
+        Choice pass = new Choice(Choice.Action.PASS, null);
+
+        for (BoneStateFactory factory : Arrays.asList(BoneStateImpl.FACTORY, BitmaskBoneState.FACTORY)) {
+            BoneState start = factory.createInitialState(hand, 14, new ImmutableBone(5, 6));
+
+            BoneState leftFirst = start.createNext(placeLeft, true).createNext(pass, false).createNext(placeRight, true);
+            BoneState rightFirst = start.createNext(placeRight, true).createNext(pass, false).createNext(placeLeft, true);
+
+            assertEquals(leftFirst.getHash(), rightFirst.getHash());
+            assertFalse(start.getHash() == leftFirst.getHash());
+            assertFalse(start.createNext(placeLeft, true).getHash() == start.createNext(placeRight, true).getHash());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOpponentPlacingKnownBone() throws Exception {
+        initialState.createNext(new Choice(Choice.Action.PLACED_LEFT, myChosenBone), false);
+    }
+
+    @Test
+    public void testRandomGames() throws Exception {
+        StateEnumeratorImpl stateEnumerator = new StateEnumeratorImpl();
+        Random random = new Random(2);
+
+        for (int game = 0; game < 200; ++game) {
+            BoneState expected = expectedInitialState;
+            BoneState actual = initialState;
+            boolean isMyTurn = random.nextBoolean();
+
+            for (int move = 0; move < 40; ++move) {
+                List<Choice> choices = isMyTurn ? stateEnumerator.getMyValidChoices(expected)
+                        : stateEnumerator.getOpponentValidChoices(expected);
+                assertEquals(choices.size(), isMyTurn ? stateEnumerator.getMyValidChoices(actual).size()
+                        : stateEnumerator.getOpponentValidChoices(actual).size());
+
+                assertSameMoves(stateEnumerator, actual, isMyTurn);
+                assertEquals(expected.canOpponentPickUp(), actual.canOpponentPickUp());
+
+                if (choices.isEmpty() || expected.getMyBones().isEmpty() || expected.getSizeOfOpponentHand() == 0)
+                    break;
+
+                Choice choice = choices.get(random.nextInt(choices.size()));
+                expected = expected.createNext(choice, isMyTurn);
+                actual = actual.createNext(choice, isMyTurn);
+                assertSameState(expected, actual);
+
+                if (choice.getAction() != Choice.Action.PICKED_UP)
+                    isMyTurn = !isMyTurn;
+            }
+        }
+    }
+
+    @Test
+    public void testSampledHandsMatchProbabilities() throws Exception {
+        StateEnumeratorImpl stateEnumerator = new StateEnumeratorImpl();
+        Random random = new Random(3);
+
+        for (int game = 0; game < 5; ++game) {
+            BoneState expected = expectedInitialState;
+            BoneState actual = initialState;
+            boolean isMyTurn = random.nextBoolean();
+
+            for (int move = 0; move < 40; ++move) {
+                assertSameSamples(expected, actual);
+
+                List<Choice> choices = isMyTurn ? stateEnumerator.getMyValidChoices(actual)
+                        : stateEnumerator.getOpponentValidChoices(actual);
+                if (choices.isEmpty() || actual.getMyBones().isEmpty() || actual.getSizeOfOpponentHand() == 0)
+                    break;
+
+                Choice choice = choices.get(random.nextInt(choices.size()));
+                expected = expected.createNext(choice, isMyTurn);
+                actual = actual.createNext(choice, isMyTurn);
+
+                if (choice.getAction() != Choice.Action.PICKED_UP)
+                    isMyTurn = !isMyTurn;
+            }
+        }
+    }
+
+    /**
+     * Checks both states sample the same hands, of the right size and with each bone as often as its probability.
+     */
+    private static void assertSameSamples(BoneState expected, BoneState actual) {
+        final int samples = 4000;
+        Random expectedRandom = new Random(4);
+        Random actualRandom = new Random(4);
+        int[] counts = new int[Bones.NUMBER_OF_BONES];
+
+        for (int i = 0; i < samples; ++i) {
+            int opponentBones = actual.sampleOpponentBones(actualRandom);
+            assertEquals(expected.sampleOpponentBones(expectedRandom), opponentBones);
+            assertEquals(actual.getSizeOfOpponentHand(), Integer.bitCount(opponentBones));
+            assertEquals(0, opponentBones & ~actual.getUnknownBonesMask());
+
+            for (int mask = opponentBones; mask != 0; mask &= mask - 1)
+                ++counts[Integer.numberOfTrailingZeros(mask)];
+        }
+
+        for (ImmutableBone bone : actual.getUnknownBones())
+            assertEquals(actual.getProbThatOpponentHasBone(bone), (double) counts[bone.id()] / samples, 0.03);
+    }
+
+    private static void assertSameMoves(StateEnumeratorImpl stateEnumerator, BoneState boneState, boolean isMyTurn) {
+        List<Choice> choices = isMyTurn ? stateEnumerator.getMyValidChoices(boneState)
+                : stateEnumerator.getOpponentValidChoices(boneState);
+
+        int[] moves = new int[StateEnumerator.MAX_MOVES];
+        int n = isMyTurn ? stateEnumerator.getMyValidMoves(boneState, moves)
+                : stateEnumerator.getOpponentValidMoves(boneState, moves);
+
+        assertEquals(choices.size(), n);
+        for (int i = 0; i < n; ++i)
+            assertSame(choices.get(i), Choice.fromCode(moves[i]));
+    }
+}
@@ -3,6 +3,7 @@ package dominoes.players.ai.algorithm.helper;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -308,6 +309,20 @@ public class BoneStateTest {
         }
     }
 
+    @Test
+    public void testProbabilityByIndex() throws Exception {
+        for (BoneState state : Arrays.asList(initialState, iPickedUp, opponentPickedUp, opponentPlaced)) {
+            for (ImmutableBone bone : state.getUnknownBones()) {
+                int boneId = bone.id();
+                assertEquals(state.getProbThatOpponentHasBone(bone), state.getProbThatOpponentHasBone(boneId), 0.0);
+                assertEquals(state.getProbThatBoneyardHasBone(bone), state.getProbThatBoneyardHasBone(boneId), 0.0);
+            }
+
+            for (ImmutableBone bone : state.getMyBones())
+                assertEquals(0.0, state.getProbThatOpponentHasBone(bone.id()), 0.0);
+        }
+    }
+
     @Test
     public void testGetInitialLayout() throws Exception {
         assertEquals(placedBone.left(), initialState.getLayoutLeft());
@@ -25,4 +25,21 @@ public class BonesTest {
             }
         }
     }
+
+    @Test
+    public void testGetBonesMatching() throws Exception {
+        assertEquals(0, Bones.getBonesMatching(-1));
+        assertEquals(0, Bones.getBonesMatching(-1, -1));
+
+        for (int i = -1; i < 7; ++i) {
+            for (int j = -1; j < 7; ++j) {
+                int expected = 0;
+                for (ImmutableBone bone : Bones.getAllBones())
+                    if (bone.matches(i) || bone.matches(j))
+                        expected |= Bones.maskOf(bone);
+
+                assertEquals(expected, Bones.getBonesMatching(i, j));
+            }
+        }
+    }
 }
@@ -99,4 +99,24 @@ public class ChoiceTest {
         assertTrue(Choice.Action.PLACED_RIGHT.isPlacement());
     }
 
+
+    @Test
+    public void testSharedInstances() throws Exception {
+        assertEquals(choice, Choice.of(expectedAction, expectedBone));
+        assertSame(Choice.of(expectedAction, expectedBone), Choice.of(expectedAction, new ImmutableBone(3, 4)));
+        assertSame(Choice.of(Choice.Action.PASS, null), Choice.of(Choice.Action.PASS, null));
+    }
+
+    @Test
+    public void testCodes() throws Exception {
+        assertSame(Choice.of(expectedAction, expectedBone), Choice.fromCode(Choice.codeOf(choice)));
+        assertEquals(new Choice(Choice.Action.PICKED_UP, null),
+                Choice.fromCode(Choice.codeOf(new Choice(Choice.Action.PICKED_UP, null))));
+
+        for (int code = 0; code < Choice.NUMBER_OF_CODES; ++code) {
+            Choice choiceWithCode = Choice.fromCode(code);
+            if (choiceWithCode != null)
+                assertEquals(code, Choice.codeOf(choiceWithCode));
+        }
+    }
 }
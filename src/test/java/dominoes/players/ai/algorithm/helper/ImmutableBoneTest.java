@@ -3,7 +3,12 @@ package dominoes.players.ai.algorithm.helper;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: Sam Wright
@@ -46,6 +51,26 @@ public class ImmutableBoneTest {
         assertEquals(bone, flippedBone);
     }
 
+    @Test
+    public void testCanonicalInstance() throws Exception {
+        assertSame(ImmutableBone.of(left, right), ImmutableBone.of(right, left));
+        assertEquals(bone, ImmutableBone.of(left, right));
+        assertEquals(bone.id(), ImmutableBone.of(right, left).id());
+    }
+
+    @Test
+    public void testIds() throws Exception {
+        Set<Integer> ids = new HashSet<Integer>();
+
+        for (ImmutableBone bone : Bones.getAllBones()) {
+            assertTrue(bone.id() >= 0 && bone.id() < Bones.NUMBER_OF_BONES);
+            assertSame(bone, ImmutableBone.fromId(bone.id()));
+            ids.add(bone.id());
+        }
+
+        assertEquals(Bones.NUMBER_OF_BONES, ids.size());
+    }
+
     @Test
     public void testToString() throws Exception {
         assertEquals("[" + left + "," + right + "]", bone.toString());
@@ -4,6 +4,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: Sam Wright
@@ -36,4 +38,26 @@ public class MoveCounterTest {
     public void testGetMinPly() throws Exception {
         assertEquals(minPly, moveCounter.getMinPly());
     }
+
+    @Test
+    public void testNumberOfStates() throws Exception {
+        assertEquals(1, moveCounter.getNumberOfStates());
+
+        moveCounter.addStates(10);
+        moveCounter.removeStates(3);
+        assertEquals(8, moveCounter.getNumberOfStates());
+    }
+
+    @Test
+    public void testTryAddStatesRespectsMaximum() throws Exception {
+        moveCounter.setMaxStates(10);
+
+        assertTrue(moveCounter.tryAddStates(9));
+        assertFalse(moveCounter.tryAddStates(1));
+        assertEquals(10, moveCounter.getNumberOfStates());
+
+        moveCounter.removeStates(5);
+        assertTrue(moveCounter.tryAddStates(5));
+        assertEquals(10, moveCounter.getNumberOfStates());
+    }
 }
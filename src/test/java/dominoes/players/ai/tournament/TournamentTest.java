@@ -0,0 +1,106 @@
+package dominoes.players.ai.tournament;
+
+import dominoes.players.ai.algorithm.AIBuilder;
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * @author Sam Wright
+ */
+public class TournamentTest {
+
+    private static TournamentSummary runTournament(long seed, int numberOfThreads) throws Exception {
+        Tournament tournament = new Tournament("ShortSightedAI", "RandomAI");
+        tournament.setNumberOfMatches(20);
+        tournament.setSeed(seed);
+        tournament.setNumberOfThreads(numberOfThreads);
+        return tournament.run();
+    }
+
+    @Test
+    public void testMatchIsPlayedToTargetPoints() throws Exception {
+        for (long seed = 0; seed < 10; ++seed) {
+            MatchResult result = new HeadlessMatch(AIBuilder.createAI("ShortSightedAI"),
+                    AIBuilder.createAI("RandomAI"), seed, 50, (int) (seed % 2)).play();
+
+            int winner = result.getWinner();
+            assertTrue(result.getPoints(winner) >= 50);
+            assertTrue(result.getPoints(1 - winner) < 50);
+            assertTrue(result.getRounds() > 0);
+            assertTrue(result.getLatencies(0).size() >= result.getRounds());
+        }
+    }
+
+    private static boolean isPondering() {
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().equals("ProbabilisticAI-ponderer") && thread.isAlive())
+                return true;
+        return false;
+    }
+
+    @Test
+    public void testStatesSearchedAndPonderingStopped() throws Exception {
+        MatchResult result = new HeadlessMatch(AIBuilder.createAI("PonderingProbabilisticAI"),
+                AIBuilder.createAI("ShortSightedAI"), 0, 1, 0).play();
+
+        // Only the states expanded while searching for each choice are counted
+        assertTrue(result.getStatesSearched(0) > 0);
+        assertEquals(0, result.getStatesSearched(1));
+        assertFalse(isPondering());
+    }
+
+    @Test
+    public void testSameSeedGivesSameMatches() throws Exception {
+        // Only the deals are seeded, so both AIs must be deterministic
+        Tournament tournament = new Tournament("ShortSightedAI", "ShortSightedAI");
+        tournament.setNumberOfMatches(20);
+        tournament.setSeed(7);
+
+        tournament.setNumberOfThreads(1);
+        TournamentSummary expected = tournament.run();
+        tournament.setNumberOfThreads(4);
+        TournamentSummary actual = tournament.run();
+
+        for (int i = 0; i < 2; ++i) {
+            assertEquals(expected.getWins(i), actual.getWins(i));
+            assertEquals(expected.getPoints(i), actual.getPoints(i));
+            assertEquals(expected.getLatencies(i).size(), actual.getLatencies(i).size());
+        }
+        assertEquals(expected.getRounds(), actual.getRounds());
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+        TournamentSummary summary = runTournament(0, 2);
+
+        assertEquals(20, summary.getMatches());
+        assertEquals(20, summary.getWins(0) + summary.getWins(1));
+
+        String json = summary.toJson();
+        assertTrue(json.contains("\"name\": \"ShortSightedAI\""));
+        assertTrue(json.contains("\"matches\": 20,"));
+        assertTrue(json.contains("\"p99\": "));
+        assertTrue(json.contains("\"latencyIncludesSearchStats\": true,"));
+    }
+
+    @Test
+    public void testLatencyPercentiles() throws Exception {
+        LatencySamples samples = new LatencySamples();
+        for (int i = 100; i > 0; --i)
+            samples.add(i);
+
+        assertEquals(50, samples.getPercentile(0.5));
+        assertEquals(99, samples.getPercentile(0.99));
+        assertEquals(100, samples.getPercentile(1));
+        assertEquals(1, samples.getPercentile(0));
+        assertEquals(50.5, samples.getMean(), 0.0001);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAI() throws Exception {
+        new Tournament("ShortSightedAI", "NoSuchAI");
+    }
+}